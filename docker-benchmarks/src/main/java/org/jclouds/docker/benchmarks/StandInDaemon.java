@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.benchmarks;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Answers every HTTP/1.1 request with the same JSON body, on a Unix domain socket and on a loopback
+ * TCP port, so that the transports can be compared without the work of a real daemon.
+ */
+final class StandInDaemon implements Closeable {
+
+   private static final String VERSION = "{\"ApiVersion\":\"1.15\",\"Arch\":\"amd64\",\"GitCommit\":\"c78088f\","
+         + "\"GoVersion\":\"go1.3.3\",\"KernelVersion\":\"3.16.4-tinycore64\",\"Os\":\"linux\",\"Version\":\"1.3.0\"}";
+
+   private final File socket;
+   private final boolean keepAlive;
+   private final byte[] response;
+   private final UnixServerSocketChannel unixServer;
+   private final ServerSocket tcpServer;
+   private final ExecutorService threads = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+         .setNameFormat("stand-in-docker-%d").setDaemon(true).build());
+
+   StandInDaemon(File socket, boolean keepAlive) throws IOException {
+      this.socket = socket;
+      this.keepAlive = keepAlive;
+      byte[] body = VERSION.getBytes(UTF_8);
+      String head = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n"
+            + (keepAlive ? "" : "Connection: close\r\n") + "\r\n";
+      this.response = concat(head.getBytes(UTF_8), body);
+      this.unixServer = UnixServerSocketChannel.open();
+      unixServer.socket().bind(new UnixSocketAddress(socket));
+      this.tcpServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      threads.execute(new Runnable() {
+         @Override
+         public void run() {
+            acceptUnix();
+         }
+      });
+      threads.execute(new Runnable() {
+         @Override
+         public void run() {
+            acceptTcp();
+         }
+      });
+   }
+
+   String unixEndpoint() {
+      return "unix://" + socket.getAbsolutePath();
+   }
+
+   String tcpEndpoint() {
+      return "http://127.0.0.1:" + tcpServer.getLocalPort();
+   }
+
+   private void acceptUnix() {
+      try {
+         while (true) {
+            final UnixSocketChannel channel = unixServer.accept();
+            if (channel == null) {
+               return;
+            }
+            threads.execute(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     serve(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+                  } finally {
+                     closeQuietly(channel);
+                  }
+               }
+            });
+         }
+      } catch (IOException e) {
+         // closed
+      }
+   }
+
+   private void acceptTcp() {
+      try {
+         while (true) {
+            final Socket accepted = tcpServer.accept();
+            accepted.setTcpNoDelay(true);
+            threads.execute(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     serve(accepted.getInputStream(), accepted.getOutputStream());
+                  } catch (IOException e) {
+                     // the client went away
+                  } finally {
+                     closeQuietly(accepted);
+                  }
+               }
+            });
+         }
+      } catch (IOException e) {
+         // closed
+      }
+   }
+
+   private void serve(InputStream socketIn, OutputStream out) {
+      try {
+         InputStream in = new BufferedInputStream(socketIn);
+         while (readLine(in) != null) {
+            int contentLength = 0;
+            String header;
+            while ((header = readLine(in)) != null && !header.isEmpty()) {
+               int colon = header.indexOf(':');
+               if (header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                  contentLength = Integer.parseInt(header.substring(colon + 1).trim());
+               }
+            }
+            ByteStreams.skipFully(in, contentLength);
+            out.write(response);
+            out.flush();
+            if (!keepAlive) {
+               return;
+            }
+         }
+      } catch (IOException e) {
+         // the client went away
+      }
+   }
+
+   private static String readLine(InputStream in) throws IOException {
+      StringBuilder line = new StringBuilder();
+      int c;
+      while ((c = in.read()) != '\n') {
+         if (c == -1) {
+            return line.length() == 0 ? null : line.toString();
+         }
+         if (c != '\r') {
+            line.append((char) c);
+         }
+      }
+      return line.toString();
+   }
+
+   private static byte[] concat(byte[] head, byte[] body) {
+      byte[] bytes = new byte[head.length + body.length];
+      System.arraycopy(head, 0, bytes, 0, head.length);
+      System.arraycopy(body, 0, bytes, head.length, body.length);
+      return bytes;
+   }
+
+   private static void closeQuietly(Closeable closeable) {
+      try {
+         closeable.close();
+      } catch (IOException ignored) {
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      threads.shutdownNow();
+      closeQuietly(tcpServer);
+      unixServer.close();
+      socket.delete();
+   }
+
+}
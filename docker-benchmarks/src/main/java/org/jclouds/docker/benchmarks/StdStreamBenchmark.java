@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.docker.util.DockerInputStream;
+import org.jclouds.docker.util.StdStreamData;
+import org.jclouds.docker.util.StdStreamDemuxer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Reads a multiplexed stream of stdout and stderr frames with {@link DockerInputStream}, which
+ * returns each frame in its own array, and with {@link StdStreamDemuxer}, which copies the frames
+ * to sinks through a reused buffer. Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StdStreamBenchmark {
+
+   private static final int STREAM_SIZE = 16 * 1024 * 1024;
+
+   /**
+    * Lines of a chatty process, buffer sized writes and frames bigger than the demuxer buffer.
+    */
+   @Param({ "80", "8192", "1048576" })
+   public int frameSize;
+
+   private byte[] stream;
+   private OutputStream sink;
+
+   @Setup
+   public void setUp() throws IOException {
+      Random random = new Random(0);
+      byte[] payload = new byte[frameSize];
+      random.nextBytes(payload);
+      ByteArrayOutputStream frames = new ByteArrayOutputStream(STREAM_SIZE + STREAM_SIZE / frameSize * 8);
+      for (int i = 0; i < STREAM_SIZE / frameSize; i++) {
+         frames.write(new byte[] { (byte) (i % 2 + 1), 0, 0, 0, (byte) (frameSize >>> 24), (byte) (frameSize >>> 16),
+               (byte) (frameSize >>> 8), (byte) frameSize });
+         frames.write(payload);
+      }
+      stream = frames.toByteArray();
+      sink = ByteStreams.nullOutputStream();
+   }
+
+   @Benchmark
+   public void readStdStreamData(Blackhole blackhole) throws IOException {
+      DockerInputStream in = new DockerInputStream(new ByteArrayInputStream(stream));
+      StdStreamData data;
+      while ((data = in.readStdStreamData()) != null) {
+         blackhole.consume(data.getPayload());
+      }
+   }
+
+   @Benchmark
+   public long demux() throws IOException {
+      return new StdStreamDemuxer(new ByteArrayInputStream(stream)).demux(sink, sink);
+   }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.docker.DockerApi;
+import org.jclouds.docker.DockerApiMetadata;
+import org.jclouds.docker.domain.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.Files;
+
+/**
+ * Measures the latency of a small API call, {@link org.jclouds.docker.features.MiscApi#getVersion()},
+ * to a stand-in daemon over its Unix domain socket and over loopback TCP. With
+ * <code>keepAlive=false</code> the daemon closes every connection, so each call also pays for
+ * opening one.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UnixSocketTransportBenchmark {
+
+   @Param({ "unix", "tcp" })
+   public String transport;
+
+   @Param({ "true", "false" })
+   public boolean keepAlive;
+
+   private File dir;
+   private StandInDaemon daemon;
+   private DockerApi api;
+
+   @Setup
+   public void setUp() throws IOException {
+      dir = Files.createTempDir();
+      daemon = new StandInDaemon(new File(dir, "docker.sock"), keepAlive);
+      Properties overrides = new Properties();
+      overrides.setProperty("jclouds.api-version", "1.15");
+      api = ContextBuilder.newBuilder(new DockerApiMetadata())
+            .endpoint("unix".equals(transport) ? daemon.unixEndpoint() : daemon.tcpEndpoint())
+            .credentials("identity", "credential")
+            .overrides(overrides)
+            .buildApi(DockerApi.class);
+   }
+
+   @TearDown
+   public void tearDown() throws IOException {
+      api.close();
+      daemon.close();
+      dir.delete();
+   }
+
+   @Benchmark
+   public Version version() {
+      return api.getMiscApi().getVersion();
+   }
+
+}
@@ -39,6 +39,29 @@ public class DockerApiMetadata extends BaseHttpApiMetadata<DockerApi> {
 
     public static final String DOCKER_CA_CERT_PATH = "docker.cacert.path";
 
+   /**
+    * Maximum number of containers or images inspected at the same time when listing them.
+    */
+   public static final String DOCKER_INSPECT_CONCURRENCY = "docker.inspect.concurrency";
+
+   /**
+    * Time in milliseconds given to all the inspections of a listing, 0 for no limit. Resources which
+    * could not be inspected in time are left out of the listing.
+    */
+   public static final String DOCKER_INSPECT_TIMEOUT = "docker.inspect.timeout";
+
+   /**
+    * Time in seconds inspected images are cached, 0 disables the cache. Listing the images always
+    * drops the images which are gone and inspects again the ones which were rebuilt.
+    */
+   public static final String DOCKER_IMAGE_CACHE_TTL = "docker.image-cache.ttl";
+
+   /**
+    * Whether the compute service follows the events of the daemon to keep the state of the containers
+    * in memory, instead of inspecting them on every lookup.
+    */
+   public static final String DOCKER_EVENTS = "docker.events";
+
    @Override
    public Builder toBuilder() {
       return new Builder().fromApiMetadata(this);
@@ -58,6 +81,10 @@ public class DockerApiMetadata extends BaseHttpApiMetadata<DockerApi> {
       properties.setProperty(ComputeServiceProperties.IMAGE_LOGIN_USER, "root:password");
       properties.setProperty(TEMPLATE, "osFamily=UBUNTU,os64Bit=true");
       properties.setProperty(DOCKER_CA_CERT_PATH, "");
+      properties.setProperty(DOCKER_INSPECT_CONCURRENCY, "16");
+      properties.setProperty(DOCKER_INSPECT_TIMEOUT, "300000"); // 5 minutes
+      properties.setProperty(DOCKER_IMAGE_CACHE_TTL, "60");
+      properties.setProperty(DOCKER_EVENTS, "false");
       return properties;
    }
 
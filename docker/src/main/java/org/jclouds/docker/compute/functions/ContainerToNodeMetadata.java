@@ -30,6 +30,7 @@ import org.jclouds.compute.domain.NodeMetadata;
 import org.jclouds.compute.domain.NodeMetadataBuilder;
 import org.jclouds.compute.domain.Processor;
 import org.jclouds.compute.functions.GroupNamingConvention;
+import org.jclouds.docker.config.UnixSocketFactory;
 import org.jclouds.docker.domain.Container;
 import org.jclouds.docker.domain.State;
 import org.jclouds.domain.Location;
@@ -111,7 +112,9 @@ public class ContainerToNodeMetadata implements Function<Container, NodeMetadata
    }
 
    private List<String> getPublicIpAddresses() {
-      String dockerIpAddress = URI.create(providerMetadata.getEndpoint()).getHost();
+      URI endpoint = URI.create(providerMetadata.getEndpoint());
+      // A daemon listening on a Unix domain socket runs on this host
+      String dockerIpAddress = UnixSocketFactory.isUnixSocket(endpoint) ? "127.0.0.1" : endpoint.getHost();
       return ImmutableList.of(dockerIpAddress);
    }
 
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.docker.DockerApiMetadata.DOCKER_EVENTS;
+import static org.jclouds.docker.DockerApiMetadata.DOCKER_INSPECT_CONCURRENCY;
+import static org.jclouds.docker.DockerApiMetadata.DOCKER_INSPECT_TIMEOUT;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.Constants;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.docker.DockerApi;
+import org.jclouds.docker.domain.Container;
+import org.jclouds.docker.domain.ContainerSummary;
+import org.jclouds.docker.domain.Event;
+import org.jclouds.docker.internal.ParallelLookup;
+import org.jclouds.docker.options.EventOptions;
+import org.jclouds.docker.options.ListContainerOptions;
+import org.jclouds.docker.util.EventStreamReader;
+import org.jclouds.json.Json;
+import org.jclouds.lifecycle.Closer;
+import org.jclouds.logging.Logger;
+import org.jclouds.util.Closeables2;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Looks up containers for the compute service.
+ * <p>
+ * When {@link org.jclouds.docker.DockerApiMetadata#DOCKER_EVENTS} is enabled, the index follows the
+ * event stream of the daemon and keeps the inspected containers in memory. A container is only
+ * inspected again once it emitted an event, so polling the status of nodes, for example while
+ * creating many nodes at once, reads from memory. Containers created by others are found through
+ * their create events once all the containers have been listed. When the stream ends, usually on a
+ * read timeout, it is reopened from the time of the last event received, so the events in between are
+ * replayed and the index is kept. Only if the stream cannot be reopened the index is dropped and every
+ * lookup inspects the containers, as when events are disabled, until the stream is open again.
+ * <p>
+ * The inspections of a listing run in parallel, see {@link ParallelLookup}.
+ */
+@Singleton
+public class ContainerStateIndex implements Closeable {
+
+   private static final long RECONNECT_DELAY_MILLIS = 5000;
+   // Events are timestamped by the daemon, the first stream is resumed from a bit earlier than it was opened
+   private static final long CLOCK_SKEW_SECONDS = 60;
+
+   @Resource
+   @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final DockerApi api;
+   private final Json json;
+   private final ListeningExecutorService userExecutor;
+   private final int inspectConcurrency;
+   private final long inspectTimeout;
+   private final boolean eventsEnabled;
+
+   private final ConcurrentMap<String, Container> containers = Maps.newConcurrentMap();
+   // Containers which emitted an event since they were inspected
+   private final Set<String> changed = Sets.newConcurrentHashSet();
+   // Incremented whenever the event stream opens or closes, inspections started before are not indexed
+   private final AtomicInteger generation = new AtomicInteger();
+   private final AtomicBoolean started = new AtomicBoolean();
+   private volatile boolean live;
+   private volatile boolean listed;
+   private volatile boolean closed;
+   private volatile InputStream events;
+
+   @Inject
+   ContainerStateIndex(DockerApi api, Json json,
+         @Named(Constants.PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(DOCKER_INSPECT_CONCURRENCY) int inspectConcurrency, @Named(DOCKER_INSPECT_TIMEOUT) long inspectTimeout,
+         @Named(DOCKER_EVENTS) boolean eventsEnabled, Closer closer) {
+      this.api = checkNotNull(api, "api");
+      this.json = checkNotNull(json, "json");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.inspectConcurrency = Math.max(inspectConcurrency, 1);
+      this.inspectTimeout = inspectTimeout;
+      this.eventsEnabled = eventsEnabled;
+      closer.addToClose(this);
+   }
+
+   /**
+    * @return the container, or null if there is no container with this id
+    */
+   public Container getNode(String id) {
+      start();
+      if (live && !changed.contains(id)) {
+         Container container = containers.get(id);
+         if (container != null) {
+            return container;
+         }
+      }
+      int inspectGeneration = generation.get();
+      boolean index = live;
+      if (index) {
+         changed.remove(id);
+      }
+      Container container;
+      try {
+         container = api.getContainerApi().inspectContainer(id);
+      } catch (RuntimeException e) {
+         if (index) {
+            changed.add(id);
+         }
+         throw e;
+      }
+      if (index && inspectGeneration == generation.get()) {
+         if (container != null) {
+            containers.put(id, container);
+         } else {
+            containers.remove(id);
+         }
+      }
+      return container;
+   }
+
+   public Set<Container> listNodes() {
+      start();
+      if (live && listed) {
+         inspect(ImmutableList.copyOf(changed));
+         return ImmutableSet.copyOf(containers.values());
+      }
+      int listGeneration = generation.get();
+      boolean listLive = live;
+      List<String> ids = Lists.newArrayList();
+      for (ContainerSummary containerSummary : api.getContainerApi().listContainers(ListContainerOptions.Builder.all(true))) {
+         ids.add(containerSummary.id());
+      }
+      // less efficient than just listNodes but returns richer json
+      Set<Container> result = ImmutableSet.copyOf(inspect(ids).values());
+      // The listing is complete if events were followed from before it started
+      if (listLive && listGeneration == generation.get()) {
+         listed = true;
+      }
+      return result;
+   }
+
+   public Set<Container> listNodesByIds(Iterable<String> ids) {
+      start();
+      Set<Container> result = Sets.newHashSet();
+      List<String> stale = Lists.newArrayList();
+      for (String id : ids) {
+         Container container = live && !changed.contains(id) ? containers.get(id) : null;
+         if (container != null) {
+            result.add(container);
+         } else {
+            stale.add(id);
+         }
+      }
+      result.addAll(inspect(stale).values());
+      return result;
+   }
+
+   /**
+    * Inspects the containers in parallel and indexes them if the event stream is followed. Containers
+    * which could not be inspected, because they have been removed in the meantime or the inspection
+    * failed or timed out, are left out.
+    */
+   private Map<String, Container> inspect(Collection<String> ids) {
+      if (ids.isEmpty()) {
+         return ImmutableMap.of();
+      }
+      int inspectGeneration = generation.get();
+      boolean index = live;
+      if (index) {
+         // An event received from now on marks the container again
+         changed.removeAll(ids);
+      }
+      Map<String, Optional<Container>> inspected = new ParallelLookup(userExecutor, inspectConcurrency,
+            inspectTimeout, logger).lookup(ids, new Function<String, Optional<Container>>() {
+               @Override
+               public Optional<Container> apply(String id) {
+                  return Optional.fromNullable(api.getContainerApi().inspectContainer(id));
+               }
+            });
+      Map<String, Container> result = Maps.newLinkedHashMap();
+      index = index && inspectGeneration == generation.get();
+      for (String id : ids) {
+         Optional<Container> container = inspected.get(id);
+         if (container == null) {
+            // Failed, inspect it again next time
+            if (index) {
+               changed.add(id);
+            }
+         } else if (container.isPresent()) {
+            result.put(id, container.get());
+            if (index) {
+               containers.put(id, container.get());
+            }
+         } else if (index) {
+            containers.remove(id);
+         }
+      }
+      return result;
+   }
+
+   private void start() {
+      if (eventsEnabled && started.compareAndSet(false, true)) {
+         userExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+               followEvents();
+            }
+         });
+      }
+   }
+
+   private void followEvents() {
+      // Events up to this time, in seconds since the epoch, have been received
+      Long since = null;
+      while (!closed) {
+         InputStream stream;
+         try {
+            stream = since == null ? api.getMiscApi().events()
+                  : api.getMiscApi().events(EventOptions.Builder.since(since));
+         } catch (RuntimeException e) {
+            if (!closed) {
+               logger.warn(e, "<< docker events stream failed, inspecting containers until it is open again");
+            }
+            dropIndex();
+            since = null;
+            try {
+               TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException ie) {
+               Thread.currentThread().interrupt();
+               return;
+            }
+            continue;
+         }
+         events = stream;
+         if (since == null) {
+            since = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - CLOCK_SKEW_SECONDS;
+            generation.incrementAndGet();
+            live = true;
+            logger.debug("<< following docker events");
+         }
+         EventStreamReader reader = null;
+         try {
+            reader = new EventStreamReader(stream, json);
+            while (!closed && reader.hasNext()) {
+               Event event = reader.next();
+               // Only container events have the image of the container
+               if (event.id() != null && event.from() != null) {
+                  changed.add(event.id());
+               }
+               // Events of the same second may still follow, they are received again on resume
+               since = event.time();
+            }
+         } catch (RuntimeException e) {
+            if (!closed) {
+               logger.debug("<< docker events stream interrupted, resuming from %d: %s", since, e.getMessage());
+            }
+         } finally {
+            Closeables2.closeQuietly(reader);
+            Closeables2.closeQuietly(stream);
+         }
+      }
+      dropIndex();
+   }
+
+   private void dropIndex() {
+      live = false;
+      listed = false;
+      generation.incrementAndGet();
+      containers.clear();
+      changed.clear();
+   }
+
+   @Override
+   public void close() {
+      closed = true;
+      Closeables2.closeQuietly(events);
+   }
+
+}
@@ -17,7 +17,6 @@
 package org.jclouds.docker.compute.strategy;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Iterables.find;
 
 import java.util.List;
 import java.util.Map;
@@ -28,7 +27,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -47,11 +45,8 @@ import org.jclouds.docker.DockerApi;
 import org.jclouds.docker.compute.options.DockerTemplateOptions;
 import org.jclouds.docker.domain.Config;
 import org.jclouds.docker.domain.Container;
-import org.jclouds.docker.domain.ContainerSummary;
 import org.jclouds.docker.domain.HostConfig;
 import org.jclouds.docker.domain.Image;
-import org.jclouds.docker.domain.ImageSummary;
-import org.jclouds.docker.options.ListContainerOptions;
 import org.jclouds.docker.options.RemoveContainerOptions;
 import org.jclouds.domain.Location;
 import org.jclouds.domain.LoginCredentials;
@@ -70,10 +65,15 @@ public class DockerComputeServiceAdapter implements
    protected Logger logger = Logger.NULL;
 
    private final DockerApi api;
+   private final InspectedImageCache imageCache;
+   private final ContainerStateIndex containerIndex;
 
    @Inject
-   public DockerComputeServiceAdapter(DockerApi api) {
+   public DockerComputeServiceAdapter(DockerApi api, InspectedImageCache imageCache,
+         ContainerStateIndex containerIndex) {
       this.api = checkNotNull(api, "api");
+      this.imageCache = checkNotNull(imageCache, "imageCache");
+      this.containerIndex = checkNotNull(containerIndex, "containerIndex");
    }
 
    @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -196,54 +196,32 @@ public class DockerComputeServiceAdapter implements
 
    /**
     * Method based on {@link org.jclouds.docker.features.ImageApi#listImages()}. It retrieves additional
-    * information by inspecting each image.
+    * information by inspecting each image, only the images which are not cached are inspected.
     *
     * @see org.jclouds.compute.ComputeServiceAdapter#listImages()
+    * @see InspectedImageCache
     */
    @Override
    public Set<Image> listImages() {
-      Set<Image> images = Sets.newHashSet();
-      for (ImageSummary imageSummary : api.getImageApi().listImages()) {
-         // less efficient than just listImages but returns richer json that needs repoTags coming from listImages
-         Image inspected = api.getImageApi().inspectImage(imageSummary.id());
-         inspected = Image.create(inspected.id(), inspected.author(), inspected.comment(), inspected.config(),
-                    inspected.containerConfig(), inspected.parent(), inspected.created(), inspected.container(),
-                 inspected.dockerVersion(), inspected.architecture(), inspected.os(), inspected.size(),
-                    inspected.virtualSize(), imageSummary.repoTags());
-         images.add(inspected);
-      }
-      return images;
+      return imageCache.listImages();
    }
 
    @Override
    public Image getImage(final String imageId) {
-      // less efficient than just inspectImage but listImages return repoTags
-      return find(listImages(), new Predicate<Image>() {
-
-         @Override
-         public boolean apply(Image input) {
-            return input.id().equals(imageId);
-         }
-      }, null);
+      return imageCache.getImage(imageId);
    }
 
+   /**
+    * @see ContainerStateIndex
+    */
    @Override
    public Iterable<Container> listNodes() {
-      Set<Container> containers = Sets.newHashSet();
-      for (ContainerSummary containerSummary : api.getContainerApi().listContainers(ListContainerOptions.Builder.all(true))) {
-         // less efficient than just listNodes but returns richer json
-         containers.add(api.getContainerApi().inspectContainer(containerSummary.id()));
-      }
-      return containers;
+      return containerIndex.listNodes();
    }
 
    @Override
    public Iterable<Container> listNodesByIds(final Iterable<String> ids) {
-      Set<Container> containers = Sets.newHashSet();
-      for (String id : ids) {
-         containers.add(api.getContainerApi().inspectContainer(id));
-      }
-      return containers;
+      return containerIndex.listNodesByIds(ids);
    }
 
    @Override
@@ -253,7 +231,7 @@ public class DockerComputeServiceAdapter implements
 
    @Override
    public Container getNode(String id) {
-      return api.getContainerApi().inspectContainer(id);
+      return containerIndex.getNode(id);
    }
 
    @Override
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.compute.strategy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.docker.DockerApiMetadata.DOCKER_IMAGE_CACHE_TTL;
+import static org.jclouds.docker.DockerApiMetadata.DOCKER_INSPECT_CONCURRENCY;
+import static org.jclouds.docker.DockerApiMetadata.DOCKER_INSPECT_TIMEOUT;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.Constants;
+import org.jclouds.compute.reference.ComputeServiceConstants;
+import org.jclouds.docker.DockerApi;
+import org.jclouds.docker.domain.Image;
+import org.jclouds.docker.domain.ImageSummary;
+import org.jclouds.docker.internal.ParallelLookup;
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Caches inspected images by id, so listing images only inspects the images which are new or have
+ * been rebuilt since the previous listing.
+ * <p>
+ * Each listing of the daemon images validates the cache: entries of images which are gone are
+ * dropped, and images whose creation date changed are inspected again. The repository tags, which
+ * change without changing the image, are always taken from the listing. Entries also expire after
+ * {@link org.jclouds.docker.DockerApiMetadata#DOCKER_IMAGE_CACHE_TTL} seconds, which bounds how long
+ * {@link #getImage(String)} may return an image that is no longer on the daemon.
+ */
+@Singleton
+public class InspectedImageCache {
+
+   @Resource
+   @Named(ComputeServiceConstants.COMPUTE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final DockerApi api;
+   private final ListeningExecutorService userExecutor;
+   private final int inspectConcurrency;
+   private final long inspectTimeout;
+   private final Cache<String, CachedImage> images;
+
+   @Inject
+   InspectedImageCache(DockerApi api, @Named(Constants.PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(DOCKER_INSPECT_CONCURRENCY) int inspectConcurrency, @Named(DOCKER_INSPECT_TIMEOUT) long inspectTimeout,
+         @Named(DOCKER_IMAGE_CACHE_TTL) long ttl) {
+      this.api = checkNotNull(api, "api");
+      this.userExecutor = checkNotNull(userExecutor, "userExecutor");
+      this.inspectConcurrency = Math.max(inspectConcurrency, 1);
+      this.inspectTimeout = inspectTimeout;
+      this.images = ttl > 0 ? CacheBuilder.newBuilder().expireAfterWrite(ttl, TimeUnit.SECONDS).<String, CachedImage> build()
+            : CacheBuilder.newBuilder().maximumSize(0).<String, CachedImage> build();
+   }
+
+   /**
+    * Lists the images of the daemon, inspecting the ones which are not cached in parallel.
+    */
+   public Set<Image> listImages() {
+      List<ImageSummary> summaries = api.getImageApi().listImages();
+      Set<Image> result = Sets.newHashSet();
+      List<ImageSummary> stale = Lists.newArrayList();
+      for (ImageSummary summary : summaries) {
+         Image image = cached(summary);
+         if (image != null) {
+            result.add(image);
+         } else {
+            stale.add(summary);
+         }
+      }
+      result.addAll(inspect(stale));
+
+      Set<String> ids = Sets.newHashSet();
+      for (ImageSummary summary : summaries) {
+         ids.add(summary.id());
+      }
+      images.invalidateAll(Sets.difference(ImmutableSet.copyOf(images.asMap().keySet()), ids));
+      return result;
+   }
+
+   /**
+    * Gets an image by id. A cached image is returned without calling the daemon, otherwise only
+    * this image is inspected.
+    *
+    * @return the image, or null if there is no image with this id
+    */
+   public Image getImage(String imageId) {
+      CachedImage cached = images.getIfPresent(imageId);
+      if (cached != null) {
+         return cached.image;
+      }
+      // The listing has the repository tags the inspection lacks
+      for (ImageSummary summary : api.getImageApi().listImages()) {
+         if (summary.id().equals(imageId)) {
+            Set<Image> inspected = inspect(ImmutableList.of(summary));
+            return inspected.isEmpty() ? null : inspected.iterator().next();
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Gets the cached image of a summary, with the tags of the summary, or null if it must be inspected.
+    */
+   private Image cached(ImageSummary summary) {
+      CachedImage cached = images.getIfPresent(summary.id());
+      if (cached == null || cached.created != summary.created()) {
+         return null;
+      }
+      if (!Objects.equal(cached.image.repoTags(), summary.repoTags())) {
+         Image image = withRepoTags(cached.image, summary.repoTags());
+         images.put(summary.id(), new CachedImage(summary.created(), image));
+         return image;
+      }
+      return cached.image;
+   }
+
+   private Set<Image> inspect(List<ImageSummary> summaries) {
+      if (summaries.isEmpty()) {
+         return ImmutableSet.of();
+      }
+      Map<String, ImageSummary> byId = Maps.newLinkedHashMap();
+      for (ImageSummary summary : summaries) {
+         byId.put(summary.id(), summary);
+      }
+      Map<String, Image> inspected = new ParallelLookup(userExecutor, inspectConcurrency, inspectTimeout, logger)
+            .lookup(byId.keySet(), new Function<String, Image>() {
+               @Override
+               public Image apply(String id) {
+                  return api.getImageApi().inspectImage(id);
+               }
+            });
+      Set<Image> result = Sets.newHashSet();
+      for (Map.Entry<String, Image> entry : inspected.entrySet()) {
+         ImageSummary summary = byId.get(entry.getKey());
+         // less efficient than just listImages but returns richer json that needs repoTags coming from listImages
+         Image image = withRepoTags(entry.getValue(), summary.repoTags());
+         images.put(summary.id(), new CachedImage(summary.created(), image));
+         result.add(image);
+      }
+      return result;
+   }
+
+   private static Image withRepoTags(Image inspected, List<String> repoTags) {
+      return Image.create(inspected.id(), inspected.author(), inspected.comment(), inspected.config(),
+            inspected.containerConfig(), inspected.parent(), inspected.created(), inspected.container(),
+            inspected.dockerVersion(), inspected.architecture(), inspected.os(), inspected.size(),
+            inspected.virtualSize(), repoTags);
+   }
+
+   private static final class CachedImage {
+
+      private final long created;
+      private final Image image;
+
+      private CachedImage(long created, Image image) {
+         this.created = created;
+         this.image = image;
+      }
+   }
+
+}
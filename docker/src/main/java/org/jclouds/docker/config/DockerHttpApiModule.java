@@ -18,12 +18,14 @@ package org.jclouds.docker.config;
 
 import com.google.common.base.Supplier;
 import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import com.google.inject.util.Modules;
 import org.jclouds.docker.DockerApi;
 import org.jclouds.docker.handlers.DockerErrorHandler;
 import org.jclouds.docker.suppliers.DockerUntrustedSSLContextSupplier;
+import org.jclouds.http.HttpCommandExecutorService;
 import org.jclouds.http.HttpErrorHandler;
 import org.jclouds.http.annotation.ClientError;
 import org.jclouds.http.annotation.Redirection;
@@ -51,7 +53,8 @@ public class DockerHttpApiModule extends HttpApiModule<DockerApi> {
    }
 
    /**
-    * This configures SSL certificate authentication when the Docker daemon is set to use an encrypted TCP socket
+    * This configures SSL certificate authentication when the Docker daemon is set to use an encrypted TCP socket,
+    * and the Unix domain socket transport when the endpoint is a {@code unix://} URI
     */
    @Override
    protected void configure() {
@@ -60,6 +63,7 @@ public class DockerHttpApiModule extends HttpApiModule<DockerApi> {
          @Override
          protected void configure() {
             bind(new TypeLiteral<Supplier<SSLContext>>() {}).annotatedWith(Names.named("untrusted")).to(DockerUntrustedSSLContextSupplier.class);
+            bind(HttpCommandExecutorService.class).to(UnixSocketCommandExecutorService.class).in(Scopes.SINGLETON);
          }
       }));
       bind(OkHttpClientSupplier.class).to(DockerOkHttpClientSupplier.class);
@@ -17,6 +17,7 @@
 package org.jclouds.docker.config;
 
 import java.io.File;
+import java.net.URI;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -37,16 +38,26 @@ public class DockerOkHttpClientSupplier implements OkHttpClientSupplier {
 
     private final DockerSSLContextSupplier dockerSSLContextSupplier;
     private final Supplier<Credentials> creds;
+    private final Supplier<URI> endpoint;
 
     @Inject
-    DockerOkHttpClientSupplier(DockerSSLContextSupplier dockerSSLContextSupplier, @Provider Supplier<Credentials> creds) {
+    DockerOkHttpClientSupplier(DockerSSLContextSupplier dockerSSLContextSupplier, @Provider Supplier<Credentials> creds,
+          @Provider Supplier<URI> endpoint) {
         this.dockerSSLContextSupplier = dockerSSLContextSupplier;
         this.creds = creds;
+        this.endpoint = endpoint;
     }
 
     @Override
     public OkHttpClient get() {
         OkHttpClient client = new OkHttpClient();
+        URI uri = endpoint.get();
+        if (UnixSocketFactory.isUnixSocket(uri)) {
+           // plain HTTP over the socket file, there is neither a TCP connection nor a TLS handshake
+           client.setSocketFactory(UnixSocketFactory.forEndpoint(uri));
+           client.setConnectionSpecs(ImmutableList.of(ConnectionSpec.CLEARTEXT));
+           return client;
+        }
         ConnectionSpec tlsSpec = new ConnectionSpec.Builder(ConnectionSpec.MODERN_TLS)
                 .tlsVersions(TlsVersion.TLS_1_0, TlsVersion.TLS_1_1, TlsVersion.TLS_1_2)
                 .build();
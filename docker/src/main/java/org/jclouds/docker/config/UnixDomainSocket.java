@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import jnr.unixsocket.UnixSocketOptions;
+
+/**
+ * A {@link Socket} connected to a Unix domain socket instead of a TCP address.
+ * <p>
+ * Whatever address it is asked to connect to, the socket connects to the socket file it was created
+ * for, so HTTP clients can keep resolving and pooling connections by host name. The TCP options
+ * have no meaning here and are ignored, except for the read timeout which is applied to the socket.
+ */
+final class UnixDomainSocket extends Socket {
+
+   private final File path;
+   private final Object lock = new Object();
+   private UnixSocketChannel channel;
+   private SocketAddress remoteAddress;
+   private int soTimeout;
+   private volatile boolean closed;
+   private volatile boolean inputShutdown;
+   private volatile boolean outputShutdown;
+
+   UnixDomainSocket(File path) {
+      this.path = checkNotNull(path, "path");
+   }
+
+   @Override
+   public void connect(SocketAddress endpoint) throws IOException {
+      connect(endpoint, 0);
+   }
+
+   @Override
+   public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      synchronized (lock) {
+         if (closed) {
+            throw new SocketException("Socket is closed");
+         }
+         if (channel != null) {
+            throw new SocketException("already connected");
+         }
+         channel = UnixSocketChannel.open(new UnixSocketAddress(path));
+         remoteAddress = endpoint;
+         if (soTimeout > 0) {
+            applySoTimeout();
+         }
+      }
+   }
+
+   @Override
+   public void bind(SocketAddress bindpoint) throws IOException {
+      throw new SocketException("Unix domain sockets are not bound to a local address");
+   }
+
+   @Override
+   public InputStream getInputStream() throws IOException {
+      return new ChannelInputStream(connectedChannel());
+   }
+
+   @Override
+   public OutputStream getOutputStream() throws IOException {
+      return new ChannelOutputStream(connectedChannel());
+   }
+
+   @Override
+   public void setSoTimeout(int timeout) throws SocketException {
+      if (timeout < 0) {
+         throw new IllegalArgumentException("timeout can't be negative");
+      }
+      synchronized (lock) {
+         soTimeout = timeout;
+         if (channel != null) {
+            applySoTimeout();
+         }
+      }
+   }
+
+   @Override
+   public int getSoTimeout() throws SocketException {
+      synchronized (lock) {
+         return soTimeout;
+      }
+   }
+
+   private void applySoTimeout() throws SocketException {
+      try {
+         channel.setOption(UnixSocketOptions.SO_RCVTIMEO, soTimeout);
+      } catch (IOException e) {
+         SocketException exception = new SocketException("could not set the read timeout of " + path);
+         exception.initCause(e);
+         throw exception;
+      }
+   }
+
+   @Override
+   public void shutdownInput() throws IOException {
+      connectedChannel().shutdownInput();
+      inputShutdown = true;
+   }
+
+   @Override
+   public void shutdownOutput() throws IOException {
+      connectedChannel().shutdownOutput();
+      outputShutdown = true;
+   }
+
+   @Override
+   public void close() throws IOException {
+      UnixSocketChannel toClose;
+      synchronized (lock) {
+         if (closed) {
+            return;
+         }
+         closed = true;
+         toClose = channel;
+      }
+      if (toClose != null) {
+         toClose.close();
+      }
+   }
+
+   @Override
+   public boolean isConnected() {
+      synchronized (lock) {
+         return channel != null;
+      }
+   }
+
+   @Override
+   public boolean isBound() {
+      return isConnected();
+   }
+
+   @Override
+   public boolean isClosed() {
+      return closed;
+   }
+
+   @Override
+   public boolean isInputShutdown() {
+      return inputShutdown;
+   }
+
+   @Override
+   public boolean isOutputShutdown() {
+      return outputShutdown;
+   }
+
+   @Override
+   public InetAddress getInetAddress() {
+      synchronized (lock) {
+         return remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getAddress() : null;
+      }
+   }
+
+   @Override
+   public int getPort() {
+      synchronized (lock) {
+         return remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getPort() : 0;
+      }
+   }
+
+   @Override
+   public SocketAddress getRemoteSocketAddress() {
+      synchronized (lock) {
+         return remoteAddress;
+      }
+   }
+
+   @Override
+   public InetAddress getLocalAddress() {
+      return null;
+   }
+
+   @Override
+   public int getLocalPort() {
+      return -1;
+   }
+
+   @Override
+   public SocketAddress getLocalSocketAddress() {
+      return null;
+   }
+
+   @Override
+   public void setTcpNoDelay(boolean on) {
+   }
+
+   @Override
+   public boolean getTcpNoDelay() {
+      return false;
+   }
+
+   @Override
+   public void setKeepAlive(boolean on) {
+   }
+
+   @Override
+   public boolean getKeepAlive() {
+      return false;
+   }
+
+   @Override
+   public void setSoLinger(boolean on, int linger) {
+   }
+
+   @Override
+   public int getSoLinger() {
+      return -1;
+   }
+
+   @Override
+   public void setSendBufferSize(int size) {
+   }
+
+   @Override
+   public void setReceiveBufferSize(int size) {
+   }
+
+   @Override
+   public void setTrafficClass(int tc) {
+   }
+
+   @Override
+   public void setReuseAddress(boolean on) {
+   }
+
+   @Override
+   public void setOOBInline(boolean on) {
+   }
+
+   @Override
+   public void sendUrgentData(int data) throws IOException {
+      throw new SocketException("urgent data is not supported by Unix domain sockets");
+   }
+
+   @Override
+   public String toString() {
+      return "UnixDomainSocket[path=" + path + ", remote=" + getRemoteSocketAddress() + "]";
+   }
+
+   private UnixSocketChannel connectedChannel() throws SocketException {
+      synchronized (lock) {
+         if (closed) {
+            throw new SocketException("Socket is closed");
+         }
+         if (channel == null) {
+            throw new SocketException("Socket is not connected");
+         }
+         return channel;
+      }
+   }
+
+   /**
+    * Reads from the channel without the blocking lock of {@link java.nio.channels.Channels}, which
+    * would serialize the reads with the writes of the output stream.
+    */
+   private final class ChannelInputStream extends InputStream {
+
+      private final UnixSocketChannel source;
+
+      ChannelInputStream(UnixSocketChannel source) {
+         this.source = source;
+      }
+
+      @Override
+      public int read() throws IOException {
+         byte[] b = new byte[1];
+         int n = read(b, 0, 1);
+         return n == -1 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         if (len == 0) {
+            return 0;
+         }
+         ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+         int n;
+         // A blocking read only returns nothing once the read timeout expired
+         while ((n = source.read(buffer)) == 0) {
+            if (getSoTimeout() > 0) {
+               throw new SocketTimeoutException("Read timed out");
+            }
+         }
+         return n;
+      }
+
+      @Override
+      public void close() throws IOException {
+         UnixDomainSocket.this.close();
+      }
+
+   }
+
+   private final class ChannelOutputStream extends OutputStream {
+
+      private final UnixSocketChannel sink;
+
+      ChannelOutputStream(UnixSocketChannel sink) {
+         this.sink = sink;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+         write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+         ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+         while (buffer.hasRemaining()) {
+            sink.write(buffer);
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         UnixDomainSocket.this.close();
+      }
+
+   }
+
+}
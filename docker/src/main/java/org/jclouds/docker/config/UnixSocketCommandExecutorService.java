@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.net.URI;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpCommandExecutorService;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.okhttp.OkHttpCommandExecutorService;
+import org.jclouds.location.Provider;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Sends the requests to a {@code unix://} endpoint over HTTP to {@link UnixSocketFactory#HOST}.
+ * <p>
+ * The requests built against a Unix domain socket endpoint have the path of the socket file as a
+ * prefix of their path. It is removed and the request is sent by OkHttp, whose client connects to
+ * the socket file, see {@link DockerOkHttpClientSupplier}. Requests to any other endpoint are sent
+ * unchanged.
+ */
+@Singleton
+final class UnixSocketCommandExecutorService implements HttpCommandExecutorService {
+
+   private final OkHttpCommandExecutorService delegate;
+   private final Supplier<URI> endpoint;
+
+   @Inject
+   UnixSocketCommandExecutorService(OkHttpCommandExecutorService delegate, @Provider Supplier<URI> endpoint) {
+      this.delegate = checkNotNull(delegate, "delegate");
+      this.endpoint = checkNotNull(endpoint, "endpoint");
+   }
+
+   @Override
+   public HttpResponse invoke(HttpCommand command) {
+      HttpRequest request = command.getCurrentRequest();
+      if (UnixSocketFactory.isUnixSocket(request.getEndpoint())) {
+         command.setCurrentRequest(request.toBuilder().endpoint(toHttp(request.getEndpoint())).build());
+      }
+      return delegate.invoke(command);
+   }
+
+   private URI toHttp(URI uri) {
+      String socketPath = endpoint.get().getRawPath();
+      String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+      if (socketPath != null && path.startsWith(socketPath)) {
+         path = path.substring(socketPath.length());
+      }
+      if (!path.startsWith("/")) {
+         path = "/" + path;
+      }
+      StringBuilder http = new StringBuilder("http://").append(UnixSocketFactory.HOST).append(path);
+      if (uri.getRawQuery() != null) {
+         http.append('?').append(uri.getRawQuery());
+      }
+      return URI.create(http.toString());
+   }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.config;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+
+import javax.net.SocketFactory;
+
+/**
+ * Creates sockets connected to the Unix domain socket of a Docker daemon, such as
+ * {@code /var/run/docker.sock}.
+ * <p>
+ * The factory is selected by an endpoint with the {@code unix} scheme, for example
+ * {@code unix:///var/run/docker.sock}. The requests are sent to {@code http://localhost} and every
+ * connection the HTTP client opens for this host ends up on the socket file, so pooled connections
+ * are reused as they are over TCP.
+ */
+public final class UnixSocketFactory extends SocketFactory {
+
+   /**
+    * The scheme of Docker endpoints that are Unix domain sockets.
+    */
+   public static final String SCHEME = "unix";
+
+   /**
+    * The host the requests to a Unix domain socket are addressed to, it is not resolved to connect.
+    */
+   public static final String HOST = "localhost";
+
+   private final File path;
+
+   public UnixSocketFactory(File path) {
+      this.path = checkNotNull(path, "path");
+   }
+
+   /**
+    * @return the factory for the socket file of an endpoint with the {@link #SCHEME unix} scheme
+    */
+   public static UnixSocketFactory forEndpoint(URI endpoint) {
+      checkArgument(isUnixSocket(endpoint), "%s is not a unix socket endpoint", endpoint);
+      checkArgument(endpoint.getPath() != null && !endpoint.getPath().isEmpty(), "%s has no socket path", endpoint);
+      return new UnixSocketFactory(new File(endpoint.getPath()));
+   }
+
+   public static boolean isUnixSocket(URI endpoint) {
+      return SCHEME.equalsIgnoreCase(endpoint.getScheme());
+   }
+
+   public File getPath() {
+      return path;
+   }
+
+   @Override
+   public Socket createSocket() {
+      return new UnixDomainSocket(path);
+   }
+
+   @Override
+   public Socket createSocket(String host, int port) throws IOException {
+      return connect(InetSocketAddress.createUnresolved(host, port));
+   }
+
+   @Override
+   public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+      return createSocket(host, port);
+   }
+
+   @Override
+   public Socket createSocket(InetAddress host, int port) throws IOException {
+      return connect(new InetSocketAddress(host, port));
+   }
+
+   @Override
+   public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+         throws IOException {
+      return createSocket(address, port);
+   }
+
+   private Socket connect(InetSocketAddress address) throws IOException {
+      Socket socket = createSocket();
+      socket.connect(address);
+      return socket;
+   }
+
+   @Override
+   public String toString() {
+      return "UnixSocketFactory[path=" + path + "]";
+   }
+
+}
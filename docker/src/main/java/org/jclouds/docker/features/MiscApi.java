@@ -33,7 +33,9 @@ import org.jclouds.docker.domain.ExecStartParams;
 import org.jclouds.docker.domain.Info;
 import org.jclouds.docker.domain.Version;
 import org.jclouds.docker.options.BuildOptions;
+import org.jclouds.docker.options.EventOptions;
 import org.jclouds.docker.util.DockerInputStream;
+import org.jclouds.docker.util.EventStreamReader;
 import org.jclouds.io.Payload;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.Headers;
@@ -137,4 +139,26 @@ public interface MiscApi {
    @GET
    @Path("/exec/{id}/json")
    ExecInspect execInspect(@PathParam("id") String execId);
+
+   /**
+    * Streams the events of the daemon as they happen. The stream never ends unless the connection
+    * is closed.
+    *
+    * @return a stream of JSON events which can be read with {@link EventStreamReader}
+    */
+   @Named("events")
+   @GET
+   @Path("/events")
+   InputStream events();
+
+   /**
+    * Streams the events of the daemon.
+    *
+    * @param options the time range and the filters of the events (@see EventOptions)
+    * @return a stream of JSON events which can be read with {@link EventStreamReader}
+    */
+   @Named("events")
+   @GET
+   @Path("/events")
+   InputStream events(EventOptions options);
 }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+
+import org.jclouds.logging.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Looks up many resources, such as the containers of a daemon, with a bounded number of requests in
+ * flight and an overall deadline.
+ * <p>
+ * A lookup which fails or returns <code>null</code> is left out of the results, so callers get the
+ * resources which could be looked up rather than nothing. Lookups still running at the deadline are
+ * cancelled and left out too.
+ */
+public final class ParallelLookup {
+
+   private final ListeningExecutorService executor;
+   private final int concurrency;
+   private final long timeoutMillis;
+   private final Logger logger;
+
+   /**
+    * @param executor
+    *           the executor running the lookups
+    * @param concurrency
+    *           maximum number of lookups running at the same time
+    * @param timeoutMillis
+    *           time given to all the lookups of a call, 0 for no deadline
+    * @param logger
+    *           logger of the failed lookups
+    */
+   public ParallelLookup(ListeningExecutorService executor, int concurrency, long timeoutMillis, Logger logger) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      checkArgument(timeoutMillis >= 0, "timeoutMillis must be positive or zero");
+      this.executor = checkNotNull(executor, "executor");
+      this.concurrency = concurrency;
+      this.timeoutMillis = timeoutMillis;
+      this.logger = checkNotNull(logger, "logger");
+   }
+
+   /**
+    * Applies the function to each key.
+    *
+    * @return the results by key, in the order of the keys, without the failed lookups
+    */
+   public <K, V> Map<K, V> lookup(Iterable<K> keys, final Function<? super K, V> function) {
+      long deadline = timeoutMillis == 0 ? Long.MAX_VALUE : System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+      final Semaphore permits = new Semaphore(concurrency);
+      Map<K, ListenableFuture<V>> futures = Maps.newLinkedHashMap();
+      try {
+         for (final K key : keys) {
+            if (futures.containsKey(key)) {
+               continue;
+            }
+            if (!permits.tryAcquire(remaining(deadline), NANOSECONDS)) {
+               logger.warn("<< lookups timed out after %d ms, skipping %s and the following ones", timeoutMillis, key);
+               break;
+            }
+            try {
+               futures.put(key, executor.submit(new Callable<V>() {
+                  @Override
+                  public V call() {
+                     try {
+                        return function.apply(key);
+                     } finally {
+                        permits.release();
+                     }
+                  }
+               }));
+            } catch (RuntimeException e) {
+               permits.release();
+               throw e;
+            }
+         }
+
+         Map<K, V> results = Maps.newLinkedHashMap();
+         for (Map.Entry<K, ListenableFuture<V>> entry : futures.entrySet()) {
+            try {
+               V value = entry.getValue().get(remaining(deadline), NANOSECONDS);
+               if (value != null) {
+                  results.put(entry.getKey(), value);
+               }
+            } catch (ExecutionException e) {
+               logger.warn(e.getCause(), "<< lookup of %s failed", entry.getKey());
+            } catch (TimeoutException e) {
+               entry.getValue().cancel(true);
+               logger.warn("<< lookup of %s timed out after %d ms", entry.getKey(), timeoutMillis);
+            }
+         }
+         return results;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while looking up " + futures.keySet(), e);
+      } finally {
+         for (ListenableFuture<V> future : futures.values()) {
+            future.cancel(true);
+         }
+      }
+   }
+
+   private static long remaining(long deadline) {
+      return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(deadline - System.nanoTime(), 0);
+   }
+
+}
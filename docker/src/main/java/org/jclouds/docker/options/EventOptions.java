@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.options;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.http.options.BaseHttpRequestOptions;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+
+public class EventOptions extends BaseHttpRequestOptions {
+
+   private final Map<String, List<String>> filters = Maps.newLinkedHashMap();
+
+   /**
+    * Only returns the events which happened after this time, in seconds since the epoch.
+    */
+   public EventOptions since(Long since) {
+      this.queryParameters.put("since", since.toString());
+      return this;
+   }
+
+   /**
+    * Stops streaming the events at this time, in seconds since the epoch.
+    */
+   public EventOptions until(Long until) {
+      this.queryParameters.put("until", until.toString());
+      return this;
+   }
+
+   /**
+    * Only returns the events matching one of the values, such as <code>filter("event", "start", "die")</code>.
+    * The filters are event, image and container.
+    */
+   public EventOptions filter(String name, String... values) {
+      filters.put(name, ImmutableList.copyOf(values));
+      this.queryParameters.replaceValues("filters", ImmutableList.of(new Gson().toJson(filters)));
+      return this;
+   }
+
+   public static class Builder {
+
+      /**
+       * @see EventOptions#since
+       */
+      public static EventOptions since(Long since) {
+         EventOptions options = new EventOptions();
+         return options.since(since);
+      }
+
+      /**
+       * @see EventOptions#until
+       */
+      public static EventOptions until(Long until) {
+         EventOptions options = new EventOptions();
+         return options.until(until);
+      }
+
+      /**
+       * @see EventOptions#filter
+       */
+      public static EventOptions filter(String name, String... values) {
+         EventOptions options = new EventOptions();
+         return options.filter(name, values);
+      }
+
+   }
+
+}
@@ -24,9 +24,13 @@ import java.io.InputStream;
 /**
  * Extension to {@link DataInputStream} which adds method
  * {@link #readStdStreamData()} to allow read multiplexed standard streams.
+ * Each message is returned in its own array, see {@link StdStreamDemuxer} to
+ * copy the streams to sinks without allocating.
  */
 public final class DockerInputStream extends DataInputStream {
 
+   private final byte[] header = new byte[8];
+
    /**
     * Ctor from superclass.
     *
@@ -43,7 +47,6 @@ public final class DockerInputStream extends DataInputStream {
     * @throws IOException
     */
    public StdStreamData readStdStreamData() throws IOException {
-      byte[] header = new byte[8];
       // try to read first byte from the message header - just to check if we
       // are at the end
       // of stream
@@ -65,7 +68,15 @@ public final class DockerInputStream extends DataInputStream {
       if (size > Integer.MAX_VALUE) {
          truncated = true;
          // skip the rest
-         readFully(new byte[(int) (size - Integer.MAX_VALUE)]);
+         long remaining = size - Integer.MAX_VALUE;
+         while (remaining > 0) {
+            int skipped = skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+            if (skipped == 0) {
+               readByte();
+               skipped = 1;
+            }
+            remaining -= skipped;
+         }
       }
       return new StdStreamData(header[0], payload, truncated);
    }
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.util;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.NoSuchElementException;
+
+import org.jclouds.docker.domain.Event;
+import org.jclouds.json.Json;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.UnmodifiableIterator;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the events of {@link org.jclouds.docker.features.MiscApi#events()} one by one as they arrive.
+ * The daemon writes the events as a sequence of JSON objects, each event is parsed as soon as it has
+ * been received and the stream is never buffered as a whole.
+ * <p>
+ * {@link #hasNext()} blocks until the next event arrives or the stream ends. Closing the reader
+ * closes the stream, which makes a blocked {@link #hasNext()} fail. I/O errors are rethrown as
+ * runtime exceptions.
+ */
+public final class EventStreamReader extends UnmodifiableIterator<Event> implements Closeable {
+
+   private final JsonReader reader;
+   private final JsonParser parser = new JsonParser();
+   private final Json json;
+
+   /**
+    * @param in
+    *           the stream returned by the events API
+    * @param json
+    *           the parser of the API, which knows the docker value classes
+    */
+   public EventStreamReader(InputStream in, Json json) {
+      this.reader = new JsonReader(new InputStreamReader(checkNotNull(in, "in"), UTF_8));
+      // The events are top level values one after the other
+      this.reader.setLenient(true);
+      this.json = checkNotNull(json, "json");
+   }
+
+   @Override
+   public boolean hasNext() {
+      try {
+         return reader.peek() != JsonToken.END_DOCUMENT;
+      } catch (IOException e) {
+         throw Throwables.propagate(e);
+      }
+   }
+
+   @Override
+   public Event next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      return json.fromJson(parser.parse(reader).toString(), Event.class);
+   }
+
+   @Override
+   public void close() throws IOException {
+      reader.close();
+   }
+
+}
@@ -17,7 +17,7 @@
 
 package org.jclouds.docker.util;
 
-import java.util.Arrays;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Representation of single message from docker-raw-stream. It holds stream
@@ -37,7 +37,7 @@ public final class StdStreamData {
     * @param streamTypeId
     *           standard stream type (0=stdIn, 1=stdOut, 2=stdErr)
     * @param payload
-    *           message data - must not be <code>null</code>
+    *           message data - must not be <code>null</code>, it is not copied
     * @param truncated
     * @throws ArrayIndexOutOfBoundsException
     *            if streamTypeId is not an index in {@link StdStreamType} enum.
@@ -47,7 +47,7 @@ public final class StdStreamData {
    StdStreamData(byte streamTypeId, byte[] payload, boolean truncated)
          throws ArrayIndexOutOfBoundsException, NullPointerException {
       this.type = StdStreamType.values()[streamTypeId];
-      this.payload = Arrays.copyOf(payload, payload.length);
+      this.payload = checkNotNull(payload, "payload");
       this.truncated = truncated;
    }
 
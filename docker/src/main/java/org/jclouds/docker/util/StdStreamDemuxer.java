@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.jclouds.docker.util.StdStreamData.StdStreamType;
+
+/**
+ * Demultiplexes a docker-raw-stream, as returned by the attach and exec start
+ * endpoints, into one sink per standard stream.
+ * <p>
+ * Unlike {@link DockerInputStream#readStdStreamData()}, frames are never
+ * materialized: their payload is copied to the sink of its stream through a
+ * single buffer reused for the whole stream, so frames of any size, including
+ * frames bigger than the buffer, are copied without allocating. Frames of the
+ * standard input are written to the standard output sink, as docker does. A
+ * <code>null</code> sink discards the frames of its stream.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class StdStreamDemuxer {
+
+   public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+   private static final int HEADER_SIZE = 8;
+
+   private final InputStream in;
+   private final byte[] header = new byte[HEADER_SIZE];
+   private final byte[] buffer;
+   private final ByteBuffer byteBuffer;
+
+   /**
+    * @param in
+    *           the multiplexed stream
+    */
+   public StdStreamDemuxer(InputStream in) {
+      this(in, DEFAULT_BUFFER_SIZE);
+   }
+
+   /**
+    * @param in
+    *           the multiplexed stream
+    * @param bufferSize
+    *           size of the buffer the payloads are copied through
+    */
+   public StdStreamDemuxer(InputStream in, int bufferSize) {
+      checkArgument(bufferSize > 0, "bufferSize must be positive");
+      this.in = checkNotNull(in, "in");
+      this.buffer = new byte[bufferSize];
+      this.byteBuffer = ByteBuffer.wrap(buffer);
+   }
+
+   /**
+    * Copies all the remaining frames to the sinks of their streams.
+    *
+    * @return number of payload bytes read
+    * @throws EOFException
+    *            if the stream ends in the middle of a frame
+    */
+   public long demux(OutputStream out, OutputStream err) throws IOException {
+      long total = 0;
+      long size;
+      while ((size = readHeader()) >= 0) {
+         copy(size, header[0] == StdStreamType.ERR.ordinal() ? err : out);
+         total += size;
+      }
+      return total;
+   }
+
+   /**
+    * Copies all the remaining frames to the channels of their streams.
+    *
+    * @return number of payload bytes read
+    * @throws EOFException
+    *            if the stream ends in the middle of a frame
+    */
+   public long demux(WritableByteChannel out, WritableByteChannel err) throws IOException {
+      long total = 0;
+      long size;
+      while ((size = readHeader()) >= 0) {
+         copy(size, header[0] == StdStreamType.ERR.ordinal() ? err : out);
+         total += size;
+      }
+      return total;
+   }
+
+   /**
+    * Copies the next frame to the sink of its stream.
+    *
+    * @return the stream of the frame, or <code>null</code> if the end of the
+    *         stream was reached
+    * @throws EOFException
+    *            if the stream ends in the middle of the frame
+    */
+   public StdStreamType demuxFrame(OutputStream out, OutputStream err) throws IOException {
+      long size = readHeader();
+      if (size < 0) {
+         return null;
+      }
+      StdStreamType type = StdStreamType.values()[header[0]];
+      copy(size, type == StdStreamType.ERR ? err : out);
+      return type;
+   }
+
+   /**
+    * Copies the next frame to the channel of its stream.
+    *
+    * @return the stream of the frame, or <code>null</code> if the end of the
+    *         stream was reached
+    * @throws EOFException
+    *            if the stream ends in the middle of the frame
+    */
+   public StdStreamType demuxFrame(WritableByteChannel out, WritableByteChannel err) throws IOException {
+      long size = readHeader();
+      if (size < 0) {
+         return null;
+      }
+      StdStreamType type = StdStreamType.values()[header[0]];
+      copy(size, type == StdStreamType.ERR ? err : out);
+      return type;
+   }
+
+   /**
+    * Reads the header of the next frame.
+    *
+    * @return the size of the payload, or -1 at the end of the stream
+    */
+   private long readHeader() throws IOException {
+      int read = 0;
+      while (read < HEADER_SIZE) {
+         int count = in.read(header, read, HEADER_SIZE - read);
+         if (count < 0) {
+            if (read == 0) {
+               return -1;
+            }
+            throw new EOFException("Stream ended in a frame header");
+         }
+         read += count;
+      }
+      if (header[0] < 0 || header[0] >= StdStreamType.values().length) {
+         throw new IOException("Invalid stream type " + header[0]);
+      }
+      // decode size as an unsigned int
+      return (long) (header[4] & 0xFF) << 24 | (header[5] & 0xFF) << 16 | (header[6] & 0xFF) << 8
+            | (header[7] & 0xFF);
+   }
+
+   /**
+    * Reads at most <code>remaining</code> bytes in the buffer.
+    */
+   private int fill(long remaining) throws IOException {
+      int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+      if (count < 0) {
+         throw new EOFException("Stream ended in a frame payload");
+      }
+      return count;
+   }
+
+   private void copy(long size, OutputStream sink) throws IOException {
+      long remaining = size;
+      while (remaining > 0) {
+         int count = fill(remaining);
+         if (sink != null) {
+            sink.write(buffer, 0, count);
+         }
+         remaining -= count;
+      }
+   }
+
+   private void copy(long size, WritableByteChannel sink) throws IOException {
+      long remaining = size;
+      while (remaining > 0) {
+         int count = fill(remaining);
+         if (sink != null) {
+            byteBuffer.clear();
+            byteBuffer.limit(count);
+            while (byteBuffer.hasRemaining()) {
+               sink.write(byteBuffer);
+            }
+         }
+         remaining -= count;
+      }
+   }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.compute.strategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.docker.DockerApi;
+import org.jclouds.docker.config.DockerParserModule;
+import org.jclouds.docker.internal.BaseDockerMockTest;
+import org.jclouds.json.Json;
+import org.jclouds.json.config.GsonModule;
+import org.jclouds.lifecycle.Closer;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Guice;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Mock tests for the {@link ContainerStateIndex} class.
+ */
+@Test(groups = "unit", testName = "ContainerStateIndexMockTest")
+public class ContainerStateIndexMockTest extends BaseDockerMockTest {
+
+   private static final String FIRST_ID = "6d35806c1bd2b25cd92bba2d2c2c5169dc2156f53ab45c2b62d76e2d2fee14a9";
+   private static final String SECOND_ID = "6d35806c1bd2b25cd92bba2d2c2c5169dc2156f53ab45c2b62d76e2d2fee14a2";
+   private static final String LIST_PATH = "/v" + API_VERSION + "/containers/json?all=true";
+
+   private final Json json = Guice.createInjector(new GsonModule(), new DockerParserModule()).getInstance(Json.class);
+
+   public void testIndexFollowsEvents() throws Exception {
+      DockerDaemon daemon = new DockerDaemon();
+      MockWebServer server = new MockWebServer();
+      server.setDispatcher(daemon);
+      server.play();
+      ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+      ContainerStateIndex index = index(server, executor);
+      try {
+         // Not live yet, the container is inspected and the events stream is opened
+         index.getNode(FIRST_ID);
+         assertEquals(daemon.eventRequests.take(), "/v" + API_VERSION + "/events");
+         assertEquals(daemon.requests.count(inspectPath(FIRST_ID)), 1);
+
+         // The first stream ends at once, it is resumed and the index is kept
+         daemon.events.put(new MockResponse());
+         assertThat(daemon.eventRequests.take()).startsWith("/v" + API_VERSION + "/events?since=");
+
+         index.listNodes();
+         assertEquals(daemon.requests.count(LIST_PATH), 1);
+         assertEquals(daemon.requests.count(inspectPath(FIRST_ID)), 2);
+         assertEquals(daemon.requests.count(inspectPath(SECOND_ID)), 1);
+
+         // Served from memory while the stream is live
+         index.listNodes();
+         index.getNode(FIRST_ID);
+         index.getNode(SECOND_ID);
+         assertEquals(daemon.requests.count(LIST_PATH), 1);
+         assertEquals(daemon.requests.count(inspectPath(FIRST_ID)), 2);
+         assertEquals(daemon.requests.count(inspectPath(SECOND_ID)), 1);
+
+         // Only the container which emitted an event is inspected again
+         daemon.events.put(new MockResponse().setBody(
+               "{\"status\":\"die\",\"id\":\"" + SECOND_ID + "\",\"from\":\"busybox:latest\",\"time\":1423339500}"));
+         assertEquals(daemon.eventRequests.take(), "/v" + API_VERSION + "/events?since=1423339500");
+         index.listNodes();
+         assertEquals(daemon.requests.count(LIST_PATH), 1);
+         assertEquals(daemon.requests.count(inspectPath(FIRST_ID)), 2);
+         assertEquals(daemon.requests.count(inspectPath(SECOND_ID)), 2);
+
+         // The stream cannot be resumed, the index is dropped until a new stream is open
+         daemon.events.put(new MockResponse().setResponseCode(404));
+         assertEquals(daemon.eventRequests.poll(30, TimeUnit.SECONDS), "/v" + API_VERSION + "/events");
+         index.listNodes();
+         index.getNode(FIRST_ID);
+         assertEquals(daemon.requests.count(LIST_PATH), 2);
+         assertEquals(daemon.requests.count(inspectPath(FIRST_ID)), 4);
+         assertEquals(daemon.requests.count(inspectPath(SECOND_ID)), 3);
+      } finally {
+         index.close();
+         daemon.events.put(new MockResponse());
+         executor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   private ContainerStateIndex index(MockWebServer server, ListeningExecutorService executor) {
+      DockerApi api = api(DockerApi.class, server.getUrl("/").toString(), new DockerParserModule());
+      return new ContainerStateIndex(api, json, executor, 4, 0, true, new Closer());
+   }
+
+   private static String inspectPath(String id) {
+      return "/v" + API_VERSION + "/containers/" + id + "/json";
+   }
+
+   /**
+    * Answers the listing and inspections of the containers, and holds each events request until the
+    * test hands out its response.
+    */
+   private final class DockerDaemon extends Dispatcher {
+
+      private final Multiset<String> requests = ConcurrentHashMultiset.create();
+      private final BlockingQueue<String> eventRequests = new LinkedBlockingQueue<String>();
+      private final BlockingQueue<MockResponse> events = new LinkedBlockingQueue<MockResponse>();
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+         String path = request.getPath();
+         if (path.startsWith("/v" + API_VERSION + "/events")) {
+            eventRequests.put(path);
+            return events.take();
+         }
+         requests.add(path);
+         if (path.equals(LIST_PATH)) {
+            return new MockResponse().setBody(payloadFromResource("/containers.json"));
+         }
+         if (path.equals(inspectPath(FIRST_ID)) || path.equals(inspectPath(SECOND_ID))) {
+            return new MockResponse().setBody(payloadFromResource("/container.json"));
+         }
+         return new MockResponse().setResponseCode(404);
+      }
+   }
+
+}
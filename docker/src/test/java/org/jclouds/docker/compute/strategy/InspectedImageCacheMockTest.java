@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.compute.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.jclouds.docker.DockerApi;
+import org.jclouds.docker.config.DockerParserModule;
+import org.jclouds.docker.domain.Image;
+import org.jclouds.docker.internal.BaseDockerMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+/**
+ * Mock tests for the {@link InspectedImageCache} class.
+ */
+@Test(groups = "unit", testName = "InspectedImageCacheMockTest")
+public class InspectedImageCacheMockTest extends BaseDockerMockTest {
+
+   private static final String BUSYBOX_ID = "d7057cb020844f245031d27b76cb18af05db1cc3a96a29fa7777af75f5ac91a3";
+   private static final String ALPINE_ID = "f4fddc471ec22fc1f7d37768132f1753bc171121e30ac2af7fcb0302588197c0";
+
+   public void testListImagesInspectsOnlyUncachedImages() throws Exception {
+      MockResponse images = new MockResponse().setBody(payloadFromResource("/images.json"));
+      MockResponse image = new MockResponse().setBody(payloadFromResource("/image.json"));
+      MockWebServer server = mockWebServer(images, image, image, image, image, images);
+      InspectedImageCache cache = cache(server);
+      try {
+         assertEquals(cache.listImages().size(), 4);
+         assertEquals(server.getRequestCount(), 5);
+         // The second listing finds all the images in the cache
+         assertEquals(cache.listImages().size(), 4);
+         assertEquals(server.getRequestCount(), 6);
+
+         Image busybox = cache.getImage(BUSYBOX_ID);
+         assertEquals(busybox.repoTags(), ImmutableList.of("docker.io/busybox:1.23.2", "docker.io/busybox:latest"));
+         assertEquals(server.getRequestCount(), 6);
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void testGetImageInspectsOnlyThatImage() throws Exception {
+      MockResponse images = new MockResponse().setBody(payloadFromResource("/images.json"));
+      MockWebServer server = mockWebServer(images, new MockResponse().setBody(payloadFromResource("/image.json")),
+            images);
+      InspectedImageCache cache = cache(server);
+      try {
+         Image alpine = cache.getImage(ALPINE_ID);
+         assertEquals(alpine.repoTags(), ImmutableList.of("docker.io/alpine:3.2"));
+         assertSent(server, "GET", "/images/json");
+         assertSent(server, "GET", "/images/" + ALPINE_ID + "/json");
+
+         assertNull(cache.getImage("unknown"));
+         assertSent(server, "GET", "/images/json");
+         assertEquals(server.getRequestCount(), 3);
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   private InspectedImageCache cache(MockWebServer server) {
+      DockerApi api = api(DockerApi.class, server.getUrl("/").toString(), new DockerParserModule());
+      return new InspectedImageCache(api, sameThreadExecutor(), 4, 0, 60);
+   }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.config;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jclouds.docker.compute.BaseDockerApiLiveTest.tarredDockerfile;
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.docker.DockerApi;
+import org.jclouds.docker.DockerApiMetadata;
+import org.jclouds.docker.internal.BaseDockerMockTest;
+import org.jclouds.docker.options.CreateImageOptions;
+import org.jclouds.docker.parse.VersionParseTest;
+import org.jclouds.docker.util.StdStreamDemuxer;
+import org.jclouds.io.Payload;
+import org.jclouds.util.Closeables2;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sends requests through {@link UnixSocketFactory} to a stand-in daemon listening on a Unix domain
+ * socket.
+ */
+@Test(groups = "unit", testName = "UnixSocketTransportTest", singleThreaded = true)
+public class UnixSocketTransportTest extends BaseDockerMockTest {
+
+   private File dir;
+   private StandInDaemon daemon;
+   private DockerApi api;
+
+   @BeforeMethod
+   public void startDaemon() throws IOException {
+      if (System.getProperty("os.name").toLowerCase(Locale.ENGLISH).startsWith("windows")) {
+         throw new SkipException("Unix domain sockets are not available");
+      }
+      dir = Files.createTempDir();
+      daemon = new StandInDaemon(new File(dir, "docker.sock"));
+      Properties overrides = new Properties();
+      addOverrideProperties(overrides);
+      api = ContextBuilder.newBuilder(new DockerApiMetadata())
+            .endpoint("unix://" + daemon.socket.getAbsolutePath())
+            .credentials("identity", "credential")
+            .overrides(overrides)
+            .buildApi(DockerApi.class);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void stopDaemon() throws IOException {
+      Closeables2.closeQuietly(api);
+      Closeables2.closeQuietly(daemon);
+      if (dir != null) {
+         new File(dir, "docker.sock").delete();
+         dir.delete();
+      }
+   }
+
+   public void testRequestsReuseConnection() throws Exception {
+      daemon.enqueue(payloadFromResource("/version.json"), false);
+      daemon.enqueue(payloadFromResource("/version.json"), false);
+
+      assertEquals(api.getMiscApi().getVersion(), new VersionParseTest().expected());
+      assertEquals(api.getMiscApi().getVersion(), new VersionParseTest().expected());
+
+      assertThat(daemon.takeRequest().requestLine).isEqualTo("GET /v" + API_VERSION + "/version HTTP/1.1");
+      assertThat(daemon.takeRequest().requestLine).isEqualTo("GET /v" + API_VERSION + "/version HTTP/1.1");
+      assertEquals(daemon.connections.get(), 1);
+   }
+
+   public void testAttachStreamsOverUnixSocket() throws Exception {
+      ByteArrayOutputStream frames = new ByteArrayOutputStream();
+      frames.write(frame(1, "hello world\n"));
+      frames.write(frame(2, "warning\n"));
+      frames.write(frame(1, "bye\n"));
+      daemon.enqueue(frames.toByteArray(), false);
+      daemon.enqueue(payloadFromResource("/version.json"), false);
+
+      InputStream attached = api.getContainerApi().attach("1");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      try {
+         new StdStreamDemuxer(attached).demux(out, err);
+      } finally {
+         attached.close();
+      }
+      assertEquals(new String(out.toByteArray(), UTF_8), "hello world\nbye\n");
+      assertEquals(new String(err.toByteArray(), UTF_8), "warning\n");
+
+      // The connection goes back to the pool once the stream has been read
+      assertEquals(api.getMiscApi().getVersion(), new VersionParseTest().expected());
+      assertThat(daemon.takeRequest().requestLine).isEqualTo("POST /v" + API_VERSION + "/containers/1/attach HTTP/1.1");
+      assertThat(daemon.takeRequest().requestLine).isEqualTo("GET /v" + API_VERSION + "/version HTTP/1.1");
+      assertEquals(daemon.connections.get(), 1);
+   }
+
+   public void testBuildOverUnixSocket() throws Exception {
+      String progress = "{\"stream\":\"Step 0 : FROM busybox\\n\"}\r\n{\"stream\":\"Successfully built 1\\n\"}\r\n";
+      daemon.enqueue(progress.getBytes(UTF_8), true);
+      daemon.enqueue(payloadFromResource("/version.json"), false);
+
+      Payload tar = tarredDockerfile();
+      byte[] tarBytes = ByteStreams.toByteArray(tar.openStream());
+      InputStream built = api.getMiscApi().build(tar);
+      try {
+         assertEquals(new String(ByteStreams.toByteArray(built), UTF_8), progress);
+      } finally {
+         built.close();
+      }
+
+      RecordedCall request = daemon.takeRequest();
+      assertThat(request.requestLine).isEqualTo("POST /v" + API_VERSION + "/build HTTP/1.1");
+      assertEquals(request.body, tarBytes);
+
+      // The build asks to close its connection, the next request opens another one
+      assertEquals(api.getMiscApi().getVersion(), new VersionParseTest().expected());
+      daemon.takeRequest();
+      assertEquals(daemon.connections.get(), 2);
+   }
+
+   public void testCreateImageOverUnixSocket() throws Exception {
+      String progress = "{\"status\":\"Pulling from library/busybox\"}\r\n{\"status\":\"Download complete\"}\r\n";
+      daemon.enqueue(progress.getBytes(UTF_8), false);
+
+      InputStream pulled = api.getImageApi().createImage(CreateImageOptions.Builder.fromImage("busybox"));
+      try {
+         assertEquals(new String(ByteStreams.toByteArray(pulled), UTF_8), progress);
+      } finally {
+         pulled.close();
+      }
+      assertThat(daemon.takeRequest().requestLine)
+            .isEqualTo("POST /v" + API_VERSION + "/images/create?fromImage=busybox HTTP/1.1");
+   }
+
+   private static byte[] frame(int stream, String data) {
+      byte[] bytes = data.getBytes(UTF_8);
+      return ByteBuffer.allocate(8 + bytes.length).put((byte) stream).put(new byte[3]).putInt(bytes.length).put(bytes)
+            .array();
+   }
+
+   static final class RecordedCall {
+      final String requestLine;
+      final byte[] body;
+
+      RecordedCall(String requestLine, byte[] body) {
+         this.requestLine = requestLine;
+         this.body = body;
+      }
+   }
+
+   /**
+    * Answers HTTP/1.1 requests on a Unix domain socket with the enqueued bodies, one connection per
+    * thread, keeping the connections open unless a response closes it.
+    */
+   static final class StandInDaemon implements Closeable {
+
+      private static final class Response {
+         final byte[] body;
+         final boolean close;
+
+         Response(byte[] body, boolean close) {
+            this.body = body;
+            this.close = close;
+         }
+      }
+
+      final File socket;
+      final AtomicInteger connections = new AtomicInteger();
+      private final UnixServerSocketChannel server;
+      private final ExecutorService threads = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("stand-in-docker-%d").setDaemon(true).build());
+      private final BlockingQueue<Response> responses = new LinkedBlockingQueue<Response>();
+      private final BlockingQueue<RecordedCall> requests = new LinkedBlockingQueue<RecordedCall>();
+
+      StandInDaemon(File socket) throws IOException {
+         this.socket = socket;
+         this.server = UnixServerSocketChannel.open();
+         server.socket().bind(new UnixSocketAddress(socket));
+         threads.execute(new Runnable() {
+            @Override
+            public void run() {
+               accept();
+            }
+         });
+      }
+
+      void enqueue(byte[] body, boolean close) {
+         responses.add(new Response(body, close));
+      }
+
+      RecordedCall takeRequest() throws InterruptedException {
+         RecordedCall request = requests.poll(10, TimeUnit.SECONDS);
+         assertThat(request).as("request received").isNotNull();
+         return request;
+      }
+
+      private void accept() {
+         try {
+            while (true) {
+               final UnixSocketChannel channel = server.accept();
+               if (channel == null) {
+                  return;
+               }
+               connections.incrementAndGet();
+               threads.execute(new Runnable() {
+                  @Override
+                  public void run() {
+                     serve(channel);
+                  }
+               });
+            }
+         } catch (IOException e) {
+            // closed
+         }
+      }
+
+      private void serve(UnixSocketChannel channel) {
+         try {
+            InputStream in = Channels.newInputStream(channel);
+            OutputStream out = Channels.newOutputStream(channel);
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+               int contentLength = 0;
+               String header;
+               while ((header = readLine(in)) != null && !header.isEmpty()) {
+                  int colon = header.indexOf(':');
+                  if (header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                     contentLength = Integer.parseInt(header.substring(colon + 1).trim());
+                  }
+               }
+               byte[] body = new byte[contentLength];
+               ByteStreams.readFully(in, body);
+               requests.add(new RecordedCall(requestLine, body));
+
+               Response response = responses.poll(10, TimeUnit.SECONDS);
+               if (response == null) {
+                  return;
+               }
+               StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\n")
+                     .append("Content-Type: application/json\r\n")
+                     .append("Content-Length: ").append(response.body.length).append("\r\n");
+               if (response.close) {
+                  head.append("Connection: close\r\n");
+               }
+               out.write(head.append("\r\n").toString().getBytes(UTF_8));
+               out.write(response.body);
+               out.flush();
+               if (response.close) {
+                  return;
+               }
+            }
+         } catch (IOException e) {
+            // the client went away
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         } finally {
+            Closeables2.closeQuietly(channel);
+         }
+      }
+
+      private static String readLine(InputStream in) throws IOException {
+         StringBuilder line = new StringBuilder();
+         int c;
+         while ((c = in.read()) != '\n') {
+            if (c == -1) {
+               return line.length() == 0 ? null : line.toString();
+            }
+            if (c != '\r') {
+               line.append((char) c);
+            }
+         }
+         return line.toString();
+      }
+
+      @Override
+      public void close() throws IOException {
+         threads.shutdownNow();
+         server.close();
+      }
+
+   }
+
+}
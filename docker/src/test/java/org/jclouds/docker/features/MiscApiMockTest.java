@@ -32,21 +32,27 @@ import javax.ws.rs.core.HttpHeaders;
 
 import org.jclouds.docker.DockerApi;
 import org.jclouds.docker.config.DockerParserModule;
+import org.jclouds.docker.domain.Event;
 import org.jclouds.docker.domain.Exec;
 import org.jclouds.docker.domain.ExecCreateParams;
 import org.jclouds.docker.domain.ExecInspect;
 import org.jclouds.docker.domain.ExecStartParams;
 import org.jclouds.docker.internal.BaseDockerMockTest;
+import org.jclouds.docker.options.EventOptions;
 import org.jclouds.docker.parse.InfoParseTest;
 import org.jclouds.docker.parse.VersionParseTest;
 import org.jclouds.docker.util.DockerInputStream;
+import org.jclouds.docker.util.EventStreamReader;
 import org.jclouds.docker.util.StdStreamData;
 import org.jclouds.docker.util.StdStreamData.StdStreamType;
 import org.jclouds.io.Payload;
 import org.jclouds.io.Payloads;
+import org.jclouds.json.Json;
+import org.jclouds.json.config.GsonModule;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
@@ -165,6 +171,26 @@ public class MiscApiMockTest extends BaseDockerMockTest {
       assertSent(server, "GET", "/exec/" + expectedExecId + "/json");
    }
 
+   public void testEvents() throws Exception {
+      MockWebServer server = mockWebServer(new MockResponse().setBody(payloadFromResource("/events.json")));
+      DockerApi dockerApi = api(DockerApi.class, server.getUrl("/").toString(), new DockerParserModule());
+      EventStreamReader events = null;
+      try {
+         events = new EventStreamReader(dockerApi.getMiscApi().events(EventOptions.Builder.since(1423339459L)
+               .until(1423339461L)), Guice.createInjector(new GsonModule(), new DockerParserModule()).getInstance(Json.class));
+         assertEquals(ImmutableList.copyOf(events), ImmutableList.of(
+               Event.create("create", "dfdf82bd3881", "ubuntu:latest", 1423339459),
+               Event.create("start", "dfdf82bd3881", "ubuntu:latest", 1423339459),
+               Event.create("untag", "ubuntu:latest", null, 1423339460)));
+         assertSent(server, "GET", "/events?since=1423339459&until=1423339461");
+      } finally {
+         if (events != null) {
+            events.close();
+         }
+         server.shutdown();
+      }
+   }
+
    /**
     * Asserts that correct values of HTTP headers are used in Docker build REST
     * API calls.
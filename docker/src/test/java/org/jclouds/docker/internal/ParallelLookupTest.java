@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.logging.Logger;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "ParallelLookupTest", singleThreaded = true)
+public class ParallelLookupTest {
+
+   private ListeningExecutorService executor;
+
+   @BeforeClass
+   public void setUp() {
+      executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testLookupKeepsOrderAndSkipsFailures() {
+      Map<String, String> results = new ParallelLookup(executor, 2, 0, Logger.NULL).lookup(
+            ImmutableList.of("a", "fail", "b", "missing", "c", "a"), new Function<String, String>() {
+               @Override
+               public String apply(String input) {
+                  if (input.equals("fail")) {
+                     throw new IllegalStateException("inspect failed");
+                  }
+                  return input.equals("missing") ? null : input.toUpperCase();
+               }
+            });
+      assertEquals(results, ImmutableMap.of("a", "A", "b", "B", "c", "C"));
+      assertEquals(ImmutableList.copyOf(results.keySet()), ImmutableList.of("a", "b", "c"));
+   }
+
+   public void testLookupBoundsConcurrency() {
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+      ImmutableList.Builder<Integer> keys = ImmutableList.builder();
+      for (int i = 0; i < 50; i++) {
+         keys.add(i);
+      }
+      Map<Integer, Integer> results = new ParallelLookup(executor, 4, 0, Logger.NULL).lookup(keys.build(),
+            new Function<Integer, Integer>() {
+               @Override
+               public Integer apply(Integer input) {
+                  int current = running.incrementAndGet();
+                  int max;
+                  while ((max = maxRunning.get()) < current && !maxRunning.compareAndSet(max, current)) {
+                     // retry
+                  }
+                  try {
+                     Thread.sleep(5);
+                  } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                  } finally {
+                     running.decrementAndGet();
+                  }
+                  return input;
+               }
+            });
+      assertEquals(results.size(), 50);
+      assertTrue(maxRunning.get() <= 4, "at most 4 lookups in flight but was " + maxRunning.get());
+   }
+
+   public void testLookupReturnsPartialResultsAtDeadline() throws InterruptedException {
+      final CountDownLatch blocked = new CountDownLatch(1);
+      try {
+         Map<String, String> results = new ParallelLookup(executor, 2, 200, Logger.NULL).lookup(
+               ImmutableList.of("a", "slow", "b"), new Function<String, String>() {
+                  @Override
+                  public String apply(String input) {
+                     if (input.equals("slow")) {
+                        try {
+                           blocked.await();
+                        } catch (InterruptedException e) {
+                           Thread.currentThread().interrupt();
+                        }
+                     }
+                     return input;
+                  }
+               });
+         assertEquals(results, ImmutableMap.of("a", "a", "b", "b"));
+      } finally {
+         blocked.countDown();
+      }
+   }
+
+}
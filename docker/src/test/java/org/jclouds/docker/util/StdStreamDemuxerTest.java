@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.docker.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.jclouds.docker.util.StdStreamData.StdStreamType;
+import org.testng.annotations.Test;
+
+import com.google.common.primitives.Bytes;
+
+@Test(groups = "unit", testName = "StdStreamDemuxerTest")
+public class StdStreamDemuxerTest {
+
+   public void testDemuxFrames() throws IOException {
+      byte[] stream = Bytes.concat(frame(1, "Standard"), frame(2, "Error"), frame(0, "Input"), frame(1, ""));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+      StdStreamDemuxer demuxer = new StdStreamDemuxer(new ByteArrayInputStream(stream));
+      assertEquals(demuxer.demuxFrame(out, err), StdStreamType.OUT);
+      assertEquals(demuxer.demuxFrame(out, err), StdStreamType.ERR);
+      assertEquals(demuxer.demuxFrame(out, err), StdStreamType.IN);
+      assertEquals(demuxer.demuxFrame(out, err), StdStreamType.OUT);
+      assertNull(demuxer.demuxFrame(out, err));
+      assertEquals(out.toString("UTF-8"), "StandardInput");
+      assertEquals(err.toString("UTF-8"), "Error");
+   }
+
+   public void testDemuxFramesBiggerThanBuffer() throws IOException {
+      byte[] payload = new byte[10000];
+      for (int i = 0; i < payload.length; i++) {
+         payload[i] = (byte) i;
+      }
+      byte[] stream = Bytes.concat(frame(1, payload), frame(2, "Error"), frame(1, payload));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+      long read = new StdStreamDemuxer(new ByteArrayInputStream(stream), 64).demux(Channels.newChannel(out),
+            Channels.newChannel(err));
+      assertEquals(read, 2 * payload.length + 5);
+      assertEquals(out.toByteArray(), Bytes.concat(payload, payload));
+      assertEquals(err.toString("UTF-8"), "Error");
+   }
+
+   public void testDiscardStream() throws IOException {
+      byte[] stream = Bytes.concat(frame(1, "Standard"), frame(2, "Error"));
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+      new StdStreamDemuxer(new ByteArrayInputStream(stream), 3).demux(null, err);
+      assertEquals(err.toString("UTF-8"), "Error");
+   }
+
+   @Test(expectedExceptions = EOFException.class)
+   public void testTruncatedPayload() throws IOException {
+      byte[] stream = frame(1, "Standard");
+      new StdStreamDemuxer(new ByteArrayInputStream(Arrays.copyOf(stream, stream.length - 1)))
+            .demux(new ByteArrayOutputStream(), new ByteArrayOutputStream());
+   }
+
+   @Test(expectedExceptions = EOFException.class)
+   public void testTruncatedHeader() throws IOException {
+      new StdStreamDemuxer(new ByteArrayInputStream(new byte[] { 1, 0, 0 }))
+            .demuxFrame(new ByteArrayOutputStream(), new ByteArrayOutputStream());
+   }
+
+   @Test(expectedExceptions = IOException.class)
+   public void testInvalidStreamType() throws IOException {
+      new StdStreamDemuxer(new ByteArrayInputStream(frame(3, "Standard")))
+            .demux(new ByteArrayOutputStream(), new ByteArrayOutputStream());
+   }
+
+   private static byte[] frame(int type, String payload) {
+      return frame(type, payload.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static byte[] frame(int type, byte[] payload) {
+      byte[] frame = new byte[8 + payload.length];
+      frame[0] = (byte) type;
+      frame[4] = (byte) (payload.length >>> 24);
+      frame[5] = (byte) (payload.length >>> 16);
+      frame[6] = (byte) (payload.length >>> 8);
+      frame[7] = (byte) payload.length;
+      System.arraycopy(payload, 0, frame, 8, payload.length);
+      return frame;
+   }
+
+}
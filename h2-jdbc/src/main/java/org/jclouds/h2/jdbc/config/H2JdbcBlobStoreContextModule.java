@@ -16,8 +16,6 @@
  */
 package org.jclouds.h2.jdbc.config;
 
-import java.util.Properties;
-
 import org.jclouds.jdbc.config.JdbcBlobStoreContextModule;
 
 import com.google.inject.persist.jpa.JpaPersistModule;
@@ -29,8 +27,9 @@ public class H2JdbcBlobStoreContextModule extends JdbcBlobStoreContextModule {
    protected void configure() {
       super.configure();
 
-      Properties properties = new Properties();
-      properties.setProperty("hibernate.connection.url", "jdbc:h2:" + DEFAULT_FILE);
+      // Injected before the eager JPAInitializer starts the persistence service
+      H2PersistenceProperties properties = new H2PersistenceProperties("jdbc:h2:" + DEFAULT_FILE);
+      requestInjection(properties);
 
       install(new JpaPersistModule("jclouds-h2").properties(properties));
    }
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.config;
+
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_POOL_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_SECOND_LEVEL_CACHE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_STATEMENT_CACHE_SIZE;
+
+import java.util.Properties;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Persistence unit properties of the h2-jdbc provider. The pooling and cache settings are filled in
+ * from the jclouds properties when the injector is created, before the persistence service starts.
+ */
+class H2PersistenceProperties extends Properties {
+
+   private static final long serialVersionUID = 1L;
+
+   static final String EHCACHE_CONFIGURATION = "/jclouds-h2-jdbc-ehcache.xml";
+
+   private final String url;
+
+   H2PersistenceProperties(String url) {
+      this.url = url;
+      setProperty("hibernate.connection.url", url);
+   }
+
+   @Inject
+   void configure(@Named(PROPERTY_POOL_SIZE) int poolSize,
+         @Named(PROPERTY_STATEMENT_CACHE_SIZE) int statementCacheSize,
+         @Named(PROPERTY_SECOND_LEVEL_CACHE) boolean secondLevelCache) {
+      setProperty("hibernate.connection.url", url + ";QUERY_CACHE_SIZE=" + statementCacheSize);
+      setProperty("hibernate.connection.provider_class",
+            "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+      setProperty("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize));
+      setProperty("hibernate.hikari.minimumIdle", String.valueOf(poolSize));
+
+      setProperty("hibernate.cache.use_second_level_cache", String.valueOf(secondLevelCache));
+      if (secondLevelCache) {
+         // Only the entities annotated with @Cacheable are cached
+         setProperty("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+         setProperty("hibernate.cache.region.factory_class",
+               "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory");
+         // Bounds the regions, the default Ehcache configuration keeps 10000 entries of any size
+         setProperty("net.sf.ehcache.configurationResourceName", EHCACHE_CONFIGURATION);
+         setProperty("hibernate.cache.default_cache_concurrency_strategy", "read-write");
+      }
+   }
+
+}
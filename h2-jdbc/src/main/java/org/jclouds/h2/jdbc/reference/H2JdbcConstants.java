@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.reference;
+
+/**
+ * Constants used in the h2-jdbc provider
+ */
+public final class H2JdbcConstants {
+
+    /**
+     * Maximum number of pooled database connections
+     * Default: 16
+     */
+    public static final String PROPERTY_POOL_SIZE = "jclouds.h2-jdbc.pool-size";
+
+    /**
+     * Number of prepared statements cached by each database connection
+     * Default: 64
+     */
+    public static final String PROPERTY_STATEMENT_CACHE_SIZE = "jclouds.h2-jdbc.statement-cache-size";
+
+    /**
+     * Whether container and payload metadata is kept in a second-level entity cache
+     * Default: false
+     */
+    public static final String PROPERTY_SECOND_LEVEL_CACHE = "jclouds.h2-jdbc.second-level-cache";
+
+    private H2JdbcConstants() {
+        throw new AssertionError("Intentionally Unimplemented");
+    }
+}
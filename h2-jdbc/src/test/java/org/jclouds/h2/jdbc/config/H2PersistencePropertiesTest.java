@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.h2.jdbc.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_POOL_SIZE;
+import static org.jclouds.h2.jdbc.reference.H2JdbcConstants.PROPERTY_SECOND_LEVEL_CACHE;
+
+import java.sql.Connection;
+import java.util.Properties;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.cache.ehcache.internal.regions.EhcacheDataRegion;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import org.hibernate.jpa.HibernateEntityManagerFactory;
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "H2PersistencePropertiesTest")
+public class H2PersistencePropertiesTest {
+
+   private static final String CONTAINER_NAME = "test-container";
+
+   public void testPoolAndSecondLevelCacheAreActive() throws Exception {
+      Properties overrides = new Properties();
+      overrides.setProperty(PROPERTY_POOL_SIZE, "4");
+      overrides.setProperty(PROPERTY_SECOND_LEVEL_CACHE, "true");
+      BlobStoreContext context = ContextBuilder.newBuilder("h2-jdbc")
+            .overrides(overrides)
+            .build(BlobStoreContext.class);
+      try {
+         BlobStore blobStore = context.getBlobStore();
+         blobStore.createContainerInLocation(null, CONTAINER_NAME);
+         blobStore.putBlob(CONTAINER_NAME, blobStore.blobBuilder("blob").payload("content").build());
+         assertThat(blobStore.getBlob(CONTAINER_NAME, "blob")).isNotNull();
+
+         SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) ((HibernateEntityManagerFactory) context
+               .utils().injector().getInstance(EntityManagerFactory.class)).getSessionFactory();
+
+         ConnectionProvider connectionProvider = sessionFactory.getServiceRegistry()
+               .getService(ConnectionProvider.class);
+         assertThat(connectionProvider).isInstanceOf(HikariCPConnectionProvider.class);
+         Connection connection = connectionProvider.getConnection();
+         try {
+            assertThat(connection.isValid(1)).isTrue();
+         } finally {
+            connectionProvider.closeConnection(connection);
+         }
+         assertThat(sessionFactory.getProperties().get("hibernate.hikari.maximumPoolSize")).isEqualTo("4");
+
+         assertThat(sessionFactory.getSettings().isSecondLevelCacheEnabled()).isTrue();
+         EhcacheDataRegion containers = (EhcacheDataRegion) sessionFactory
+               .getSecondLevelCacheRegion(ContainerEntity.class.getName());
+         assertThat(containers.getElementCountInMemory()).isGreaterThan(0);
+         EhcacheDataRegion payloads = (EhcacheDataRegion) sessionFactory
+               .getSecondLevelCacheRegion(PayloadEntity.class.getName());
+         assertThat(payloads.getElementCountInMemory()).isGreaterThan(0);
+         // Bounded by the configuration shipped with the provider, not by the Ehcache defaults
+         assertThat(payloads.getEhcache().getCacheConfiguration().getMaxElementsInMemory()).isEqualTo(1000);
+      } finally {
+         context.close();
+      }
+   }
+
+}
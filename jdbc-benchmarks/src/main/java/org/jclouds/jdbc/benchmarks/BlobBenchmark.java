@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.blobstore.options.GetOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Writes, reads and deletes single blobs of different sizes from one thread. See
+ * {@link ConcurrentBlobBenchmark} for the same operations under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class BlobBenchmark {
+
+   private static final int STORED_BLOBS = 4;
+   private static final int MAX_RANGE_LENGTH = 64 * 1024;
+
+   @State(Scope.Benchmark)
+   public static class BlobState extends StorageState {
+
+      /**
+       * Small blobs are stored inline, medium ones in a single chunk and large ones in many chunks.
+       */
+      @Param({ "1024", "1048576", "16777216" })
+      public int blobSize;
+
+      byte[] content;
+
+      @Override
+      protected void populate() throws IOException {
+         content = randomContent(blobSize);
+         for (int i = 0; i < STORED_BLOBS; i++) {
+            storageStrategy.putBlob(CONTAINER_NAME, blob("stored/" + i, content));
+         }
+      }
+
+   }
+
+   /**
+    * Keys of a thread: each thread overwrites its own key, so the store does not grow during a run.
+    */
+   @State(Scope.Thread)
+   public static class ThreadState {
+
+      private static final AtomicInteger THREADS = new AtomicInteger();
+
+      final int thread = THREADS.getAndIncrement();
+      int reads;
+
+      String writeKey() {
+         return "write/" + thread;
+      }
+
+      String readKey() {
+         return "stored/" + (reads++ % STORED_BLOBS);
+      }
+
+   }
+
+   /**
+    * Stores the blob deleted by each invocation of {@link BlobBenchmark#removeBlob}.
+    */
+   @State(Scope.Thread)
+   public static class RemoveState {
+
+      String key;
+
+      @Setup(Level.Invocation)
+      public void putBlob(BlobState state, ThreadState thread) throws IOException {
+         key = "remove/" + thread.thread;
+         state.getStorageStrategy().putBlob(StorageState.CONTAINER_NAME, StorageState.blob(key, state.content));
+      }
+
+   }
+
+   @Benchmark
+   public String putBlob(BlobState state, ThreadState thread) throws IOException {
+      return state.getStorageStrategy().putBlob(StorageState.CONTAINER_NAME,
+            StorageState.blob(thread.writeKey(), state.content));
+   }
+
+   @Benchmark
+   public long getBlob(BlobState state, ThreadState thread, Blackhole blackhole) throws IOException {
+      return StorageState.consume(state.getStorageStrategy().getBlob(StorageState.CONTAINER_NAME, thread.readKey()),
+            blackhole);
+   }
+
+   /**
+    * Reads a range from the middle of a blob, which only fetches the chunks covering it.
+    */
+   @Benchmark
+   public long getBlobRange(BlobState state, ThreadState thread, Blackhole blackhole) throws IOException {
+      int length = Math.min(MAX_RANGE_LENGTH, state.blobSize / 4);
+      long offset = state.blobSize / 2 - length / 2;
+      return StorageState.consume(state.getStorageStrategy().getBlob(StorageState.CONTAINER_NAME, thread.readKey(),
+            new GetOptions().range(offset, offset + length - 1)), blackhole);
+   }
+
+   @Benchmark
+   public void removeBlob(BlobState state, RemoveState remove) {
+      state.getStorageStrategy().removeBlob(StorageState.CONTAINER_NAME, remove.key);
+   }
+
+}
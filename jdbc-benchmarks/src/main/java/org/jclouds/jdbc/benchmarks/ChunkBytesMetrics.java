@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.jdbc.metrics.JdbcMetrics;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+/**
+ * Counts the chunk bytes written to and read from the database, so benchmarks can compare them with
+ * the content they store and read.
+ */
+public class ChunkBytesMetrics implements JdbcMetrics {
+
+   private final AtomicLong bytesWritten = new AtomicLong();
+   private final AtomicLong bytesRead = new AtomicLong();
+
+   /**
+    * @return a module binding these metrics
+    */
+   public Module module() {
+      return new AbstractModule() {
+         @Override
+         protected void configure() {
+            bind(JdbcMetrics.class).toInstance(ChunkBytesMetrics.this);
+         }
+      };
+   }
+
+   /**
+    * @return the bytes of the chunks written so far, after encoding
+    */
+   public long getBytesWritten() {
+      return bytesWritten.get();
+   }
+
+   /**
+    * @return the bytes of the chunks read so far, before decoding
+    */
+   public long getBytesRead() {
+      return bytesRead.get();
+   }
+
+   @Override
+   public boolean isEnabled() {
+      return true;
+   }
+
+   @Override
+   public void operation(String operation, long nanos, boolean failed) {
+   }
+
+   @Override
+   public void transaction(String transaction, long nanos, boolean failed) {
+   }
+
+   @Override
+   public void containerLookup(boolean cached, long nanos) {
+   }
+
+   @Override
+   public void chunkRead(int bytes, long nanos) {
+      bytesRead.addAndGet(bytes);
+   }
+
+   @Override
+   public void chunksWritten(int chunks, long bytes, long nanos) {
+      bytesWritten.addAndGet(bytes);
+   }
+
+   @Override
+   public void contentHashed(int bytes, long nanos) {
+   }
+
+}
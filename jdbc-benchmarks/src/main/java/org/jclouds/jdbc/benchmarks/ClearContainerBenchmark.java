@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Clears a container holding 100,000 small blobs with user metadata, spread over directories. The
+ * container is filled again before each iteration, which is a single clear.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@Threads(1)
+public class ClearContainerBenchmark {
+
+   private static final int DIRECTORIES = 100;
+   private static final int BLOBS_PER_DIRECTORY = 1000;
+
+   @State(Scope.Benchmark)
+   public static class ClearState extends StorageState {
+
+      @Setup(Level.Iteration)
+      public void fill() throws IOException {
+         byte[] content = randomContent(128);
+         for (int i = 0; i < DIRECTORIES; i++) {
+            for (int j = 0; j < BLOBS_PER_DIRECTORY; j++) {
+               Blob blob = blob(String.format("dir-%02d/blob-%04d", i, j), content);
+               blob.getMetadata().setUserMetadata(ImmutableMap.of("index", Integer.toString(j)));
+               storageStrategy.putBlob(CONTAINER_NAME, blob);
+            }
+         }
+      }
+
+   }
+
+   @Benchmark
+   public void clearContainer(ClearState state) {
+      state.getStorageStrategy().clearContainer(StorageState.CONTAINER_NAME);
+   }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.base.Charsets;
+import com.google.inject.Module;
+
+/**
+ * Writes and reads blobs with and without a chunk codec, for content which compresses well, JSON log
+ * lines, and for content which does not, random bytes. The compression ratio, the bytes of content
+ * stored over the bytes of chunks written, is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class CompressionBenchmark {
+
+   private static final int BLOB_SIZE = 4 * 1024 * 1024;
+   private static final int STORED_BLOBS = 4;
+
+   @State(Scope.Benchmark)
+   public static class CompressionState extends StorageState {
+
+      @Param({ "none", "deflate" })
+      public String codec;
+
+      @Param({ "text", "random" })
+      public String contentType;
+
+      final ChunkBytesMetrics metrics = new ChunkBytesMetrics();
+      final AtomicLong bytesStored = new AtomicLong();
+      byte[] content;
+
+      @Override
+      protected Properties overrides() {
+         Properties overrides = super.overrides();
+         overrides.setProperty(JdbcConstants.PROPERTY_CHUNK_CODEC, codec);
+         return overrides;
+      }
+
+      @Override
+      protected Module module() {
+         return metrics.module();
+      }
+
+      @Override
+      protected void populate() throws IOException {
+         content = "text".equals(contentType) ? logLines(BLOB_SIZE) : randomContent(BLOB_SIZE);
+         for (int i = 0; i < STORED_BLOBS; i++) {
+            putBlob("stored/" + i);
+         }
+      }
+
+      String putBlob(String key) throws IOException {
+         String etag = storageStrategy.putBlob(CONTAINER_NAME, blob(key, content));
+         bytesStored.addAndGet(content.length);
+         return etag;
+      }
+
+      @Override
+      protected void beforeTearDown() {
+         System.out.printf("%nCompression ratio: %.2f (%d bytes stored, %d bytes of chunks written)%n",
+               (double) bytesStored.get() / Math.max(metrics.getBytesWritten(), 1), bytesStored.get(),
+               metrics.getBytesWritten());
+      }
+
+      private static byte[] logLines(int size) {
+         Random random = new Random(size);
+         StringBuilder lines = new StringBuilder(size + 256);
+         while (lines.length() < size) {
+            lines.append(String.format("{\"time\":%d,\"level\":\"INFO\",\"logger\":\"org.jclouds.jdbc\","
+                  + "\"message\":\"stored blob %08x of %d bytes in container %d\"}%n",
+                  1423339459000L + lines.length(), random.nextInt(), random.nextInt(BLOB_SIZE), random.nextInt(16)));
+         }
+         lines.setLength(size);
+         return lines.toString().getBytes(Charsets.UTF_8);
+      }
+
+   }
+
+   /**
+    * Writes cycle over a fixed set of keys, so the store does not grow during a run.
+    */
+   @State(Scope.Thread)
+   public static class ThreadState {
+
+      int writes;
+      int reads;
+
+      String writeKey() {
+         return "write/" + (writes++ % STORED_BLOBS);
+      }
+
+      String readKey() {
+         return "stored/" + (reads++ % STORED_BLOBS);
+      }
+
+   }
+
+   @Benchmark
+   public String putBlob(CompressionState state, ThreadState thread) throws IOException {
+      return state.putBlob(thread.writeKey());
+   }
+
+   @Benchmark
+   public long getBlob(CompressionState state, ThreadState thread, Blackhole blackhole) throws IOException {
+      return StorageState.consume(state.getStorageStrategy().getBlob(StorageState.CONTAINER_NAME, thread.readKey()),
+            blackhole);
+   }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Module;
+
+/**
+ * Stores the same artifacts over and over under different keys, as an artifact cache does, with and
+ * without chunk deduplication. The deduplication ratio, the bytes of content stored over the bytes of
+ * chunks written, is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class DeduplicationBenchmark {
+
+   private static final int ARTIFACT_SIZE = 4 * 1024 * 1024;
+   private static final int STORED_BLOBS = 32;
+
+   @State(Scope.Benchmark)
+   public static class DeduplicationState extends StorageState {
+
+      @Param({ "false", "true" })
+      public boolean deduplicate;
+
+      /**
+       * Number of different artifacts stored, the fewer the more redundant the content.
+       */
+      @Param({ "1", "8" })
+      public int artifacts;
+
+      final ChunkBytesMetrics metrics = new ChunkBytesMetrics();
+      final AtomicLong bytesStored = new AtomicLong();
+      byte[][] contents;
+
+      @Override
+      protected Properties overrides() {
+         Properties overrides = super.overrides();
+         overrides.setProperty(JdbcConstants.PROPERTY_DEDUPLICATE_CHUNKS, String.valueOf(deduplicate));
+         return overrides;
+      }
+
+      @Override
+      protected Module module() {
+         return metrics.module();
+      }
+
+      @Override
+      protected void populate() throws IOException {
+         contents = new byte[artifacts][ARTIFACT_SIZE];
+         for (int i = 0; i < artifacts; i++) {
+            new Random(i).nextBytes(contents[i]);
+         }
+         for (int i = 0; i < STORED_BLOBS; i++) {
+            putBlob(i);
+         }
+      }
+
+      String putBlob(int index) throws IOException {
+         byte[] content = contents[index % artifacts];
+         String etag = storageStrategy.putBlob(CONTAINER_NAME, blob("artifact/" + (index % STORED_BLOBS), content));
+         bytesStored.addAndGet(content.length);
+         return etag;
+      }
+
+      @Override
+      protected void beforeTearDown() {
+         System.out.printf("%nDeduplication ratio: %.2f (%d bytes stored, %d bytes of chunks written)%n",
+               (double) bytesStored.get() / Math.max(metrics.getBytesWritten(), 1), bytesStored.get(),
+               metrics.getBytesWritten());
+      }
+
+   }
+
+   @State(Scope.Thread)
+   public static class ThreadState {
+
+      int writes;
+
+   }
+
+   @Benchmark
+   public String putBlob(DeduplicationState state, ThreadState thread) throws IOException {
+      return state.putBlob(thread.writes++);
+   }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.jdbc.JdbcApiMetadata;
+import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.jdbc.util.JdbcInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.io.ByteSource;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Reads a whole blob through {@link JdbcInputStream}, with and without prefetching, and through the
+ * stream it replaced, which read one byte at a time under a lock and fetched each chunk only once the
+ * previous one was consumed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(1)
+public class JdbcInputStreamBenchmark {
+
+   private static final String BLOB_NAME = "stream";
+   private static final int BLOCK_SIZE = 1024 * 1024;
+
+   @State(Scope.Benchmark)
+   public static class StreamState extends StorageState {
+
+      /**
+       * Blobs of 1 GiB are split in large chunks, see {@link JdbcConstants#PROPERTY_LARGE_BLOB_THRESHOLD}.
+       */
+      @Param({ "1048576", "104857600", "1073741824" })
+      public int blobSize;
+
+      JdbcService jdbcService;
+      List<Long> chunks;
+      ListeningExecutorService prefetchExecutor;
+      int prefetchChunks;
+
+      @Override
+      protected void populate() throws IOException {
+         // The content repeats a random block, so large blobs are not held in memory
+         ByteSource content = ByteSource.concat(Collections.nCopies(blobSize / BLOCK_SIZE,
+               ByteSource.wrap(randomContent(BLOCK_SIZE))));
+         storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content)
+               .contentLength((long) blobSize).build());
+         jdbcService = injector.getInstance(JdbcService.class);
+         chunks = jdbcService.findChunkIds(jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getPayload().getId());
+         prefetchExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+         prefetchChunks = Integer.parseInt(JdbcApiMetadata.defaultProperties()
+               .getProperty(JdbcConstants.PROPERTY_PREFETCH_CHUNKS));
+      }
+
+      @Override
+      protected void beforeTearDown() {
+         prefetchExecutor.shutdownNow();
+      }
+
+   }
+
+   @Benchmark
+   public long byteAtATime(StreamState state, Blackhole blackhole) throws IOException {
+      return StorageState.consume(new ByteAtATimeInputStream(state.jdbcService, state.chunks), blackhole);
+   }
+
+   @Benchmark
+   public long bulk(StreamState state, Blackhole blackhole) throws IOException {
+      return StorageState.consume(new JdbcInputStream(state.jdbcService, state.chunks), blackhole);
+   }
+
+   @Benchmark
+   public long bulkWithPrefetch(StreamState state, Blackhole blackhole) throws IOException {
+      return StorageState.consume(new JdbcInputStream(state.jdbcService, state.chunks, state.prefetchExecutor,
+            state.prefetchChunks), blackhole);
+   }
+
+   /**
+    * The stream {@link JdbcInputStream} replaced, kept as the baseline of this benchmark. Reads of
+    * several bytes go through {@link InputStream#read(byte[], int, int)}, which calls the synchronized
+    * {@link #read()} for each byte.
+    */
+   private static class ByteAtATimeInputStream extends InputStream {
+
+      private final JdbcService jdbcService;
+      private final List<Long> chunks;
+      private ChunkEntity currentChunk;
+      private int bytesRead;
+
+      ByteAtATimeInputStream(JdbcService jdbcService, List<Long> chunks) throws IOException {
+         this.jdbcService = checkNotNull(jdbcService, "jdbcService");
+         this.chunks = new ArrayList<Long>(new LinkedHashSet<Long>(checkNotNull(chunks, "chunks")));
+         readNextChunk();
+      }
+
+      @Override
+      public synchronized int read() throws IOException {
+         if (hasFinished()) {
+            return -1;
+         }
+         int b = currentChunk.getData()[bytesRead] & 0xff;
+         bytesRead = bytesRead + 1;
+         if (bytesRead >= currentChunk.getSize()) {
+            readNextChunk();
+         }
+         return b;
+      }
+
+      private boolean hasFinished() {
+         return currentChunk == null || (chunks.size() == 0 && bytesRead >= currentChunk.getSize());
+      }
+
+      private void readNextChunk() throws IOException {
+         if (chunks.size() > 0) {
+            currentChunk = jdbcService.findChunkById(chunks.get(0));
+            if (currentChunk == null) {
+               throw new IOException("Could not find chunk.");
+            }
+            chunks.remove(0);
+            bytesRead = 0;
+         }
+      }
+
+   }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lists a container holding small blobs spread over directories.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ListBenchmark {
+
+   private static final int DIRECTORIES = 10;
+   private static final int BLOBS_PER_DIRECTORY = 500;
+
+   @State(Scope.Benchmark)
+   public static class ListState extends StorageState {
+
+      @Override
+      protected void populate() throws IOException {
+         byte[] content = randomContent(128);
+         for (int i = 0; i < DIRECTORIES; i++) {
+            for (int j = 0; j < BLOBS_PER_DIRECTORY; j++) {
+               storageStrategy.putBlob(CONTAINER_NAME, blob(String.format("dir-%02d/blob-%04d", i, j), content));
+            }
+         }
+      }
+
+   }
+
+   /**
+    * Lists the top level of the container, which only holds directories.
+    */
+   @Benchmark
+   public PageSet<? extends StorageMetadata> listDirectories(ListState state) {
+      return state.getStorageStrategy().list(StorageState.CONTAINER_NAME, ListContainerOptions.NONE);
+   }
+
+   /**
+    * Lists the first page of the blobs of a directory.
+    */
+   @Benchmark
+   public PageSet<? extends StorageMetadata> listDirectory(ListState state) {
+      return state.getStorageStrategy().list(StorageState.CONTAINER_NAME,
+            new ListContainerOptions().inDirectory("dir-05"));
+   }
+
+   /**
+    * Lists the first page of all the blobs of the container.
+    */
+   @Benchmark
+   public PageSet<? extends StorageMetadata> listRecursive(ListState state) {
+      return state.getStorageStrategy().list(StorageState.CONTAINER_NAME, ListContainerOptions.Builder.recursive());
+   }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Writes and reads small blobs stored inline with their payload metadata, or in a chunk of their own
+ * when the inline threshold is 0.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class SmallBlobBenchmark {
+
+   private static final int STORED_BLOBS = 256;
+
+   @State(Scope.Benchmark)
+   public static class SmallBlobState extends StorageState {
+
+      @Param({ "1024", "16384" })
+      public int blobSize;
+
+      /**
+       * 0 stores every blob in a chunk, as all blobs were stored before small ones were inlined.
+       */
+      @Param({ "0", "65536" })
+      public int inlineThreshold;
+
+      byte[] content;
+
+      @Override
+      protected Properties overrides() {
+         Properties overrides = super.overrides();
+         overrides.setProperty(JdbcConstants.PROPERTY_INLINE_THRESHOLD, String.valueOf(inlineThreshold));
+         return overrides;
+      }
+
+      @Override
+      protected void populate() throws IOException {
+         content = randomContent(blobSize);
+         for (int i = 0; i < STORED_BLOBS; i++) {
+            storageStrategy.putBlob(CONTAINER_NAME, blob("stored/" + i, content));
+         }
+      }
+
+   }
+
+   /**
+    * Writes cycle over a fixed set of keys, so the store does not grow during a run.
+    */
+   @State(Scope.Thread)
+   public static class ThreadState {
+
+      int writes;
+      int reads;
+
+      String writeKey() {
+         return "write/" + (writes++ % STORED_BLOBS);
+      }
+
+      String readKey() {
+         return "stored/" + (reads++ % STORED_BLOBS);
+      }
+
+   }
+
+   @Benchmark
+   public String putBlob(SmallBlobState state, ThreadState thread) throws IOException {
+      return state.getStorageStrategy().putBlob(StorageState.CONTAINER_NAME,
+            StorageState.blob(thread.writeKey(), state.content));
+   }
+
+   @Benchmark
+   public long getBlob(SmallBlobState state, ThreadState thread, Blackhole blackhole) throws IOException {
+      return StorageState.consume(state.getStorageStrategy().getBlob(StorageState.CONTAINER_NAME, thread.readKey()),
+            blackhole);
+   }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.Random;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.jdbc.module.TestContextModule;
+import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.jpa.JpaPersistModule;
+import com.google.inject.util.Modules;
+
+/**
+ * Storage strategy backed by one of the persistence units of the jdbc tests, with a container created
+ * for the benchmark. Subclasses store the blobs their benchmarks need in {@link #populate()}, and may
+ * override the jdbc properties and add modules to the injector.
+ */
+@State(Scope.Benchmark)
+public class StorageState {
+
+   public static final String CONTAINER_NAME = "jclouds-benchmark";
+
+   private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+   /**
+    * Hibernate on HSQLDB or EclipseLink on H2.
+    */
+   @Param({ "jclouds-test-hsqldb", "jclouds-test-h2" })
+   public String persistenceUnit;
+
+   protected Injector injector;
+   protected JdbcStorageStrategy storageStrategy;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      injector = Guice.createInjector(new TestContextModule(overrides()), module(),
+            new JpaPersistModule(persistenceUnit));
+      storageStrategy = injector.getInstance(JdbcStorageStrategy.class);
+      storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null);
+      populate();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      try {
+         beforeTearDown();
+      } finally {
+         storageStrategy.deleteContainer(CONTAINER_NAME);
+         injector.getInstance(PersistService.class).stop();
+      }
+   }
+
+   /**
+    * Properties overriding the defaults of the jdbc api for the trial.
+    */
+   protected Properties overrides() {
+      return new Properties();
+   }
+
+   /**
+    * Module installed in the injector, for example to bind {@link ChunkBytesMetrics}.
+    */
+   protected Module module() {
+      return Modules.EMPTY_MODULE;
+   }
+
+   protected void populate() throws IOException {
+   }
+
+   /**
+    * Called at the end of the trial while the blobs are still stored, to report and release resources.
+    */
+   protected void beforeTearDown() {
+   }
+
+   public JdbcStorageStrategy getStorageStrategy() {
+      return storageStrategy;
+   }
+
+   public static Blob blob(String key, byte[] content) {
+      return new BlobBuilderImpl().name(key).payload(content).build();
+   }
+
+   public static byte[] randomContent(int size) {
+      byte[] content = new byte[size];
+      new Random(size).nextBytes(content);
+      return content;
+   }
+
+   /**
+    * Reads the content of a blob through the blackhole.
+    *
+    * @return the number of bytes read
+    */
+   public static long consume(Blob blob, Blackhole blackhole) throws IOException {
+      return consume(blob.getPayload().openStream(), blackhole);
+   }
+
+   /**
+    * Reads a stream through the blackhole and closes it.
+    *
+    * @return the number of bytes read
+    */
+   public static long consume(InputStream in, Blackhole blackhole) throws IOException {
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      long size = 0;
+      try {
+         int count;
+         while ((count = in.read(buffer)) != -1) {
+            blackhole.consume(buffer);
+            size += count;
+         }
+      } finally {
+         in.close();
+      }
+      return size;
+   }
+
+}
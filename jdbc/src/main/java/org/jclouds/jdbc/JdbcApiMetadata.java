@@ -25,6 +25,30 @@ import org.jclouds.blobstore.BlobStoreContext;
 import org.jclouds.jdbc.config.JdbcBlobStoreContextModule;
 
 import java.net.URI;
+import java.util.Properties;
+
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_BATCH_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_BUFFER_POOL_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_CODEC;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_COMPRESSIBLE_CONTENT_TYPES;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CONTAINER_CACHE_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_DEDUPLICATE_CHUNKS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_DELETE_BATCH_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_GRACE_PERIOD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_INTERVAL;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_RATE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_INLINE_THRESHOLD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_LARGE_BLOB_THRESHOLD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_LARGE_CHUNK_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_CHUNKS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_MEMORY;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_THREADS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_THRESHOLD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PREFETCH_CHUNKS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_SCRUB_RATE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_STREAM_BUFFER_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_STREAM_CHUNKS;
 
 /**
  * Implementation of {@link ApiMetadata} for jclouds Jdbc BlobStore
@@ -45,6 +69,33 @@ public class JdbcApiMetadata extends BaseApiMetadata {
       super(builder);
    }
 
+   public static Properties defaultProperties() {
+      Properties properties = BaseApiMetadata.defaultProperties();
+      properties.setProperty(PROPERTY_PREFETCH_CHUNKS, "2");
+      properties.setProperty(PROPERTY_CHUNK_BATCH_SIZE, "16");
+      properties.setProperty(PROPERTY_CHUNK_BUFFER_POOL_SIZE, String.valueOf(32 * 1024 * 1024));
+      properties.setProperty(PROPERTY_CHUNK_SIZE, String.valueOf(1024 * 1024));
+      properties.setProperty(PROPERTY_LARGE_CHUNK_SIZE, String.valueOf(8 * 1024 * 1024));
+      properties.setProperty(PROPERTY_LARGE_BLOB_THRESHOLD, String.valueOf(256L * 1024 * 1024));
+      properties.setProperty(PROPERTY_INLINE_THRESHOLD, String.valueOf(64 * 1024));
+      properties.setProperty(PROPERTY_DELETE_BATCH_SIZE, "500");
+      properties.setProperty(PROPERTY_CONTAINER_CACHE_SIZE, "1000");
+      properties.setProperty(PROPERTY_DEDUPLICATE_CHUNKS, "false");
+      properties.setProperty(PROPERTY_CHUNK_CODEC, "none");
+      properties.setProperty(PROPERTY_COMPRESSIBLE_CONTENT_TYPES, "");
+      properties.setProperty(PROPERTY_STREAM_CHUNKS, "false");
+      properties.setProperty(PROPERTY_STREAM_BUFFER_SIZE, String.valueOf(64 * 1024));
+      properties.setProperty(PROPERTY_PARALLEL_FETCH_THRESHOLD, "0");
+      properties.setProperty(PROPERTY_PARALLEL_FETCH_CHUNKS, "4");
+      properties.setProperty(PROPERTY_PARALLEL_FETCH_MEMORY, String.valueOf(32 * 1024 * 1024));
+      properties.setProperty(PROPERTY_PARALLEL_FETCH_THREADS, "8");
+      properties.setProperty(PROPERTY_GC_INTERVAL, "0");
+      properties.setProperty(PROPERTY_GC_RATE, "1000");
+      properties.setProperty(PROPERTY_GC_GRACE_PERIOD, "3600");
+      properties.setProperty(PROPERTY_SCRUB_RATE, String.valueOf(32 * 1024 * 1024));
+      return properties;
+   }
+
    public static class Builder extends BaseApiMetadata.Builder<Builder> {
 
       protected Builder() {
@@ -57,6 +108,7 @@ public class JdbcApiMetadata extends BaseApiMetadata {
          .defaultCredential("unused")
          .version("1")
          .documentation(URI.create("http://www.jclouds.org/documentation/userguide/blobstore-guide"))
+         .defaultProperties(JdbcApiMetadata.defaultProperties())
          .view(BlobStoreContext.class)
          .defaultModules(ImmutableSet.<Class<? extends Module>>of(JdbcBlobStoreContextModule.class));
       }
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.blobstore;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.jclouds.blobstore.ContainerNotFoundException;
+import org.jclouds.blobstore.config.LocalBlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.PageSetImpl;
+import org.jclouds.blobstore.options.CopyOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.blobstore.util.ForwardingBlobStore;
+import org.jclouds.io.Payload;
+import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * JdbcBlobStore routes the operations {@link LocalBlobStore} implements on top of whole blobs to the
+ * {@link JdbcStorageStrategy}, which runs them against the database: ranged gets read only the chunks
+ * covering the ranges, listings page through the keys, copies share the chunks of the source blob and
+ * multipart uploads store their parts as chunks. Everything else is left to {@link LocalBlobStore}.
+ * LocalBlobStore cannot be extended, so this class forwards to it instead.
+ */
+public class JdbcBlobStore extends ForwardingBlobStore {
+
+   private final JdbcStorageStrategy storageStrategy;
+
+   @Inject
+   JdbcBlobStore(LocalBlobStore delegate, JdbcStorageStrategy storageStrategy) {
+      super(delegate);
+      this.storageStrategy = storageStrategy;
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container) {
+      return list(container, ListContainerOptions.NONE);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
+      checkContainerExists(container);
+      PageSet<? extends StorageMetadata> page = storageStrategy.list(container, options);
+      if (!options.isDetailed()) {
+         return page;
+      }
+      ImmutableList.Builder<String> keys = ImmutableList.builder();
+      for (StorageMetadata metadata : page) {
+         if (metadata.getType() == StorageType.BLOB) {
+            keys.add(metadata.getName());
+         }
+      }
+      Map<String, BlobMetadata> blobMetadata = storageStrategy.getBlobMetadata(container, keys.build());
+      ImmutableList.Builder<StorageMetadata> contents = ImmutableList.builder();
+      for (StorageMetadata metadata : page) {
+         // A blob deleted since the page was listed keeps its summary
+         contents.add(blobMetadata.containsKey(metadata.getName()) ? blobMetadata.get(metadata.getName()) : metadata);
+      }
+      return new PageSetImpl<StorageMetadata>(contents.build(), page.getNextMarker());
+   }
+
+   @Override
+   public Blob getBlob(String container, String key, GetOptions options) {
+      if (options == null || options.getRanges().isEmpty()) {
+         return delegate().getBlob(container, key, options);
+      }
+      // Let LocalBlobStore check the container and the conditions, then read only the ranges
+      if (delegate().getBlob(container, key, conditionsOf(options)) == null) {
+         return null;
+      }
+      return storageStrategy.getBlob(container, key, options);
+   }
+
+   @Override
+   public String copyBlob(String fromContainer, String fromName, String toContainer, String toName,
+         CopyOptions options) {
+      if (options.ifMatch() != null || options.ifNoneMatch() != null || options.ifModifiedSince() != null
+            || options.ifUnmodifiedSince() != null) {
+         return delegate().copyBlob(fromContainer, fromName, toContainer, toName, options);
+      }
+      checkContainerExists(fromContainer);
+      return storageStrategy.copyBlob(fromContainer, fromName, toContainer, toName, options);
+   }
+
+   @Override
+   public MultipartUpload initiateMultipartUpload(String container, BlobMetadata blobMetadata, PutOptions options) {
+      return storageStrategy.initiateMultipartUpload(container, blobMetadata, options);
+   }
+
+   @Override
+   public MultipartPart uploadMultipartPart(MultipartUpload mpu, int partNumber, Payload payload) {
+      try {
+         return storageStrategy.uploadMultipartPart(mpu, partNumber, payload);
+      } catch (IOException e) {
+         throw Throwables.propagate(e);
+      }
+   }
+
+   @Override
+   public String completeMultipartUpload(MultipartUpload mpu, List<MultipartPart> parts) {
+      return storageStrategy.completeMultipartUpload(mpu, parts);
+   }
+
+   @Override
+   public void abortMultipartUpload(MultipartUpload mpu) {
+      storageStrategy.abortMultipartUpload(mpu);
+   }
+
+   @Override
+   public List<MultipartPart> listMultipartUpload(MultipartUpload mpu) {
+      return storageStrategy.listMultipartUpload(mpu);
+   }
+
+   @Override
+   public List<MultipartUpload> listMultipartUploads(String container) {
+      checkContainerExists(container);
+      return storageStrategy.listMultipartUploads(container);
+   }
+
+   private void checkContainerExists(String container) {
+      if (!storageStrategy.containerExists(container)) {
+         throw new ContainerNotFoundException(container, "");
+      }
+   }
+
+   private static GetOptions conditionsOf(GetOptions options) {
+      GetOptions conditions = new GetOptions();
+      if (options.getIfMatch() != null) {
+         conditions.ifETagMatches(options.getIfMatch());
+      }
+      if (options.getIfNoneMatch() != null) {
+         conditions.ifETagDoesntMatch(options.getIfNoneMatch());
+      }
+      if (options.getIfModifiedSince() != null) {
+         conditions.ifModifiedSince(options.getIfModifiedSince());
+      }
+      if (options.getIfUnmodifiedSince() != null) {
+         conditions.ifUnmodifiedSince(options.getIfUnmodifiedSince());
+      }
+      return conditions;
+   }
+
+}
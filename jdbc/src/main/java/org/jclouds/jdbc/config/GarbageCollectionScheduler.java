@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.config;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_INTERVAL;
+
+import javax.annotation.Resource;
+import javax.inject.Named;
+
+import org.jclouds.Constants;
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.jdbc.service.MaintenanceService;
+import org.jclouds.logging.Logger;
+
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.inject.Inject;
+
+/**
+ * Runs the garbage collector periodically when {@link org.jclouds.jdbc.reference.JdbcConstants#PROPERTY_GC_INTERVAL}
+ * is positive. The task stops with the scheduler when the context is closed.
+ */
+public class GarbageCollectionScheduler {
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   @Inject
+   private GarbageCollectionScheduler(final MaintenanceService maintenanceService,
+         @Named(Constants.PROPERTY_SCHEDULER_THREADS) ListeningScheduledExecutorService scheduler,
+         @Named(PROPERTY_GC_INTERVAL) long interval) {
+      if (interval <= 0) {
+         return;
+      }
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               maintenanceService.collectGarbage();
+            } catch (RuntimeException e) {
+               // A failed collection must not cancel the next ones
+               logger.error(e, "<< garbage collection failed");
+            }
+         }
+      }, interval, interval, SECONDS);
+   }
+
+}
@@ -16,24 +16,40 @@
  */
 package org.jclouds.jdbc.config;
 
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_THREADS;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+
+import javax.inject.Named;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import org.jclouds.blobstore.BlobRequestSigner;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.LocalBlobRequestSigner;
 import org.jclouds.blobstore.LocalStorageStrategy;
 import org.jclouds.blobstore.attr.ConsistencyModel;
 import org.jclouds.blobstore.config.BlobStoreObjectModule;
-import org.jclouds.blobstore.config.LocalBlobStore;
 import org.jclouds.blobstore.util.BlobUtils;
+import org.jclouds.jdbc.blobstore.JdbcBlobStore;
+import org.jclouds.jdbc.metrics.JdbcMetricsModule;
 import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
 import org.jclouds.jdbc.util.JdbcBlobUtils;
+import org.jclouds.lifecycle.Closer;
 
 public class JdbcBlobStoreContextModule extends AbstractModule {
 
    @Override
    protected void configure() {
+      install(new JdbcMetricsModule());
       bind(JPAInitializer.class).asEagerSingleton();
-      bind(BlobStore.class).to(LocalBlobStore.class);
+      bind(GarbageCollectionScheduler.class).asEagerSingleton();
+      bind(BlobStore.class).to(JdbcBlobStore.class);
       install(new BlobStoreObjectModule());
       bind(ConsistencyModel.class).toInstance(ConsistencyModel.STRICT);
       bind(LocalStorageStrategy.class).to(JdbcStorageStrategy.class);
@@ -41,4 +57,24 @@ public class JdbcBlobStoreContextModule extends AbstractModule {
       bind(BlobRequestSigner.class).to(LocalBlobRequestSigner.class);
    }
 
+   /**
+    * Threads fetching the chunks of large blobs in parallel. The pool is bounded so parallel reads
+    * cannot take more connections than configured, and it is shut down when the context is closed.
+    */
+   @Provides
+   @Singleton
+   @Named(PROPERTY_PARALLEL_FETCH_THREADS)
+   ListeningExecutorService provideParallelFetchExecutor(@Named(PROPERTY_PARALLEL_FETCH_THREADS) int threads,
+         Closer closer) {
+      final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+            Math.max(threads, 1), new ThreadFactoryBuilder().setNameFormat("jdbc-fetch-%d").setDaemon(true).build()));
+      closer.addToClose(new Closeable() {
+         @Override
+         public void close() {
+            executor.shutdownNow();
+         }
+      });
+      return executor;
+   }
+
 }
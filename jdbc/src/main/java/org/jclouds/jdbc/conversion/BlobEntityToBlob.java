@@ -17,26 +17,74 @@
 package org.jclouds.jdbc.conversion;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.hash.HashCode;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import org.jclouds.Constants;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobBuilder;
 import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.PayloadEntity;
 import org.jclouds.jdbc.service.JdbcService;
 import org.jclouds.jdbc.util.JdbcInputStream;
+import org.jclouds.jdbc.util.StreamingJdbcInputStream;
+
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_CHUNKS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_MEMORY;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_THREADS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PARALLEL_FETCH_THRESHOLD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_PREFETCH_CHUNKS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_STREAM_BUFFER_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_STREAM_CHUNKS;
 
 public class BlobEntityToBlob implements Function<BlobEntity, Blob> {
 
    private final Provider<BlobBuilder> blobBuilders;
    private final JdbcService jdbcService;
+   private final ListeningExecutorService userExecutor;
+   private final int prefetchChunks;
+   private final boolean streamChunks;
+   private final int streamBufferSize;
+   private final ListeningExecutorService parallelFetchExecutor;
+   private final long parallelFetchThreshold;
+   private final int parallelFetchChunks;
+   private final long parallelFetchMemory;
 
    @Inject
-   BlobEntityToBlob(Provider<BlobBuilder> blobBuilders, JdbcService jdbcService) {
+   BlobEntityToBlob(Provider<BlobBuilder> blobBuilders, JdbcService jdbcService,
+         @Named(Constants.PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(PROPERTY_PREFETCH_CHUNKS) int prefetchChunks,
+         @Named(PROPERTY_STREAM_CHUNKS) boolean streamChunks,
+         @Named(PROPERTY_STREAM_BUFFER_SIZE) int streamBufferSize,
+         @Named(PROPERTY_PARALLEL_FETCH_THREADS) ListeningExecutorService parallelFetchExecutor,
+         @Named(PROPERTY_PARALLEL_FETCH_THRESHOLD) long parallelFetchThreshold,
+         @Named(PROPERTY_PARALLEL_FETCH_CHUNKS) int parallelFetchChunks,
+         @Named(PROPERTY_PARALLEL_FETCH_MEMORY) long parallelFetchMemory) {
       this.blobBuilders = blobBuilders;
       this.jdbcService = jdbcService;
+      this.userExecutor = userExecutor;
+      this.prefetchChunks = prefetchChunks;
+      this.streamChunks = streamChunks;
+      this.streamBufferSize = streamBufferSize;
+      this.parallelFetchExecutor = parallelFetchExecutor;
+      this.parallelFetchThreshold = parallelFetchThreshold;
+      this.parallelFetchChunks = Math.max(parallelFetchChunks, 1);
+      this.parallelFetchMemory = Math.max(parallelFetchMemory, 0);
    }
 
    @Override
@@ -45,16 +93,151 @@ public class BlobEntityToBlob implements Function<BlobEntity, Blob> {
          return null;
       }
 
+      PayloadEntity payload = blobEntity.getPayload();
+      if (blobEntity.isDirectory()) {
+         return toBlob(blobEntity, null);
+      }
+      else if (payload.getInlineData() != null) {
+         return toBlob(blobEntity, Payloads.newByteArrayPayload(payload.getInlineData()));
+      }
+      else {
+         final Long payloadId = payload.getId();
+         final String key = blobEntity.getKey();
+         Long contentLength = payload.getContentLength() != null ? payload.getContentLength() : blobEntity.getSize();
+         final long size = contentLength != null ? contentLength : 0;
+         // Chunk ids are only fetched when the content is read, so metadata lookups never load them
+         return toBlob(blobEntity, Payloads.newByteSourcePayload(new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+               return openChunks(checkChunks(jdbcService.findChunkIds(payloadId), size, key), null, 0, size);
+            }
+         }));
+      }
+   }
+
+   /**
+    * Converts an entity to a blob whose payload only holds the byte ranges requested in the options.
+    * The chunks covering each range are computed from the chunk sizes and only those are fetched.
+    */
+   public Blob apply(BlobEntity blobEntity, GetOptions options) {
+      if (blobEntity == null || blobEntity.isDirectory() || options.getRanges().isEmpty()) {
+         return apply(blobEntity);
+      }
+
+      PayloadEntity payload = blobEntity.getPayload();
+      long size = payload.getContentLength() != null ? payload.getContentLength() : blobEntity.getSize();
+      List<Long> chunks = payload.getInlineData() != null ? null : jdbcService.findChunkIds(payload.getId());
+      Map<Long, Integer> chunkSizes = chunks == null ? null : jdbcService.findChunkSizes(chunks);
+      ImmutableList.Builder<ByteSource> sources = ImmutableList.builder();
+      long length = 0;
+      String contentRange = null;
+      for (String range : options.getRanges()) {
+         long offset;
+         long last;
+         if (range.startsWith("-")) {
+            offset = Math.max(size - Long.parseLong(range.substring(1)), 0);
+            last = size - 1;
+         } else if (range.endsWith("-")) {
+            offset = Long.parseLong(range.substring(0, range.length() - 1));
+            last = size - 1;
+         } else {
+            int dash = range.indexOf('-');
+            offset = Long.parseLong(range.substring(0, dash));
+            last = Math.min(Long.parseLong(range.substring(dash + 1)), size - 1);
+         }
+         if (offset > last) {
+            throw new IllegalArgumentException("Invalid range: " + range);
+         }
+         sources.add(rangeSource(blobEntity.getKey(), payload, chunks, chunkSizes, offset, last - offset + 1));
+         length = length + last - offset + 1;
+         contentRange = "bytes " + offset + "-" + last + "/" + size;
+      }
+
+      Blob blob = toBlob(blobEntity, Payloads.newByteSourcePayload(ByteSource.concat(sources.build())));
+      blob.getMetadata().getContentMetadata().setContentLength(length);
+      blob.getMetadata().getContentMetadata().setContentMD5((HashCode) null);
+      if (options.getRanges().size() == 1) {
+         blob.getAllHeaders().put(HttpHeaders.CONTENT_RANGE, contentRange);
+      }
+      return blob;
+   }
+
+   private ByteSource rangeSource(final String key, PayloadEntity payload, List<Long> chunks,
+         final Map<Long, Integer> chunkSizes, long offset, final long length) {
+      if (payload.getInlineData() != null) {
+         return ByteSource.wrap(payload.getInlineData()).slice(offset, length);
+      }
+      long position = 0;
+      int first = chunks.size();
+      int end = chunks.size();
+      int firstChunkOffset = 0;
+      for (int i = 0; i < chunks.size(); i++) {
+         Integer chunkSize = chunkSizes.get(chunks.get(i));
+         if (chunkSize == null) {
+            throw new IllegalStateException("Could not find chunk " + chunks.get(i));
+         }
+         if (first == chunks.size() && position + chunkSize > offset) {
+            first = i;
+            firstChunkOffset = (int) (offset - position);
+         }
+         position = position + chunkSize;
+         if (position >= offset + length) {
+            end = i + 1;
+            break;
+         }
+      }
+      final List<Long> rangeChunks = chunks.subList(first, end);
+      final int rangeOffset = firstChunkOffset;
+      return new ByteSource() {
+         @Override
+         public InputStream openStream() throws IOException {
+            return ByteStreams.limit(openChunks(checkChunks(rangeChunks, length, key), chunkSizes, rangeOffset,
+                  length), length);
+         }
+      };
+   }
+
+   /**
+    * Checks that content of the given length has chunks. The payload of a blob replaced or deleted
+    * since it was looked up has no chunks left, and must not be read as empty content.
+    */
+   private static List<Long> checkChunks(List<Long> chunks, long length, String key) throws IOException {
+      if (chunks.isEmpty() && length > 0) {
+         throw new IOException("Content of blob " + key + " was replaced or deleted since it was looked up");
+      }
+      return chunks;
+   }
+
+   /**
+    * Opens a stream over the chunks. Chunks of large content are fetched in parallel, the sizes of the
+    * chunks are then looked up unless given, to bound the memory held by the chunks fetched ahead.
+    */
+   private InputStream openChunks(List<Long> chunks, Map<Long, Integer> chunkSizes, int firstChunkOffset,
+         long length) {
+      if (parallelFetchThreshold > 0 && length >= parallelFetchThreshold && chunks.size() > 1) {
+         if (chunkSizes == null && parallelFetchMemory > 0) {
+            chunkSizes = jdbcService.findChunkSizes(chunks);
+         }
+         return new JdbcInputStream(jdbcService, chunks, parallelFetchExecutor, parallelFetchChunks - 1,
+               parallelFetchMemory, chunkSizes, firstChunkOffset);
+      }
+      if (streamChunks) {
+         return new StreamingJdbcInputStream(jdbcService, chunks, streamBufferSize, firstChunkOffset);
+      }
+      return new JdbcInputStream(jdbcService, chunks, userExecutor, prefetchChunks, firstChunkOffset);
+   }
+
+   private Blob toBlob(BlobEntity blobEntity, Payload blobPayload) {
       PayloadEntity payload = blobEntity.getPayload();
       BlobBuilder builder = blobBuilders.get()
             .name(blobEntity.getKey())
             .userMetadata(blobEntity.getUserMetadata());
 
-      if (blobEntity.isDirectory()) {
+      if (blobPayload == null) {
          builder.type(StorageType.FOLDER);
       }
       else {
-         builder.payload(new JdbcInputStream(jdbcService, blobEntity.getPayload().getChunks()));
+         builder.payload(blobPayload);
       }
 
       Blob blob = builder.build();
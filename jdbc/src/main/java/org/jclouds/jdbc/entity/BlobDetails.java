@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.entity;
+
+import java.util.Date;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Projection of a {@link BlobEntity} and its {@link PayloadEntity} with the fields of the blob
+ * metadata. Loading it does not fetch the inline data or the chunk ids of the payload.
+ */
+public class BlobDetails {
+
+   private final String key;
+   private final Long size;
+   private final String etag;
+   private final Date creationDate;
+   private final Date lastModified;
+   private final boolean directory;
+   private final String cacheControl;
+   private final String contentType;
+   private final Long contentLength;
+   private final byte[] contentMD5;
+   private final String contentDisposition;
+   private final String contentLanguage;
+   private final String contentEncoding;
+   private final Date expires;
+   // Fetched with a second query, the projection cannot hold a collection
+   private Map<String, String> userMetadata = ImmutableMap.of();
+
+   public BlobDetails(String key, Long size, String etag, Date creationDate, Date lastModified, boolean directory,
+         String cacheControl, String contentType, Long contentLength, byte[] contentMD5, String contentDisposition,
+         String contentLanguage, String contentEncoding, Date expires) {
+      this.key = key;
+      this.size = size;
+      this.etag = etag;
+      this.creationDate = creationDate;
+      this.lastModified = lastModified;
+      this.directory = directory;
+      this.cacheControl = cacheControl;
+      this.contentType = contentType;
+      this.contentLength = contentLength;
+      this.contentMD5 = contentMD5;
+      this.contentDisposition = contentDisposition;
+      this.contentLanguage = contentLanguage;
+      this.contentEncoding = contentEncoding;
+      this.expires = expires;
+   }
+
+   public String getKey() {
+      return key;
+   }
+
+   public Long getSize() {
+      return size;
+   }
+
+   public String getEtag() {
+      return etag;
+   }
+
+   public Date getCreationDate() {
+      return creationDate;
+   }
+
+   public Date getLastModified() {
+      return lastModified;
+   }
+
+   public boolean isDirectory() {
+      return directory;
+   }
+
+   public String getCacheControl() {
+      return cacheControl;
+   }
+
+   public String getContentType() {
+      return contentType;
+   }
+
+   public Long getContentLength() {
+      return contentLength;
+   }
+
+   public byte[] getContentMD5() {
+      return contentMD5;
+   }
+
+   public String getContentDisposition() {
+      return contentDisposition;
+   }
+
+   public String getContentLanguage() {
+      return contentLanguage;
+   }
+
+   public String getContentEncoding() {
+      return contentEncoding;
+   }
+
+   public Date getExpires() {
+      return expires;
+   }
+
+   public Map<String, String> getUserMetadata() {
+      return userMetadata;
+   }
+
+   public void setUserMetadata(Map<String, String> userMetadata) {
+      this.userMetadata = userMetadata;
+   }
+
+}
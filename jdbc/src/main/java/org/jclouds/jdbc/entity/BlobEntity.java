@@ -19,6 +19,8 @@ package org.jclouds.jdbc.entity;
 import org.jclouds.blobstore.domain.BlobAccess;
 
 import javax.persistence.CascadeType;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -29,26 +31,42 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
 import javax.persistence.PrePersist;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.util.Date;
 import java.util.Map;
 
 @Entity
-@Table
+@Table(name = BlobEntity.TABLE)
 @IdClass(value = BlobEntityPK.class)
 public class BlobEntity {
 
+   // Table and column names used by the native statements deleting blobs in bulk
+   public static final String TABLE = "BlobEntity";
+   public static final String CONTAINER_COLUMN = "id";
+   public static final String KEY_COLUMN = "key";
+   public static final String PAYLOAD_COLUMN = "payload_id";
+   public static final String DIRECTORY_COLUMN = "directory";
+   public static final String USER_METADATA_TABLE = "BlobEntity_userMetadata";
+   public static final String USER_METADATA_CONTAINER_COLUMN = "BlobEntity_id";
+   public static final String USER_METADATA_KEY_COLUMN = "BlobEntity_key";
+
    @Id
    @ManyToOne
-   @JoinColumn(name = "id")
+   @JoinColumn(name = CONTAINER_COLUMN)
    private ContainerEntity containerEntity;
 
    @Id
+   @Column(name = KEY_COLUMN)
    private String key;
 
    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+   @JoinColumn(name = PAYLOAD_COLUMN)
    private PayloadEntity payload;
 
    @ElementCollection(fetch = FetchType.EAGER)
+   @CollectionTable(name = USER_METADATA_TABLE, joinColumns = {
+         @JoinColumn(name = USER_METADATA_CONTAINER_COLUMN, referencedColumnName = CONTAINER_COLUMN),
+         @JoinColumn(name = USER_METADATA_KEY_COLUMN, referencedColumnName = KEY_COLUMN) })
    public Map<String, String> userMetadata;
 
    private Date creationDate;
@@ -56,8 +74,13 @@ public class BlobEntity {
    private BlobAccess blobAccess;
    private Long size;
    private String etag;
+   @Column(name = DIRECTORY_COLUMN)
    private boolean directory;
 
+   // Incremented by each update, so concurrent writers of the same key detect each other
+   @Version
+   private long version;
+
    @PrePersist
    private void defaults() {
       this.lastModified = new Date();
@@ -221,4 +244,7 @@ public class BlobEntity {
       }
    }
 
+   public long getVersion() {
+      return version;
+   }
 }
@@ -21,27 +21,75 @@ import org.jclouds.jdbc.reference.JdbcConstants;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
+import javax.persistence.PrePersist;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import java.util.Date;
 
 @Entity
-@Table
+@Table(name = ChunkEntity.TABLE, indexes = @Index(columnList = "digest"))
 public class ChunkEntity {
 
+   // Table and column names used by the JDBC statement streaming the data of a chunk
+   public static final String TABLE = "ChunkEntity";
+   public static final String ID_COLUMN = "id";
+   public static final String DATA_COLUMN = "data";
+   public static final String CODEC_COLUMN = "codec";
+
+   // Identity columns disable JDBC batching, so ids are allocated in blocks from a table
    @Id
-   @GeneratedValue
+   @Column(name = ID_COLUMN)
+   @TableGenerator(name = "chunkIdGenerator", allocationSize = 64)
+   @GeneratedValue(strategy = GenerationType.TABLE, generator = "chunkIdGenerator")
    private Long id;
 
    @Lob
-   @Column(length = JdbcConstants.DEFAULT_CHUNK_SIZE)
+   @Column(name = DATA_COLUMN, length = JdbcConstants.MAX_CHUNK_SIZE)
    private byte[] data;
 
+   // Size of the decoded data
    private int size;
 
+   // SHA-256 of the data, only set when chunk deduplication is enabled
+   @Column(length = 64)
+   private String digest;
+
+   // Name of the codec encoding the data, null when the data is stored raw
+   @Column(name = CODEC_COLUMN, length = 16)
+   private String codec;
+
+   // Number of payload chunk lists pointing at this chunk
+   private int referenceCount;
+
+   // Last time the chunk was stored, shared or touched by an upload. Chunks are stored before the
+   // payload referring to them, the garbage collector spares recently referenced ones
+   private Date referenceDate;
+
+   @PrePersist
+   private void defaults() {
+      if (this.referenceDate == null) {
+         this.referenceDate = new Date();
+      }
+   }
+
    public ChunkEntity(byte[] data, int size) {
+      this(data, size, null);
+   }
+
+   public ChunkEntity(byte[] data, int size, String digest) {
+      this(data, size, digest, null);
+   }
+
+   public ChunkEntity(byte[] data, int size, String digest, String codec) {
       this.data = data;
       this.size = size;
+      this.digest = digest;
+      this.codec = codec;
+      this.referenceCount = 1;
    }
 
    public ChunkEntity() {
@@ -70,4 +118,32 @@ public class ChunkEntity {
    public void setSize(int size) {
       this.size = size;
    }
+
+   public String getDigest() {
+      return digest;
+   }
+
+   public void setDigest(String digest) {
+      this.digest = digest;
+   }
+
+   public String getCodec() {
+      return codec;
+   }
+
+   public void setCodec(String codec) {
+      this.codec = codec;
+   }
+
+   public int getReferenceCount() {
+      return referenceCount;
+   }
+
+   public void setReferenceCount(int referenceCount) {
+      this.referenceCount = referenceCount;
+   }
+
+   public Date getReferenceDate() {
+      return referenceDate;
+   }
 }
@@ -18,6 +18,7 @@ package org.jclouds.jdbc.entity;
 
 import org.jclouds.blobstore.domain.ContainerAccess;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -28,6 +29,7 @@ import java.util.Date;
 
 @Entity
 @Table
+@Cacheable
 public class ContainerEntity {
 
    @Id
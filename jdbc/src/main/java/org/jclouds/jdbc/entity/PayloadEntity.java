@@ -17,25 +17,46 @@
 package org.jclouds.jdbc.entity;
 
 import com.google.common.collect.ImmutableList;
+import org.jclouds.jdbc.reference.JdbcConstants;
 
+import javax.persistence.Cacheable;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.Lob;
+import javax.persistence.OrderColumn;
 import java.util.Date;
 import java.util.List;
 
 @Entity
+@Cacheable
 public class PayloadEntity {
 
+   // Table and column names of the chunk lists, used by the native statements deleting blobs in bulk
+   public static final String CHUNKS_TABLE = "PayloadEntity_chunks";
+   public static final String CHUNKS_PAYLOAD_COLUMN = "PayloadEntity_id";
+
    @Id
    @GeneratedValue
    private Long id;
 
-   @ElementCollection(fetch = FetchType.EAGER)
+   // The same chunk may appear more than once, the order column keeps the list intact when fetched.
+   // Chunk ids are only loaded when the content is read, see PayloadRepository#findChunkIds
+   @ElementCollection(fetch = FetchType.LAZY)
+   @CollectionTable(name = CHUNKS_TABLE, joinColumns = @JoinColumn(name = CHUNKS_PAYLOAD_COLUMN))
+   @OrderColumn
    private List<Long> chunks;
 
+   // Content of small blobs, stored here instead of in chunks
+   @Lob
+   @Column(length = JdbcConstants.MAX_CHUNK_SIZE)
+   private byte[] inlineData;
+
    private String cacheControl;
    private String contentType;
    private Long contentLength;
@@ -77,6 +98,14 @@ public class PayloadEntity {
       this.chunks = chunks;
    }
 
+   public byte[] getInlineData() {
+      return inlineData;
+   }
+
+   public void setInlineData(byte[] inlineData) {
+      this.inlineData = inlineData;
+   }
+
    public String getCacheControl() {
       return cacheControl;
    }
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.metrics;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Receives measurements of the jdbc blobstore. Implementations typically forward them to a metrics
+ * library as timers, counters and histograms.
+ * <p>
+ * Nothing is measured unless {@link #isEnabled()} returns true, which must not change once the
+ * context is created. The default implementation is disabled; bind another one in a module given to
+ * the context builder:
+ *
+ * <pre>
+ * bind(JdbcMetrics.class).to(MyJdbcMetrics.class);
+ * </pre>
+ *
+ * Methods are called from the threads doing the work and must be thread safe. Durations are in
+ * nanoseconds.
+ */
+@ImplementedBy(NoopJdbcMetrics.class)
+public interface JdbcMetrics {
+
+   boolean isEnabled();
+
+   /**
+    * A method of the storage strategy returned or threw an exception.
+    *
+    * @param operation the name of the method
+    */
+   void operation(String operation, long nanos, boolean failed);
+
+   /**
+    * A transaction of the service ended, including its commit or rollback. Nested transactional calls
+    * are part of the outermost transaction and are not reported.
+    *
+    * @param transaction the name of the service method starting the transaction
+    */
+   void transaction(String transaction, long nanos, boolean failed);
+
+   /**
+    * The container id of a name was looked up, in the cache or in the database.
+    */
+   void containerLookup(boolean cached, long nanos);
+
+   /**
+    * A chunk, or part of one, was fetched from the database.
+    *
+    * @param bytes the number of bytes fetched, before decoding
+    */
+   void chunkRead(int bytes, long nanos);
+
+   /**
+    * A batch of chunks was flushed to the database.
+    *
+    * @param bytes the number of bytes written, after encoding
+    */
+   void chunksWritten(int chunks, long bytes, long nanos);
+
+   /**
+    * Content being stored was hashed.
+    */
+   void contentHashed(int bytes, long nanos);
+
+}
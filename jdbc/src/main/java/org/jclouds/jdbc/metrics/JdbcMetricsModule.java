@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.metrics;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.jdbc.strategy.JdbcStorageStrategy;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.persist.Transactional;
+
+/**
+ * Times the public methods of the storage strategy and the transactions of the service. It must be
+ * installed before the persistence module so transactions are timed with their commit.
+ */
+public class JdbcMetricsModule extends AbstractModule {
+
+   @Override
+   protected void configure() {
+      OperationInterceptor operations = new OperationInterceptor();
+      requestInjection(operations);
+      bindInterceptor(Matchers.subclassesOf(JdbcStorageStrategy.class), new PublicMethodMatcher(), operations);
+
+      TransactionInterceptor transactions = new TransactionInterceptor();
+      requestInjection(transactions);
+      bindInterceptor(Matchers.subclassesOf(JdbcService.class), Matchers.annotatedWith(Transactional.class),
+            transactions);
+   }
+
+   private static class PublicMethodMatcher extends AbstractMatcher<Method> {
+      @Override
+      public boolean matches(Method method) {
+         return Modifier.isPublic(method.getModifiers()) && !method.isSynthetic()
+               && method.getDeclaringClass() != Object.class;
+      }
+   }
+
+   private static class OperationInterceptor implements MethodInterceptor {
+
+      @Inject
+      private JdbcMetrics metrics;
+
+      @Override
+      public Object invoke(MethodInvocation invocation) throws Throwable {
+         if (metrics == null || !metrics.isEnabled()) {
+            return invocation.proceed();
+         }
+         long start = System.nanoTime();
+         boolean failed = true;
+         try {
+            Object result = invocation.proceed();
+            failed = false;
+            return result;
+         } finally {
+            metrics.operation(invocation.getMethod().getName(), System.nanoTime() - start, failed);
+         }
+      }
+
+   }
+
+   private static class TransactionInterceptor implements MethodInterceptor {
+
+      private final ThreadLocal<Boolean> inTransaction = new ThreadLocal<Boolean>();
+
+      @Inject
+      private JdbcMetrics metrics;
+
+      @Override
+      public Object invoke(MethodInvocation invocation) throws Throwable {
+         if (metrics == null || !metrics.isEnabled() || inTransaction.get() != null) {
+            return invocation.proceed();
+         }
+         inTransaction.set(Boolean.TRUE);
+         long start = System.nanoTime();
+         boolean failed = true;
+         try {
+            Object result = invocation.proceed();
+            failed = false;
+            return result;
+         } finally {
+            inTransaction.remove();
+            metrics.transaction(invocation.getMethod().getName(), System.nanoTime() - start, failed);
+         }
+      }
+
+   }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.metrics;
+
+import com.google.inject.Singleton;
+
+/**
+ * Default {@link JdbcMetrics}, which measures nothing.
+ */
+@Singleton
+public class NoopJdbcMetrics implements JdbcMetrics {
+
+   @Override
+   public boolean isEnabled() {
+      return false;
+   }
+
+   @Override
+   public void operation(String operation, long nanos, boolean failed) {
+   }
+
+   @Override
+   public void transaction(String transaction, long nanos, boolean failed) {
+   }
+
+   @Override
+   public void containerLookup(boolean cached, long nanos) {
+   }
+
+   @Override
+   public void chunkRead(int bytes, long nanos) {
+   }
+
+   @Override
+   public void chunksWritten(int chunks, long bytes, long nanos) {
+   }
+
+   @Override
+   public void contentHashed(int bytes, long nanos) {
+   }
+
+}
@@ -23,6 +23,153 @@ public final class JdbcConstants {
 
     public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
 
+    /**
+     * Upper bound for the configurable chunk sizes. It also sizes the binary columns storing chunk
+     * and inline payload data.
+     */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Size in bytes of the chunks a blob is split into
+     * Default: 1048576
+     */
+    public static final String PROPERTY_CHUNK_SIZE = "jclouds.jdbc.chunk-size";
+
+    /**
+     * Size in bytes of the chunks used for blobs bigger than jclouds.jdbc.large-blob-threshold
+     * Default: 8388608
+     */
+    public static final String PROPERTY_LARGE_CHUNK_SIZE = "jclouds.jdbc.large-chunk-size";
+
+    /**
+     * Content length in bytes from which blobs are split in large chunks
+     * Default: 268435456
+     */
+    public static final String PROPERTY_LARGE_BLOB_THRESHOLD = "jclouds.jdbc.large-blob-threshold";
+
+    /**
+     * Blobs up to this size in bytes are stored inline with their payload metadata instead of in chunks
+     * Default: 65536
+     */
+    public static final String PROPERTY_INLINE_THRESHOLD = "jclouds.jdbc.inline-threshold";
+
+    /**
+     * Number of chunks fetched ahead of the one being read when streaming a blob
+     * Default: 2
+     */
+    public static final String PROPERTY_PREFETCH_CHUNKS = "jclouds.jdbc.prefetch-chunks";
+
+    /**
+     * Number of chunks written to the database in a single batch when storing a blob. Each upload holds
+     * the chunks of a batch in memory, up to this number times the chunk size
+     * Default: 16
+     */
+    public static final String PROPERTY_CHUNK_BATCH_SIZE = "jclouds.jdbc.chunk-batch-size";
+
+    /**
+     * Maximum number of bytes held by the buffers kept for reuse between blob uploads. Each upload
+     * still holds up to jclouds.jdbc.chunk-batch-size chunks in memory while it runs.
+     * Default: 33554432
+     */
+    public static final String PROPERTY_CHUNK_BUFFER_POOL_SIZE = "jclouds.jdbc.chunk-buffer-pool-size";
+
+    /**
+     * Number of blobs deleted in each transaction when clearing a container or a directory
+     * Default: 500
+     */
+    public static final String PROPERTY_DELETE_BATCH_SIZE = "jclouds.jdbc.delete-batch-size";
+
+    /**
+     * Maximum number of container ids cached by container name, 0 disables the cache. Disable it when
+     * other processes create or delete containers in the same database.
+     * Default: 1000
+     */
+    public static final String PROPERTY_CONTAINER_CACHE_SIZE = "jclouds.jdbc.container-cache-size";
+
+    /**
+     * Whether chunks with the same content are stored once and shared between blobs
+     * Default: false
+     */
+    public static final String PROPERTY_DEDUPLICATE_CHUNKS = "jclouds.jdbc.deduplicate-chunks";
+
+    /**
+     * Codec compressing chunk data, either none or deflate
+     * Default: none
+     */
+    public static final String PROPERTY_CHUNK_CODEC = "jclouds.jdbc.chunk-codec";
+
+    /**
+     * Comma separated content type prefixes of the blobs whose chunks are compressed, all blobs if empty
+     * Default: empty
+     */
+    public static final String PROPERTY_COMPRESSIBLE_CONTENT_TYPES = "jclouds.jdbc.compressible-content-types";
+
+    /**
+     * Whether blob content is read through JDBC blobs in windows of a fixed size instead of whole chunks,
+     * bounding the memory used by each reader. A reader holds a connection while it reads a chunk.
+     * Compressed chunks are still read whole. Writes are not streamed, see jclouds.jdbc.chunk-batch-size.
+     * Default: false
+     */
+    public static final String PROPERTY_STREAM_CHUNKS = "jclouds.jdbc.stream-chunks";
+
+    /**
+     * Size in bytes of the windows read from a chunk when streaming is enabled
+     * Default: 65536
+     */
+    public static final String PROPERTY_STREAM_BUFFER_SIZE = "jclouds.jdbc.stream-buffer-size";
+
+    /**
+     * Content length in bytes from which the chunks of a blob are fetched in parallel, over several
+     * connections, when it is read. Takes precedence over streaming. 0 disables parallel fetching.
+     * Default: 0
+     */
+    public static final String PROPERTY_PARALLEL_FETCH_THRESHOLD = "jclouds.jdbc.parallel-fetch-threshold";
+
+    /**
+     * Maximum number of chunks of a blob fetched at the same time when fetching in parallel
+     * Default: 4
+     */
+    public static final String PROPERTY_PARALLEL_FETCH_CHUNKS = "jclouds.jdbc.parallel-fetch-chunks";
+
+    /**
+     * Maximum number of bytes of chunks fetched ahead of the reader of a blob when fetching in parallel
+     * Default: 33554432
+     */
+    public static final String PROPERTY_PARALLEL_FETCH_MEMORY = "jclouds.jdbc.parallel-fetch-memory";
+
+    /**
+     * Number of threads, each holding a connection while it reads a chunk, shared by all the blobs fetched
+     * in parallel
+     * Default: 8
+     */
+    public static final String PROPERTY_PARALLEL_FETCH_THREADS = "jclouds.jdbc.parallel-fetch-threads";
+
+    /**
+     * Seconds between two background collections of orphan payloads and chunks, 0 disables them
+     * Default: 0
+     */
+    public static final String PROPERTY_GC_INTERVAL = "jclouds.jdbc.gc-interval";
+
+    /**
+     * Maximum number of payloads and chunks examined per second by the garbage collector, 0 for no limit
+     * Default: 1000
+     */
+    public static final String PROPERTY_GC_RATE = "jclouds.jdbc.gc-rate";
+
+    /**
+     * Seconds during which recently stored or shared unreferenced chunks are kept by the garbage
+     * collector, as they may belong to a blob still being uploaded. Longer uploads keep their chunks
+     * alive by touching them every half grace period
+     * Default: 3600
+     */
+    public static final String PROPERTY_GC_GRACE_PERIOD = "jclouds.jdbc.gc-grace-period";
+
+    /**
+     * Maximum number of bytes read per second when scrubbing blobs, 0 for no limit
+     * Default: 33554432
+     */
+    public static final String PROPERTY_SCRUB_RATE = "jclouds.jdbc.scrub-rate";
+
     private JdbcConstants() {
         throw new AssertionError("Intentionally Unimplemented");
     }
@@ -19,36 +19,342 @@ package org.jclouds.jdbc.repository;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import org.jclouds.blobstore.domain.BlobAccess;
+import org.jclouds.jdbc.entity.BlobDetails;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.BlobEntityPK;
+import org.jclouds.jdbc.entity.BlobSummary;
 import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class BlobRepository extends GenericRepository<BlobEntity, BlobEntityPK> {
 
+   private static final String LIKE_ESCAPE = "!";
+   private static final String DIRECTORY_DELIMITER = "/";
+
    @Inject
    private BlobRepository(Provider<EntityManager> entityManager) {
       super(entityManager);
    }
 
-    public List<BlobEntity> findBlobsByContainer(ContainerEntity containerEntity) {
-        return entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
-              + "WHERE"
-              + " b.containerEntity = :containerEntity", entityClass)
-                .setParameter("containerEntity", containerEntity)
-                .getResultList();
-    }
+   /**
+    * Lists the keys of the blobs directly inside a directory, skipping subdirectory blobs.
+    */
+   public List<String> findFileKeysByDirectory(ContainerEntity containerEntity, String directory, int maxResults) {
+      String prefix = directoryPrefix(directory);
+      TypedQuery<String> query = entityManager.get().createQuery("SELECT b.key FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.directory = false"
+            + keyConditions(prefix, DIRECTORY_DELIMITER) + " ORDER BY b.key", String.class)
+            .setParameter("containerEntity", containerEntity);
+      setKeyParameters(query, prefix, DIRECTORY_DELIMITER);
+      return query.setMaxResults(maxResults).getResultList();
+   }
+
+   /**
+    * Checks if a blob exists without loading it.
+    */
+   public boolean blobExists(ContainerEntity containerEntity, String key) {
+      return entityManager.get().createQuery("SELECT COUNT(b) FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key = :key", Long.class)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("key", key)
+            .getSingleResult() > 0;
+   }
+
+   /**
+    * Gets the access of a blob without loading it.
+    *
+    * @return the access of the blob, or null if the blob does not exist
+    */
+   public BlobAccess findBlobAccess(ContainerEntity containerEntity, String key) {
+      return singleResult(entityManager.get().createQuery("SELECT b.blobAccess FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key = :key", BlobAccess.class)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("key", key));
+   }
+
+   /**
+    * Checks if a blob is a directory without loading it.
+    *
+    * @return whether the blob is a directory, or null if the blob does not exist
+    */
+   public Boolean isDirectory(ContainerEntity containerEntity, String key) {
+      return singleResult(entityManager.get().createQuery("SELECT b.directory FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity AND b.key = :key", Boolean.class)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("key", key));
+   }
+
+   /**
+    * Gets the ids of the chunks holding the content of the blobs whose key is between the first and
+    * the last key, see {@link #deleteBlobs}.
+    */
+   public List<Long> findChunkIds(ContainerEntity containerEntity, String firstKey, String lastKey,
+         String directory) {
+      TypedQuery<Long> query = entityManager.get().createQuery("SELECT c FROM " + entityClass.getName()
+            + " b JOIN b.payload p JOIN p.chunks c WHERE b.containerEntity = :containerEntity"
+            + rangeConditions(directory), Long.class)
+            .setParameter("containerEntity", containerEntity);
+      setRangeParameters(query, firstKey, lastKey, directory);
+      return query.getResultList();
+   }
 
-   public List<BlobEntity> findBlobsByDirectory(ContainerEntity containerEntity, String directory) {
-      return entityManager.get().createQuery("SELECT b FROM " + entityClass.getName() + " b "
-            + "WHERE b.containerEntity = :containerEntity AND b.key != :directoryName AND b.key LIKE :directoryLike ", entityClass)
+   /**
+    * Deletes the blobs whose key is between the first and the last key with their user metadata and
+    * payloads, with one bulk statement per table. If a directory is given, only the blobs directly
+    * inside it are deleted, see {@link #findFileKeysByDirectory}. The collection rows are deleted
+    * first, by native statements since they are not entities, then the blobs and then the payloads
+    * they referred to. Chunks are not deleted.
+    *
+    * @return the number of blobs deleted
+    */
+   public int deleteBlobs(ContainerEntity containerEntity, String firstKey, String lastKey, String directory) {
+      String blobs = " FROM " + BlobEntity.TABLE + " WHERE " + BlobEntity.CONTAINER_COLUMN + " = ?1"
+            + " AND " + BlobEntity.KEY_COLUMN + " >= ?2 AND " + BlobEntity.KEY_COLUMN + " <= ?3"
+            + (directory == null ? "" : " AND " + BlobEntity.DIRECTORY_COLUMN + " = ?4 AND "
+            + BlobEntity.KEY_COLUMN + " NOT LIKE ?5 ESCAPE '" + LIKE_ESCAPE + "'");
+      executeNative(containerEntity, firstKey, lastKey, directory, "DELETE FROM " + BlobEntity.USER_METADATA_TABLE
+            + " WHERE " + BlobEntity.USER_METADATA_CONTAINER_COLUMN + " = ?1 AND "
+            + BlobEntity.USER_METADATA_KEY_COLUMN + " IN (SELECT " + BlobEntity.KEY_COLUMN + blobs + ")");
+      executeNative(containerEntity, firstKey, lastKey, directory, "DELETE FROM " + PayloadEntity.CHUNKS_TABLE
+            + " WHERE " + PayloadEntity.CHUNKS_PAYLOAD_COLUMN + " IN (SELECT " + BlobEntity.PAYLOAD_COLUMN + blobs
+            + ")");
+
+      // The blobs refer to their payloads, so the payload ids are collected before the blobs are deleted
+      TypedQuery<Long> payloadIds = entityManager.get().createQuery("SELECT b.payload.id FROM "
+            + entityClass.getName() + " b WHERE b.containerEntity = :containerEntity" + rangeConditions(directory),
+            Long.class)
+            .setParameter("containerEntity", containerEntity);
+      setRangeParameters(payloadIds, firstKey, lastKey, directory);
+      List<Long> ids = payloadIds.getResultList();
+
+      Query deleteBlobs = entityManager.get().createQuery("DELETE FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + rangeConditions(directory))
+            .setParameter("containerEntity", containerEntity);
+      setRangeParameters(deleteBlobs, firstKey, lastKey, directory);
+      int deleted = deleteBlobs.executeUpdate();
+      if (!ids.isEmpty()) {
+         entityManager.get().createQuery("DELETE FROM " + PayloadEntity.class.getName() + " p WHERE p.id IN :ids")
+               .setParameter("ids", ids)
+               .executeUpdate();
+      }
+      return deleted;
+   }
+
+   /**
+    * Lists the keys of a container in order, starting after the marker.
+    */
+   public List<String> findBlobKeys(ContainerEntity containerEntity, String prefix, String marker, int maxResults) {
+      TypedQuery<String> query = entityManager.get().createQuery("SELECT b.key FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + keyConditions(prefix, null)
+            + (marker == null ? "" : " AND b.key > :marker")
+            + " ORDER BY b.key", String.class)
+            .setParameter("containerEntity", containerEntity);
+      return page(query, prefix, null, marker, maxResults).getResultList();
+   }
+
+   /**
+    * Lists the blobs of a container in key order, starting after the marker. If a delimiter is given,
+    * keys containing it after the prefix are left out. Only the fields needed to list the blobs are
+    * loaded.
+    */
+   public List<BlobSummary> findBlobSummaries(ContainerEntity containerEntity, String prefix, String delimiter,
+         String marker, int maxResults) {
+      TypedQuery<BlobSummary> query = entityManager.get().createQuery("SELECT NEW " + BlobSummary.class.getName()
+            + "(b.key, b.size, b.etag, b.creationDate, b.lastModified, b.directory) FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + keyConditions(prefix, delimiter)
+            + (marker == null ? "" : " AND b.key > :marker")
+            + " ORDER BY b.key", BlobSummary.class)
+            .setParameter("containerEntity", containerEntity);
+      return page(query, prefix, delimiter, marker, maxResults).getResultList();
+   }
+
+   /**
+    * Lists the first key under each common prefix of the keys containing the delimiter after the
+    * prefix, in order and starting after the marker. A common prefix runs up to and including the
+    * first delimiter after the prefix. The keys are grouped by common prefix in the database, so a
+    * single query skips the keys under each common prefix.
+    */
+   public List<String> findCommonPrefixKeys(ContainerEntity containerEntity, String prefix, String delimiter,
+         String marker, int maxResults) {
+      String commonPrefix = "SUBSTRING(b.key, 1, LOCATE(:delimiter, b.key, :delimiterFrom) + :delimiterEnd)";
+      // Common prefixes cover disjoint key ranges, so they are in the order of their first keys
+      TypedQuery<String> query = entityManager.get().createQuery("SELECT MIN(b.key) AS firstKey FROM "
+            + entityClass.getName() + " b WHERE b.containerEntity = :containerEntity" + keyConditions(prefix, null)
+            + " AND b.key LIKE :nestedLike ESCAPE '" + LIKE_ESCAPE + "'"
+            // Keys are never smaller than their common prefix, so the marker also bounds the key range
+            + (marker == null ? "" : " AND b.key > :marker AND " + commonPrefix + " > :marker")
+            + " GROUP BY " + commonPrefix + " ORDER BY firstKey", String.class)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("delimiter", delimiter)
+            .setParameter("delimiterFrom", (prefix == null ? 0 : prefix.length()) + 1)
+            .setParameter("delimiterEnd", delimiter.length() - 1);
+      return page(query, prefix, delimiter, marker, maxResults).getResultList();
+   }
+
+   /**
+    * Gets the metadata of the given blobs in key order. Only the fields of the metadata are loaded from
+    * the blobs and their payloads, the inline data and chunk ids are not.
+    */
+   public List<BlobDetails> findBlobDetails(ContainerEntity containerEntity, Collection<String> keys) {
+      List<BlobDetails> details = entityManager.get().createQuery("SELECT NEW " + BlobDetails.class.getName()
+            + "(b.key, b.size, b.etag, b.creationDate, b.lastModified, b.directory, p.cacheControl, p.contentType,"
+            + " p.contentLength, p.contentMD5, p.contentDisposition, p.contentLanguage, p.contentEncoding, p.expires)"
+            + " FROM " + entityClass.getName() + " b LEFT JOIN b.payload p "
+            + "WHERE b.containerEntity = :containerEntity AND b.key IN :keys ORDER BY b.key", BlobDetails.class)
+            .setParameter("containerEntity", containerEntity)
+            .setParameter("keys", keys)
+            .getResultList();
+      if (details.isEmpty()) {
+         return details;
+      }
+      List<Object[]> entries = entityManager.get().createQuery("SELECT b.key, KEY(m), VALUE(m) FROM "
+            + entityClass.getName() + " b JOIN b.userMetadata m "
+            + "WHERE b.containerEntity = :containerEntity AND b.key IN :keys", Object[].class)
             .setParameter("containerEntity", containerEntity)
-            .setParameter("directoryName", directory)
-            .setParameter("directoryLike", directory + "%")
+            .setParameter("keys", keys)
             .getResultList();
+      Map<String, Map<String, String>> userMetadata = new HashMap<String, Map<String, String>>();
+      for (Object[] entry : entries) {
+         Map<String, String> blobUserMetadata = userMetadata.get((String) entry[0]);
+         if (blobUserMetadata == null) {
+            blobUserMetadata = new HashMap<String, String>();
+            userMetadata.put((String) entry[0], blobUserMetadata);
+         }
+         blobUserMetadata.put((String) entry[1], (String) entry[2]);
+      }
+      for (BlobDetails blobDetails : details) {
+         if (userMetadata.containsKey(blobDetails.getKey())) {
+            blobDetails.setUserMetadata(userMetadata.get(blobDetails.getKey()));
+         }
+      }
+      return details;
+   }
+
+   /**
+    * Counts the blobs of a container whose key starts with the prefix. If a delimiter is given, keys
+    * containing it after the prefix are not counted.
+    */
+   public long countBlobs(ContainerEntity containerEntity, String prefix, String delimiter) {
+      TypedQuery<Long> query = entityManager.get().createQuery("SELECT COUNT(b) FROM " + entityClass.getName() + " b "
+            + "WHERE b.containerEntity = :containerEntity" + keyConditions(prefix, delimiter), Long.class)
+            .setParameter("containerEntity", containerEntity);
+      setKeyParameters(query, prefix, delimiter);
+      return query.getSingleResult();
+   }
+
+   private static <T> T singleResult(TypedQuery<T> query) {
+      List<T> results = query.setMaxResults(1).getResultList();
+      return results.isEmpty() ? null : results.get(0);
+   }
+
+   private static <T> TypedQuery<T> page(TypedQuery<T> query, String prefix, String delimiter, String marker,
+         int maxResults) {
+      setKeyParameters(query, prefix, delimiter);
+      if (marker != null) {
+         query.setParameter("marker", marker);
+      }
+      return query.setMaxResults(maxResults);
+   }
+
+   /**
+    * Conditions restricting the keys to those starting with the prefix, and when a delimiter is given
+    * to those not containing it after the prefix. The prefix is also expressed as a key range so that
+    * it is resolved with a range scan of the (container, key) primary key index.
+    */
+   private static String keyConditions(String prefix, String delimiter) {
+      StringBuilder conditions = new StringBuilder();
+      if (prefix != null) {
+         conditions.append(" AND b.key >= :prefix");
+         if (prefixEnd(prefix) != null) {
+            conditions.append(" AND b.key < :prefixEnd");
+         }
+         conditions.append(" AND b.key LIKE :prefixLike ESCAPE '" + LIKE_ESCAPE + "'");
+      }
+      if (delimiter != null) {
+         conditions.append(" AND b.key NOT LIKE :nestedLike ESCAPE '" + LIKE_ESCAPE + "'");
+      }
+      return conditions.toString();
+   }
+
+   private static void setKeyParameters(Query query, String prefix, String delimiter) {
+      if (prefix != null) {
+         query.setParameter("prefix", prefix);
+         if (prefixEnd(prefix) != null) {
+            query.setParameter("prefixEnd", prefixEnd(prefix));
+         }
+         query.setParameter("prefixLike", escapeLike(prefix) + "%");
+      }
+      if (delimiter != null) {
+         query.setParameter("nestedLike", nestedLike(prefix, delimiter));
+      }
+   }
+
+   /**
+    * Gets the smallest string greater than every string starting with the prefix, or null if there is
+    * no such string.
+    */
+   private static String prefixEnd(String prefix) {
+      for (int i = prefix.length() - 1; i >= 0; i--) {
+         char c = prefix.charAt(i);
+         if (c != Character.MAX_VALUE) {
+            return prefix.substring(0, i) + (char) (c + 1);
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Conditions restricting the keys to those between the first and the last key. The keys between
+    * two keys starting with a prefix start with it as well, so a prefix needs no condition of its own.
+    */
+   private static String rangeConditions(String directory) {
+      return " AND b.key >= :firstKey AND b.key <= :lastKey" + (directory == null ? ""
+            : " AND b.directory = false AND b.key NOT LIKE :nestedLike ESCAPE '" + LIKE_ESCAPE + "'");
+   }
+
+   private static void setRangeParameters(Query query, String firstKey, String lastKey, String directory) {
+      query.setParameter("firstKey", firstKey);
+      query.setParameter("lastKey", lastKey);
+      if (directory != null) {
+         query.setParameter("nestedLike", nestedLike(directoryPrefix(directory), DIRECTORY_DELIMITER));
+      }
+   }
+
+   private void executeNative(ContainerEntity containerEntity, String firstKey, String lastKey, String directory,
+         String statement) {
+      Query query = entityManager.get().createNativeQuery(statement)
+            .setParameter(1, containerEntity.getId())
+            .setParameter(2, firstKey)
+            .setParameter(3, lastKey);
+      if (directory != null) {
+         query.setParameter(4, false);
+         query.setParameter(5, nestedLike(directoryPrefix(directory), DIRECTORY_DELIMITER));
+      }
+      query.executeUpdate();
+   }
+
+   private static String nestedLike(String prefix, String delimiter) {
+      return escapeLike(prefix == null ? "" : prefix) + "%" + escapeLike(delimiter) + "%";
+   }
+
+   private static String directoryPrefix(String directory) {
+      return directory.endsWith(DIRECTORY_DELIMITER) ? directory : directory + DIRECTORY_DELIMITER;
+   }
+
+   private static String escapeLike(String value) {
+      return value.replace(LIKE_ESCAPE, LIKE_ESCAPE + LIKE_ESCAPE)
+            .replace("%", LIKE_ESCAPE + "%")
+            .replace("_", LIKE_ESCAPE + "_");
    }
 
 }
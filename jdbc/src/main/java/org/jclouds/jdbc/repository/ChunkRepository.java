@@ -16,19 +16,336 @@
  */
 package org.jclouds.jdbc.repository;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.entity.MultipartPartEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class ChunkRepository extends GenericRepository<ChunkEntity, Long> {
 
+   private static final int MAX_IDS_PER_STATEMENT = 500;
+   private static final String HIBERNATE_SESSION = "org.hibernate.engine.spi.SessionImplementor";
+
+   /**
+    * Condition on the chunks with the given ids which no payload and no multipart part refers to. The
+    * subqueries are not correlated so they can be used in bulk statements.
+    */
+   private static final String UNREFERENCED = " AND c.id NOT IN (SELECT pc FROM " + PayloadEntity.class.getName()
+         + " p JOIN p.chunks pc WHERE pc IN :ids) AND c.id NOT IN (SELECT mc FROM "
+         + MultipartPartEntity.class.getName() + " m JOIN m.chunks mc WHERE mc IN :ids)";
+
+   private final Provider<EntityManagerFactory> entityManagerFactory;
+
    @Inject
-   private ChunkRepository(Provider<EntityManager> entityManager) {
+   private ChunkRepository(Provider<EntityManager> entityManager,
+         Provider<EntityManagerFactory> entityManagerFactory) {
       super(entityManager);
+      this.entityManagerFactory = entityManagerFactory;
+   }
+
+   /**
+    * Gets the sizes of the given chunks without loading their data.
+    */
+   public Map<Long, Integer> findChunkSizes(Collection<Long> ids) {
+      ImmutableMap.Builder<Long, Integer> sizes = ImmutableMap.builder();
+      for (List<Long> partition : Iterables.partition(ImmutableSet.copyOf(ids), MAX_IDS_PER_STATEMENT)) {
+         List<Object[]> rows = entityManager.get().createQuery("SELECT c.id, c.size FROM " + entityClass.getName() + " c "
+               + "WHERE c.id IN :ids", Object[].class)
+               .setParameter("ids", partition)
+               .getResultList();
+         for (Object[] row : rows) {
+            sizes.put((Long) row[0], ((Number) row[1]).intValue());
+         }
+      }
+      return sizes.build();
+   }
+
+   /**
+    * Adds a reference to a chunk with the given digest and size.
+    *
+    * @return the id of the referenced chunk, or null if there is no such chunk
+    */
+   public Long referenceChunk(String digest, int size) {
+      List<Long> ids = entityManager.get().createQuery("SELECT c.id FROM " + entityClass.getName() + " c "
+            + "WHERE c.digest = :digest AND c.size = :size", Long.class)
+            .setParameter("digest", digest)
+            .setParameter("size", size)
+            .setFlushMode(FlushModeType.COMMIT)
+            .setMaxResults(1)
+            .getResultList();
+      for (Long id : ids) {
+         // The chunk may be reclaimed concurrently, so only reference it if it is still referenced
+         int updated = entityManager.get().createQuery("UPDATE " + entityClass.getName() + " c "
+               + "SET c.referenceCount = c.referenceCount + 1, c.referenceDate = :now "
+               + "WHERE c.id = :id AND c.referenceCount > 0")
+               .setParameter("id", id)
+               .setParameter("now", new Date())
+               .setFlushMode(FlushModeType.COMMIT)
+               .executeUpdate();
+         if (updated == 1) {
+            return id;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Removes one reference to the chunks for each occurrence of their id, and deletes the chunks
+    * which are no longer referenced. Both are done with bulk statements per group of ids.
+    */
+   public void deleteChunks(Collection<Long> ids) {
+      Multiset<Long> references = HashMultiset.create(ids);
+      updateReferenceCounts(references, -1);
+      for (List<Long> partition : Iterables.partition(references.elementSet(), MAX_IDS_PER_STATEMENT)) {
+         entityManager.get().createQuery("DELETE FROM " + entityClass.getName() + " c "
+               + "WHERE c.id IN :ids AND c.referenceCount <= 0")
+               .setParameter("ids", partition)
+               .executeUpdate();
+      }
+   }
+
+   /**
+    * Sets the reference date of the given chunks to now, so the garbage collector spares them while
+    * the payload referring to them is being stored. Chunks already marked for deletion are not touched.
+    *
+    * @return the number of distinct chunks touched
+    */
+   public int touchChunks(Collection<Long> ids) {
+      int touched = 0;
+      Date now = new Date();
+      for (List<Long> partition : Iterables.partition(ImmutableSet.copyOf(ids), MAX_IDS_PER_STATEMENT)) {
+         touched += entityManager.get().createQuery("UPDATE " + entityClass.getName() + " c "
+               + "SET c.referenceDate = :now WHERE c.id IN :ids AND c.referenceCount > 0")
+               .setParameter("now", now)
+               .setParameter("ids", partition)
+               .executeUpdate();
+      }
+      return touched;
+   }
+
+   /**
+    * Gets the ids of the chunks last referenced before the cutoff which no payload and no multipart
+    * part refers to, in order, starting after the given id.
+    */
+   public List<Long> findUnreferencedChunkIds(long after, Date cutoff, int maxResults) {
+      return entityManager.get().createQuery("SELECT c.id FROM " + entityClass.getName() + " c WHERE c.id > :after "
+            + "AND (c.referenceDate IS NULL OR c.referenceDate < :cutoff) "
+            + "AND NOT EXISTS (SELECT p.id FROM " + PayloadEntity.class.getName() + " p JOIN p.chunks pc "
+            + "WHERE pc = c.id) "
+            + "AND NOT EXISTS (SELECT m.id FROM " + MultipartPartEntity.class.getName() + " m JOIN m.chunks mc "
+            + "WHERE mc = c.id) "
+            + "ORDER BY c.id", Long.class)
+            .setParameter("after", after)
+            .setParameter("cutoff", cutoff)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+   /**
+    * Resets the reference count of the given chunks which are still unreferenced and were not
+    * referenced since the cutoff, so they can no longer be shared by deduplication or touched by an
+    * upload before they are deleted.
+    *
+    * @return the number of chunks marked
+    */
+   public int markUnreferencedChunks(Collection<Long> ids, Date cutoff) {
+      int marked = 0;
+      for (List<Long> partition : Iterables.partition(ImmutableSet.copyOf(ids), MAX_IDS_PER_STATEMENT)) {
+         marked += entityManager.get().createQuery("UPDATE " + entityClass.getName() + " c "
+               + "SET c.referenceCount = 0 WHERE c.id IN :ids "
+               + "AND (c.referenceDate IS NULL OR c.referenceDate < :cutoff)" + UNREFERENCED)
+               .setParameter("ids", partition)
+               .setParameter("cutoff", cutoff)
+               .executeUpdate();
+      }
+      return marked;
+   }
+
+   /**
+    * Deletes the given chunks which have been marked and are still unreferenced.
+    *
+    * @return the number of chunks deleted
+    */
+   public int deleteUnreferencedChunks(Collection<Long> ids) {
+      int deleted = 0;
+      for (List<Long> partition : Iterables.partition(ImmutableSet.copyOf(ids), MAX_IDS_PER_STATEMENT)) {
+         deleted += entityManager.get().createQuery("DELETE FROM " + entityClass.getName() + " c "
+               + "WHERE c.id IN :ids AND c.referenceCount <= 0" + UNREFERENCED)
+               .setParameter("ids", partition)
+               .executeUpdate();
+      }
+      return deleted;
    }
 
+   /**
+    * Adds one reference to the chunks for each occurrence of their id, so they can be shared by
+    * another payload.
+    */
+   public void referenceChunks(Collection<Long> ids) {
+      updateReferenceCounts(HashMultiset.create(ids), 1);
+   }
+
+   /**
+    * Changes the reference count of each chunk by its number of occurrences times the sign, with a
+    * bulk statement per group of ids occurring the same number of times.
+    */
+   private void updateReferenceCounts(Multiset<Long> references, int sign) {
+      Multimap<Integer, Long> idsByCount = ArrayListMultimap.create();
+      for (Multiset.Entry<Long> entry : references.entrySet()) {
+         idsByCount.put(entry.getCount(), entry.getElement());
+      }
+      for (Map.Entry<Integer, Collection<Long>> entry : idsByCount.asMap().entrySet()) {
+         for (List<Long> partition : Iterables.partition(entry.getValue(), MAX_IDS_PER_STATEMENT)) {
+            entityManager.get().createQuery("UPDATE " + entityClass.getName() + " c "
+                  + "SET c.referenceCount = c.referenceCount + :references WHERE c.id IN :ids")
+                  .setParameter("references", sign * entry.getKey())
+                  .setParameter("ids", partition)
+                  .executeUpdate();
+         }
+      }
+   }
+
+   /**
+    * Opens the data of a chunk through a JDBC blob, so the chunk is read as a stream instead of being
+    * loaded whole. The blob is read in a transaction of its own, on a connection held until the
+    * stream is closed, and the statement is only run once per chunk.
+    *
+    * @param offset the number of bytes skipped at the start of the chunk
+    * @return a stream of the data, or null if the chunk is stored with a codec and must be read whole
+    */
+   public InputStream openChunkData(Long id, long offset) throws SQLException, IOException {
+      EntityManager em = entityManagerFactory.get().createEntityManager();
+      ChunkDataStream stream = null;
+      boolean opened = false;
+      try {
+         em.getTransaction().begin();
+         PreparedStatement statement = connection(em).prepareStatement("SELECT " + ChunkEntity.CODEC_COLUMN + ", "
+               + ChunkEntity.DATA_COLUMN + " FROM " + ChunkEntity.TABLE + " WHERE " + ChunkEntity.ID_COLUMN + " = ?");
+         stream = new ChunkDataStream(em, statement);
+         statement.setLong(1, id);
+         ResultSet resultSet = statement.executeQuery();
+         if (!resultSet.next()) {
+            throw new IOException("Could not find chunk.");
+         }
+         if (resultSet.getString(1) != null) {
+            return null;
+         }
+         stream.open(resultSet.getBlob(2));
+         ByteStreams.skipFully(stream, offset);
+         opened = true;
+         return stream;
+      } finally {
+         if (!opened) {
+            if (stream != null) {
+               Closeables.close(stream, true);
+            } else {
+               end(em);
+            }
+         }
+      }
+   }
+
+   /**
+    * Gets the JDBC connection of the transaction of an entity manager. EclipseLink unwraps it as a
+    * {@link Connection} once a transaction has begun. Hibernate, in 4.x and 5.x, does not unwrap
+    * connections; its {@code SessionImplementor} SPI exposes the connection of the session through
+    * {@code connection()}, called reflectively since the persistence provider is not a dependency of
+    * this module. Other providers must support unwrapping a {@link Connection}.
+    *
+    * @throws PersistenceException if the provider exposes the connection in neither way
+    */
+   private static Connection connection(EntityManager em) {
+      try {
+         return em.unwrap(Connection.class);
+      } catch (PersistenceException e) {
+         try {
+            Class<?> session = Class.forName(HIBERNATE_SESSION);
+            return (Connection) session.getMethod("connection").invoke(em.unwrap(session));
+         } catch (Exception unsupported) {
+            throw new PersistenceException("Could not get the JDBC connection of the persistence provider", e);
+         }
+      }
+   }
+
+   /**
+    * Ends the read only transaction of an entity manager and closes it.
+    */
+   private static void end(EntityManager em) {
+      try {
+         if (em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+         }
+      } finally {
+         em.close();
+      }
+   }
+
+   /**
+    * Data of a chunk read from a JDBC blob. Closing the stream frees the blob and ends the transaction
+    * it was read in.
+    */
+   private static class ChunkDataStream extends FilterInputStream {
+
+      private final EntityManager em;
+      private final PreparedStatement statement;
+      private Blob data;
+
+      ChunkDataStream(EntityManager em, PreparedStatement statement) {
+         super(null);
+         this.em = em;
+         this.statement = statement;
+      }
+
+      void open(Blob data) throws SQLException {
+         this.data = data;
+         this.in = data.getBinaryStream();
+      }
+
+      @Override
+      public void close() throws IOException {
+         try {
+            if (in != null) {
+               in.close();
+            }
+            if (data != null) {
+               data.free();
+            }
+            statement.close();
+         } catch (SQLException e) {
+            throw new IOException("Could not close chunk data", e);
+         } finally {
+            end(em);
+         }
+      }
+
+   }
 }
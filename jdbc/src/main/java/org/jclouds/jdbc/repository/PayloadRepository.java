@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.repository;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import org.jclouds.jdbc.entity.BlobEntity;
+import org.jclouds.jdbc.entity.MultipartUploadEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Singleton
+public class PayloadRepository extends GenericRepository<PayloadEntity, Long> {
+
+   @Inject
+   private PayloadRepository(Provider<EntityManager> entityManager) {
+      super(entityManager);
+   }
+
+   /**
+    * Gets the ids of the chunks of a payload in order, without loading the payload itself.
+    */
+   public List<Long> findChunkIds(Long payloadId) {
+      return entityManager.get().createQuery("SELECT c FROM " + entityClass.getName() + " p JOIN p.chunks c "
+            + "WHERE p.id = :id ORDER BY INDEX(c)", Long.class)
+            .setParameter("id", payloadId)
+            .getResultList();
+   }
+
+   /**
+    * Gets the ids of payloads referenced by no blob and no multipart upload, in order.
+    */
+   public List<Long> findOrphanPayloadIds(int maxResults) {
+      return entityManager.get().createQuery("SELECT p.id FROM " + entityClass.getName() + " p "
+            + "WHERE NOT EXISTS (SELECT b.key FROM " + BlobEntity.class.getName() + " b WHERE b.payload = p) "
+            + "AND NOT EXISTS (SELECT u.id FROM " + MultipartUploadEntity.class.getName() + " u WHERE u.payload = p) "
+            + "ORDER BY p.id", Long.class)
+            .setMaxResults(maxResults)
+            .getResultList();
+   }
+
+}
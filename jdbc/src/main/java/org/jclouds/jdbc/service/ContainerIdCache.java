@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.service;
+
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CONTAINER_CACHE_SIZE;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Named;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Bounded cache from container names to container ids, used to avoid a query by name before each
+ * blob operation. Only existing containers are cached.
+ * <p>
+ * Deleting a container invalidates its entry and bumps a generation counter; lookups that started
+ * before the invalidation do not populate the cache, so a deleted id is never cached again. The
+ * cache is only coherent with changes made through this process.
+ */
+@Singleton
+public class ContainerIdCache {
+
+   private final Cache<String, Long> cache;
+   private final AtomicLong generation = new AtomicLong();
+
+   @Inject
+   ContainerIdCache(@Named(PROPERTY_CONTAINER_CACHE_SIZE) long maximumSize) {
+      this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+   }
+
+   /**
+    * Gets the cached id of a container, or null if it is not cached.
+    */
+   public Long getIfPresent(String containerName) {
+      return cache.getIfPresent(containerName);
+   }
+
+   /**
+    * Gets the current generation, to be passed to {@link #put(String, Long, long)} after looking up a
+    * container.
+    */
+   public long generation() {
+      return generation.get();
+   }
+
+   /**
+    * Caches the id of a container unless a container was invalidated since the given generation.
+    */
+   public void put(String containerName, Long id, long lookupGeneration) {
+      if (lookupGeneration == generation.get()) {
+         cache.put(containerName, id);
+         if (lookupGeneration != generation.get()) {
+            cache.invalidate(containerName);
+         }
+      }
+   }
+
+   public void invalidate(String containerName) {
+      generation.incrementAndGet();
+      cache.invalidate(containerName);
+   }
+
+   public void invalidateAll() {
+      generation.incrementAndGet();
+      cache.invalidateAll();
+   }
+
+   /**
+    * Gets the hit, miss and eviction counts of the cache.
+    */
+   public CacheStats stats() {
+      return cache.stats();
+   }
+
+   public long size() {
+      return cache.size();
+   }
+
+}
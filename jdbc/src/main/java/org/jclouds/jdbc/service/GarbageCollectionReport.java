@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.service;
+
+/**
+ * Outcome of a garbage collection: the orphan payloads deleted, the unreferenced chunks found and
+ * deleted, and how long it took.
+ */
+public class GarbageCollectionReport {
+
+   private final int deletedPayloads;
+   private final long unreferencedChunks;
+   private final long deletedChunks;
+   private final long elapsedMillis;
+
+   public GarbageCollectionReport(int deletedPayloads, long unreferencedChunks, long deletedChunks,
+         long elapsedMillis) {
+      this.deletedPayloads = deletedPayloads;
+      this.unreferencedChunks = unreferencedChunks;
+      this.deletedChunks = deletedChunks;
+      this.elapsedMillis = elapsedMillis;
+   }
+
+   public int getDeletedPayloads() {
+      return deletedPayloads;
+   }
+
+   public long getUnreferencedChunks() {
+      return unreferencedChunks;
+   }
+
+   public long getDeletedChunks() {
+      return deletedChunks;
+   }
+
+   public long getElapsedMillis() {
+      return elapsedMillis;
+   }
+
+   /**
+    * Number of chunks deleted per second.
+    */
+   public double getThroughput() {
+      return elapsedMillis == 0 ? deletedChunks : deletedChunks * 1000.0 / elapsedMillis;
+   }
+
+   @Override
+   public String toString() {
+      return String.format("deleted %d orphan payloads and %d of %d unreferenced chunks in %d ms (%.1f chunks/s)",
+            deletedPayloads, deletedChunks, unreferencedChunks, elapsedMillis, getThroughput());
+   }
+
+}
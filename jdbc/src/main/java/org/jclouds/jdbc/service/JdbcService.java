@@ -16,54 +16,124 @@
  */
 package org.jclouds.jdbc.service;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
-import com.google.common.hash.HashingInputStream;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobAccess;
+import org.jclouds.blobstore.domain.BlobMetadata;
 import org.jclouds.blobstore.domain.ContainerAccess;
+import org.jclouds.io.ContentMetadata;
+import org.jclouds.io.Payload;
 import org.jclouds.jdbc.conversion.BlobToBlobEntity;
+import org.jclouds.jdbc.entity.BlobDetails;
 import org.jclouds.jdbc.entity.BlobEntity;
 import org.jclouds.jdbc.entity.BlobEntityPK;
+import org.jclouds.jdbc.entity.BlobSummary;
 import org.jclouds.jdbc.entity.ChunkEntity;
 import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.MultipartPartEntity;
+import org.jclouds.jdbc.entity.MultipartUploadEntity;
 import org.jclouds.jdbc.entity.PayloadEntity;
-import org.jclouds.jdbc.reference.JdbcConstants;
+import org.jclouds.jdbc.metrics.JdbcMetrics;
 import org.jclouds.jdbc.repository.BlobRepository;
 import org.jclouds.jdbc.repository.ChunkRepository;
 import org.jclouds.jdbc.repository.ContainerRepository;
+import org.jclouds.jdbc.repository.MultipartPartRepository;
+import org.jclouds.jdbc.repository.MultipartUploadRepository;
+import org.jclouds.jdbc.repository.PayloadRepository;
+import org.jclouds.jdbc.util.ChunkBufferPool;
+import org.jclouds.jdbc.util.ChunkCodec;
+import org.jclouds.jdbc.util.ChunkCodecPolicy;
+import org.jclouds.jdbc.util.ChunkingPolicy;
 import org.jclouds.util.Closeables2;
 
+import javax.inject.Named;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.io.BaseEncoding.base16;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_BATCH_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_DEDUPLICATE_CHUNKS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_DELETE_BATCH_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_GRACE_PERIOD;
 
 @Singleton
 public class JdbcService {
 
+   private static final int MAX_SWAP_ATTEMPTS = 5;
+   // SQL state of unique constraint violations
+   private static final String UNIQUE_VIOLATION = "23505";
+
    private static final String DIRECTORY_MD5 = Hashing.md5().hashBytes(new byte[0]).toString();
 
    private final ContainerRepository containerRepository;
    private final BlobRepository blobRepository;
    private final ChunkRepository chunkRepository;
+   private final PayloadRepository payloadRepository;
+   private final MultipartUploadRepository multipartUploadRepository;
+   private final MultipartPartRepository multipartPartRepository;
    private final BlobToBlobEntity blobToBlobEntity;
+   private final ChunkBufferPool chunkBufferPool;
+   private final ChunkingPolicy chunkingPolicy;
+   private final ChunkCodecPolicy chunkCodecPolicy;
+   private final ContainerIdCache containerIdCache;
+   private final JdbcMetrics metrics;
+   private final int chunkBatchSize;
+   private final int deleteBatchSize;
+   private final boolean deduplicateChunks;
+   private final long touchInterval;
 
    @Inject
    JdbcService(ContainerRepository containerRepository, BlobRepository blobRepository, ChunkRepository chunkRepository,
-         BlobToBlobEntity blobToBlobEntity) {
+         PayloadRepository payloadRepository, MultipartUploadRepository multipartUploadRepository,
+         MultipartPartRepository multipartPartRepository,
+         BlobToBlobEntity blobToBlobEntity, ChunkBufferPool chunkBufferPool, ChunkingPolicy chunkingPolicy,
+         ChunkCodecPolicy chunkCodecPolicy, ContainerIdCache containerIdCache, JdbcMetrics metrics,
+         @Named(PROPERTY_CHUNK_BATCH_SIZE) int chunkBatchSize,
+         @Named(PROPERTY_DELETE_BATCH_SIZE) int deleteBatchSize,
+         @Named(PROPERTY_DEDUPLICATE_CHUNKS) boolean deduplicateChunks,
+         @Named(PROPERTY_GC_GRACE_PERIOD) long gracePeriod) {
       this.containerRepository = containerRepository;
       this.blobRepository = blobRepository;
       this.chunkRepository = chunkRepository;
+      this.payloadRepository = payloadRepository;
+      this.multipartUploadRepository = multipartUploadRepository;
+      this.multipartPartRepository = multipartPartRepository;
       this.blobToBlobEntity = blobToBlobEntity;
+      this.chunkBufferPool = chunkBufferPool;
+      this.chunkingPolicy = chunkingPolicy;
+      this.chunkCodecPolicy = chunkCodecPolicy;
+      this.containerIdCache = containerIdCache;
+      this.metrics = metrics;
+      this.chunkBatchSize = Math.max(chunkBatchSize, 1);
+      this.deleteBatchSize = Math.max(deleteBatchSize, 1);
+      this.deduplicateChunks = deduplicateChunks;
+      // Uploads touch their chunks twice per grace period so the garbage collector spares them
+      this.touchInterval = SECONDS.toMillis(Math.max(gracePeriod, 0)) / 2;
    }
 
    @Transactional
@@ -86,8 +156,21 @@ public class JdbcService {
       return containerRepository.findContainerByName(containerName);
    }
 
-   @Transactional
+   /**
+    * Deletes a container. Its cached id is invalidated before the deletion and again once it has been
+    * committed, so no concurrent lookup can cache the deleted id.
+    */
    public void deleteContainerByName(String containerName) {
+      containerIdCache.invalidate(containerName);
+      try {
+         deleteContainerEntityByName(containerName);
+      } finally {
+         containerIdCache.invalidate(containerName);
+      }
+   }
+
+   @Transactional
+   protected void deleteContainerEntityByName(String containerName) {
       containerRepository.deleteContainerByName(containerName);
    }
 
@@ -100,45 +183,174 @@ public class JdbcService {
 
    @Transactional
    public boolean blobExists(String containerName, String key) {
-      return findBlobById(containerName, key) != null;
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity != null && blobRepository.blobExists(containerEntity, key);
    }
 
-   @Transactional(rollbackOn = IOException.class)
+   /**
+    * Gets the access of a blob without loading it.
+    *
+    * @return the access of the blob, or null if the blob does not exist
+    */
+   @Transactional
+   public BlobAccess findBlobAccess(String containerName, String key) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null ? null : blobRepository.findBlobAccess(containerEntity, key);
+   }
+
+   /**
+    * Checks if a blob exists and is a directory without loading it.
+    */
+   @Transactional
+   public boolean directoryExists(String containerName, String key) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity != null && Boolean.TRUE.equals(blobRepository.isDirectory(containerEntity, key));
+   }
+
+   /**
+    * Stores a blob, replacing any blob with the same key. The chunks are written first, each batch in
+    * its own transaction, so no lock is held while the content is uploaded. The blob is then swapped
+    * in with a short transaction. Concurrent writers of the same key are detected by the version of
+    * the blob, or by its primary key when it is new, and the swap is retried: the last writer wins.
+    * Other failures of the swap are thrown at once.
+    * Chunks of a failed upload are released. The upload fails if the garbage collector reclaimed some
+    * of its chunks, which can only happen when the grace period is shorter than the upload.
+    */
    public BlobEntity createOrModifyBlob(String containerName, Blob blob, BlobAccess blobAccess) throws IOException {
-      List<Long> chunks;
-      HashingInputStream his = new HashingInputStream(Hashing.md5(), blob.getPayload().openStream());
+      Hasher hasher = Hashing.md5().newHasher();
+      ImmutableList.Builder<Long> chunks = ImmutableList.builder();
+      boolean stored = false;
       try {
-         chunks = storeData(his);
+         byte[] inlineData;
+         InputStream data = blob.getPayload().openStream();
+         try {
+            ContentMetadata contentMetadata = blob.getPayload().getContentMetadata();
+            inlineData = storeData(data, hasher, chunks,
+                  chunkingPolicy.chunkSize(containerName, contentMetadata.getContentLength()),
+                  chunkingPolicy.inlineThreshold(containerName),
+                  chunkCodecPolicy.codec(containerName, contentMetadata.getContentType()));
+         } finally {
+            Closeables2.closeQuietly(data);
+         }
+         HashCode actualHashCode = checkContentMD5(hasher.hash(), blob.getPayload());
+
+         for (int attempt = 1; ; attempt++) {
+            // Entities of a failed attempt may hold generated ids, so each attempt starts from new ones
+            BlobEntity blobEntity = blobToBlobEntity.apply(blob);
+            blobEntity.setBlobAccess(blobAccess);
+            blobEntity.setEtag(base16().lowerCase().encode(actualHashCode.asBytes()));
+            blobEntity.getPayload().setInlineData(inlineData);
+            blobEntity.getPayload().setChunks(chunks.build());
+            blobEntity.getPayload().setContentMD5(actualHashCode.asBytes());
+            try {
+               BlobEntity result = swapBlob(containerName, blob.getMetadata().getName(), blobEntity);
+               stored = true;
+               return result;
+            } catch (PersistenceException e) {
+               if (attempt >= MAX_SWAP_ATTEMPTS || !isConcurrentWrite(e)) {
+                  throw e;
+               }
+            }
+         }
       } finally {
-         Closeables2.closeQuietly(his);
+         if (!stored) {
+            releaseChunks(chunks.build());
+         }
       }
-      HashCode actualHashCode = his.hash();
-      HashCode expectedHashCode = blob.getPayload().getContentMetadata().getContentMD5AsHashCode();
-      if (expectedHashCode != null && !actualHashCode.equals(expectedHashCode)) {
-         throw new IOException("MD5 hash code mismatch, actual: " + actualHashCode +
-               " expected: " + expectedHashCode);
+   }
+
+   /**
+    * Checks if a swap failed because a concurrent writer of the same key committed first: the version
+    * of the blob changed, or the primary key of a new blob was taken. Only those failures are retried.
+    */
+   private static boolean isConcurrentWrite(PersistenceException e) {
+      for (Throwable cause : Throwables.getCausalChain(e)) {
+         if (cause instanceof OptimisticLockException) {
+            return true;
+         }
+         if (cause instanceof SQLException && UNIQUE_VIOLATION.equals(((SQLException) cause).getSQLState())) {
+            return true;
+         }
       }
+      return false;
+   }
 
-      String key = blob.getMetadata().getName();
-      Date creationDate = null;
+   /**
+    * Points a key at the payload of the given entity. The chunks of the payload are touched first,
+    * which also checks that the garbage collector did not reclaim any of them.
+    */
+   @Transactional(rollbackOn = { IOException.class, RuntimeException.class })
+   protected BlobEntity swapBlob(String containerName, String key, BlobEntity blobEntity) throws IOException {
+      checkChunksTouched(blobEntity.getPayload().getChunks());
+      return createOrReplaceBlob(containerName, key, blobEntity);
+   }
+
+   /**
+    * Stores a blob entity under a key. An existing blob is updated in place, which checks and
+    * increments its version, and its previous payload is deleted and its chunks released.
+    */
+   private BlobEntity createOrReplaceBlob(String containerName, String key, BlobEntity blobEntity) {
       BlobEntity oldBlobEntity = findBlobById(containerName, key);
-      if (oldBlobEntity != null) {
-         creationDate = oldBlobEntity.getCreationDate();
+      if (oldBlobEntity == null) {
+         blobEntity.setContainerEntity(findContainer(containerName));
+         blobEntity.setKey(key);
+         blobEntity.setLastModified(new Date());
+         return blobRepository.create(blobEntity);
       }
-      BlobEntity blobEntity = blobToBlobEntity.apply(blob);
-      blobEntity.getPayload().setChunks(chunks);
-      blobEntity.setContainerEntity(containerRepository.findContainerByName(containerName));
-      blobEntity.setKey(key);
-      blobEntity.setBlobAccess(blobAccess);
-      blobEntity.setCreationDate(creationDate);
-      blobEntity.setLastModified(new Date());
-      blobEntity.setEtag(base16().lowerCase().encode(actualHashCode.asBytes()));
-      blobEntity.getPayload().setContentMD5(actualHashCode.asBytes());
 
-      BlobEntity result = blobRepository.save(blobEntity);
-      return result;
+      PayloadEntity oldPayload = oldBlobEntity.getPayload();
+      if (blobEntity.getPayload().getId() == null) {
+         payloadRepository.create(blobEntity.getPayload());
+      }
+      oldBlobEntity.setPayload(blobEntity.getPayload());
+      oldBlobEntity.setUserMetadata(blobEntity.getUserMetadata());
+      oldBlobEntity.setBlobAccess(blobEntity.getBlobAccess() == null ? BlobAccess.PRIVATE
+            : blobEntity.getBlobAccess());
+      oldBlobEntity.setSize(blobEntity.getSize());
+      oldBlobEntity.setEtag(blobEntity.getEtag());
+      oldBlobEntity.setDirectory(blobEntity.isDirectory());
+      oldBlobEntity.setLastModified(new Date());
+      deleteChunks(oldPayload.getChunks());
+      payloadRepository.delete(oldPayload);
+      return oldBlobEntity;
+   }
+
+   /**
+    * Touches the chunks of a payload being stored, see {@link ChunkRepository#touchChunks}.
+    *
+    * @throws IOException if some of the chunks were reclaimed by the garbage collector
+    */
+   @Transactional(rollbackOn = { IOException.class, RuntimeException.class })
+   protected void checkChunksTouched(List<Long> chunkIds) throws IOException {
+      if (chunkIds.isEmpty()) {
+         return;
+      }
+      int expected = ImmutableSet.copyOf(chunkIds).size();
+      int touched = chunkRepository.touchChunks(chunkIds);
+      if (touched != expected) {
+         throw new IOException("Only " + touched + " of the " + expected
+               + " chunks of the upload are left, the others were reclaimed by the garbage collector");
+      }
    }
 
+   /**
+    * Releases the chunks of a blob which could not be stored. Failures are ignored so they do not hide
+    * the original one, the chunks are then left to the garbage collector.
+    */
+   private void releaseChunks(List<Long> chunkIds) {
+      if (chunkIds.isEmpty()) {
+         return;
+      }
+      try {
+         deleteChunks(chunkIds);
+      } catch (RuntimeException e) {
+         // Left to the garbage collector
+      }
+   }
+
+   /**
+    * Stores a directory blob, replacing any blob with the same key.
+    */
    @Transactional
    public BlobEntity createDirectoryBlob(String containerName, Blob blob, BlobAccess blobAccess) {
       BlobEntity blobEntity = BlobEntity.builder(null, null)
@@ -146,11 +358,9 @@ public class JdbcService {
             .directory(true)
             .payload(PayloadEntity.builder().contentType("application/directory").build())
             .build();
-      blobEntity.setContainerEntity(containerRepository.findContainerByName(containerName));
-      blobEntity.setKey(blob.getMetadata().getName());
       blobEntity.setBlobAccess(blobAccess);
       blobEntity.setEtag(DIRECTORY_MD5);
-      return blobRepository.save(blobEntity);
+      return createOrReplaceBlob(containerName, blob.getMetadata().getName(), blobEntity);
    }
 
    @Transactional
@@ -158,65 +368,188 @@ public class JdbcService {
       return createDirectoryBlob(containerName, blob, null);
    }
 
-   @Transactional(rollbackOn = IOException.class)
    public BlobEntity createOrModifyBlob(String containerName, Blob blob) throws IOException {
       return createOrModifyBlob(containerName, blob, null);
    }
 
    @Transactional
    public BlobEntity findBlobById(String containerName, String key) {
-      ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
-      return containerEntity == null ? null : blobRepository.find(new BlobEntityPK(containerEntity.getId(), key));
+      Long containerId = findContainerId(containerName);
+      return containerId == null ? null : blobRepository.find(new BlobEntityPK(containerId, key));
    }
 
    @Transactional
    public ChunkEntity findChunkById(Long id) {
-      return chunkRepository.find(id);
+      if (!metrics.isEnabled()) {
+         return chunkRepository.find(id);
+      }
+      long start = System.nanoTime();
+      ChunkEntity chunk = chunkRepository.find(id);
+      if (chunk != null) {
+         metrics.chunkRead(chunk.getData().length, System.nanoTime() - start);
+      }
+      return chunk;
    }
 
+   /**
+    * Gets the ids of the chunks of a payload in order. Blob entities are loaded without their chunk ids,
+    * which are only fetched when the content is read.
+    */
    @Transactional
-   public List<BlobEntity> findBlobsByContainer(String containerName) {
-      return blobRepository.findBlobsByContainer(containerRepository.findContainerByName(containerName));
+   public List<Long> findChunkIds(Long payloadId) {
+      return payloadRepository.findChunkIds(payloadId);
    }
 
-   @Transactional
-   public List<BlobEntity> findBlobsByDirectory(String containerName, String directoryName, boolean recursive) {
-      ImmutableList.Builder<BlobEntity> result = ImmutableList.builder();
-      List<BlobEntity> blobEntities = blobRepository
-            .findBlobsByDirectory(containerRepository.findContainerByName(containerName), directoryName);
-      result.addAll(blobEntities);
-      if (recursive) {
-         for (BlobEntity blobEntity : blobEntities) {
-            if (blobEntity.isDirectory()) {
-               result.addAll(findBlobsByDirectory(containerName, blobEntity.getKey(), true));
+   /**
+    * Opens the data of a chunk as a stream, without loading it whole. The stream holds a connection
+    * until it is closed.
+    *
+    * @param offset the number of bytes skipped at the start of the chunk
+    * @return a stream of the data, or null if the chunk is stored with a codec and must be read whole
+    */
+   public InputStream openChunkData(Long id, long offset) throws IOException {
+      InputStream data;
+      try {
+         data = chunkRepository.openChunkData(id, offset);
+      } catch (SQLException e) {
+         throw new IOException("Could not read chunk " + id, e);
+      }
+      if (data == null || !metrics.isEnabled()) {
+         return data;
+      }
+      return new FilterInputStream(data) {
+         @Override
+         public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int count = super.read(b, off, len);
+            if (count > 0) {
+               metrics.chunkRead(count, System.nanoTime() - start);
             }
+            return count;
          }
-      }
-      return result.build();
+      };
+   }
+
+   /**
+    * Gets the codec decoding the data of chunks stored with the given codec name.
+    */
+   public ChunkCodec getChunkCodec(String name) {
+      return chunkCodecPolicy.forName(name);
    }
 
    @Transactional
+   public Map<Long, Integer> findChunkSizes(List<Long> ids) {
+      return ids.isEmpty() ? ImmutableMap.<Long, Integer>of() : chunkRepository.findChunkSizes(ids);
+   }
+
+   @Transactional
+   public List<String> findBlobKeys(String containerName, String prefix, String marker, int maxResults) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null ? ImmutableList.<String>of()
+            : blobRepository.findBlobKeys(containerEntity, prefix, marker, maxResults);
+   }
+
+   @Transactional
+   public List<BlobSummary> findBlobSummaries(String containerName, String prefix, String delimiter, String marker,
+         int maxResults) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null ? ImmutableList.<BlobSummary>of()
+            : blobRepository.findBlobSummaries(containerEntity, prefix, delimiter, marker, maxResults);
+   }
+
+   @Transactional
+   public List<String> findCommonPrefixKeys(String containerName, String prefix, String delimiter, String marker,
+         int maxResults) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null ? ImmutableList.<String>of()
+            : blobRepository.findCommonPrefixKeys(containerEntity, prefix, delimiter, marker, maxResults);
+   }
+
+   /**
+    * Gets the metadata of the given blobs without loading their payloads, see
+    * {@link BlobRepository#findBlobDetails}. Missing blobs are left out.
+    */
+   @Transactional
+   public List<BlobDetails> findBlobDetails(String containerName, Collection<String> keys) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null || keys.isEmpty() ? ImmutableList.<BlobDetails>of()
+            : blobRepository.findBlobDetails(containerEntity, keys);
+   }
+
+   @Transactional
+   public long countBlobs(String containerName, String prefix, String delimiter) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null ? 0 : blobRepository.countBlobs(containerEntity, prefix, delimiter);
+   }
+
+   /**
+    * Deletes all the blobs in a container, see {@link #deleteBlobsByPrefix(String, String)}.
+    */
    public void deleteBlobsByContainer(String containerName) {
-      List<BlobEntity> blobs = findBlobsByContainer(containerName);
-      for (BlobEntity blob : blobs) {
-         deleteBlob(containerName, blob.getKey());
+      deleteBlobsByPrefix(containerName, null);
+   }
+
+   /**
+    * Deletes the blobs in a directory. When deleting recursively the whole directory tree is deleted
+    * with {@link #deleteBlobsByPrefix(String, String)}, otherwise only the blobs directly inside the
+    * directory are deleted, in batches, and subdirectories are kept.
+    */
+   public void deleteBlobsByDirectory(String containerName, String directoryName, boolean recursive) {
+      if (recursive) {
+         deleteBlobsByPrefix(containerName, directoryName.endsWith("/") ? directoryName : directoryName + "/");
+         return;
       }
+      int deleted;
+      do {
+         deleted = deleteDirectoryBatch(containerName, directoryName);
+      } while (deleted == deleteBatchSize);
+   }
+
+   /**
+    * Deletes the blobs whose key starts with the prefix. Blobs are deleted in batches of
+    * jclouds.jdbc.delete-batch-size, each one in its own transaction so locks are held briefly.
+    *
+    * @param containerName the name of the container
+    * @param prefix the prefix of the keys to delete, or null to delete every blob
+    */
+   public void deleteBlobsByPrefix(String containerName, String prefix) {
+      int deleted;
+      do {
+         deleted = deleteBlobBatch(containerName, prefix);
+      } while (deleted == deleteBatchSize);
    }
 
+   /**
+    * Deletes a batch of blobs whose key starts with the prefix. The blobs of the whole batch, their
+    * user metadata, payloads and chunks are deleted with a few set based statements.
+    *
+    * @return the number of blobs deleted
+    */
    @Transactional
-   public void deleteBlobsByDirectory(String containerName, String directoryName, boolean recursive) {
-      List<BlobEntity> blobs = findBlobsByDirectory(containerName, directoryName, false);
-      for (BlobEntity blob : blobs) {
-         if (!blob.isDirectory()) {
-            deleteBlob(containerName, blob.getKey());
-         }
-         else {
-            if (recursive) {
-               deleteBlobsByDirectory(containerName, blob.getKey(), true);
-               deleteBlob(containerName, blob.getKey());
-            }
-         }
+   public int deleteBlobBatch(String containerName, String prefix) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      if (containerEntity == null) {
+         return 0;
       }
+      List<String> keys = blobRepository.findBlobKeys(containerEntity, prefix, null, deleteBatchSize);
+      deleteBlobs(containerEntity, keys, null);
+      return keys.size();
+   }
+
+   /**
+    * Deletes a batch of the blobs directly inside a directory, keeping its subdirectories.
+    *
+    * @return the number of blobs deleted
+    */
+   @Transactional
+   public int deleteDirectoryBatch(String containerName, String directoryName) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      if (containerEntity == null) {
+         return 0;
+      }
+      List<String> keys = blobRepository.findFileKeysByDirectory(containerEntity, directoryName, deleteBatchSize);
+      deleteBlobs(containerEntity, keys, directoryName);
+      return keys.size();
    }
 
    @Transactional
@@ -228,6 +561,227 @@ public class JdbcService {
       }
    }
 
+   /**
+    * Deletes payloads referenced by no blob and no multipart upload, such as the payloads left behind
+    * when blobs were overwritten by earlier versions of this store, and releases their chunks.
+    *
+    * @return the number of payloads deleted
+    */
+   @Transactional
+   public int deleteOrphanPayloadBatch(int maxResults) {
+      int deleted = 0;
+      for (Long id : payloadRepository.findOrphanPayloadIds(maxResults)) {
+         PayloadEntity payload = payloadRepository.find(id);
+         if (payload != null) {
+            chunkRepository.deleteChunks(payload.getChunks());
+            payloadRepository.delete(payload);
+            deleted++;
+         }
+      }
+      return deleted;
+   }
+
+   @Transactional
+   public List<Long> findUnreferencedChunkIds(long after, Date cutoff, int maxResults) {
+      return chunkRepository.findUnreferencedChunkIds(after, cutoff, maxResults);
+   }
+
+   @Transactional
+   public int markUnreferencedChunks(List<Long> ids, Date cutoff) {
+      return chunkRepository.markUnreferencedChunks(ids, cutoff);
+   }
+
+   @Transactional
+   public int deleteUnreferencedChunks(List<Long> ids) {
+      return chunkRepository.deleteUnreferencedChunks(ids);
+   }
+
+   /**
+    * Copies a blob without copying its data: the new payload references the chunks of the source
+    * blob, whose reference counts are incremented. A blob already stored under the destination key is
+    * replaced and its chunks are released.
+    *
+    * @param contentMetadata content metadata replacing the one of the source blob, or null to keep it
+    * @param userMetadata user metadata replacing the one of the source blob, or null to keep it
+    * @return the new blob entity, or null if the source blob does not exist
+    */
+   @Transactional
+   public BlobEntity copyBlob(String fromContainerName, String fromKey, String toContainerName, String toKey,
+         ContentMetadata contentMetadata, Map<String, String> userMetadata) {
+      BlobEntity source = findBlobById(fromContainerName, fromKey);
+      if (source == null) {
+         return null;
+      }
+      PayloadEntity sourcePayload = source.getPayload();
+      List<Long> chunks = new ArrayList<Long>(payloadRepository.findChunkIds(sourcePayload.getId()));
+      chunkRepository.referenceChunks(chunks);
+
+      PayloadEntity payload = contentMetadata == null ? PayloadEntity.builder()
+            .cacheControl(sourcePayload.getCacheControl())
+            .contentDisposition(sourcePayload.getContentDisposition())
+            .contentEncoding(sourcePayload.getContentEncoding())
+            .contentLanguage(sourcePayload.getContentLanguage())
+            .contentType(sourcePayload.getContentType())
+            .expires(sourcePayload.getExpires())
+            .build() : blobToBlobEntity.toPayloadEntity(contentMetadata);
+      payload.setChunks(chunks);
+      payload.setInlineData(sourcePayload.getInlineData());
+      payload.setContentLength(sourcePayload.getContentLength());
+      payload.setContentMD5(sourcePayload.getContentMD5());
+
+      BlobEntity blobEntity = BlobEntity.builder(findContainer(toContainerName), toKey)
+            .payload(payload)
+            .userMetadata(new HashMap<String, String>(userMetadata == null ? source.getUserMetadata() : userMetadata))
+            .size(source.getSize())
+            .etag(source.getEtag())
+            .directory(source.isDirectory())
+            .build();
+
+      BlobEntity oldBlobEntity = findBlobById(toContainerName, toKey);
+      if (oldBlobEntity != null) {
+         deleteChunks(oldBlobEntity.getPayload().getChunks());
+         blobRepository.delete(oldBlobEntity);
+         // The replaced blob must be gone before the copy is inserted with the same key
+         blobRepository.flush();
+      }
+      return blobRepository.create(blobEntity);
+   }
+
+   @Transactional
+   public MultipartUploadEntity createMultipartUpload(String containerName, BlobMetadata blobMetadata,
+         BlobAccess blobAccess) {
+      MultipartUploadEntity upload = new MultipartUploadEntity(UUID.randomUUID().toString(),
+            findContainer(containerName), blobMetadata.getName(),
+            blobToBlobEntity.toPayloadEntity(blobMetadata.getContentMetadata()), blobMetadata.getUserMetadata(),
+            blobAccess);
+      return multipartUploadRepository.create(upload);
+   }
+
+   @Transactional
+   public MultipartUploadEntity findMultipartUpload(String uploadId) {
+      return multipartUploadRepository.find(uploadId);
+   }
+
+   @Transactional
+   public List<MultipartUploadEntity> findMultipartUploads(String containerName) {
+      ContainerEntity containerEntity = findContainer(containerName);
+      return containerEntity == null ? ImmutableList.<MultipartUploadEntity>of()
+            : multipartUploadRepository.findUploadsByContainer(containerEntity);
+   }
+
+   @Transactional
+   public List<MultipartPartEntity> findMultipartParts(String uploadId) {
+      return multipartPartRepository.findPartsByUpload(getMultipartUpload(uploadId));
+   }
+
+   /**
+    * Stores a part of a multipart upload in its own transaction, so parts can be uploaded in parallel
+    * over several connections. A part uploaded again with the same number replaces the previous one.
+    */
+   @Transactional(rollbackOn = IOException.class)
+   public MultipartPartEntity createOrModifyMultipartPart(String uploadId, int partNumber, Payload payload)
+         throws IOException {
+      MultipartUploadEntity upload = getMultipartUpload(uploadId);
+      Hasher hasher = Hashing.md5().newHasher();
+      ImmutableList.Builder<Long> chunks = ImmutableList.builder();
+      CountingInputStream data = new CountingInputStream(payload.openStream());
+      try {
+         String containerName = upload.getContainerEntity().getName();
+         storeData(data, hasher, chunks,
+               chunkingPolicy.chunkSize(containerName, payload.getContentMetadata().getContentLength()), 0,
+               chunkCodecPolicy.codec(containerName, upload.getPayload().getContentType()));
+      } finally {
+         Closeables2.closeQuietly(data);
+      }
+      HashCode actualHashCode = checkContentMD5(hasher.hash(), payload);
+
+      MultipartPartEntity oldPart = multipartPartRepository.findPart(upload, partNumber);
+      if (oldPart != null) {
+         deleteChunks(oldPart.getChunks());
+         multipartPartRepository.delete(oldPart);
+         // The replaced part must be gone before the new one is inserted
+         multipartPartRepository.flush();
+      }
+      return multipartPartRepository.create(new MultipartPartEntity(upload, partNumber, data.getCount(),
+            base16().lowerCase().encode(actualHashCode.asBytes()), new Date(), chunks.build()));
+   }
+
+   /**
+    * Completes a multipart upload. The chunk lists of the given parts are stitched together into the
+    * payload of the blob, no data is copied. Chunks of uploaded parts left out of the blob are deleted.
+    * A blob already stored under the key is replaced and its chunks are released.
+    *
+    * @param uploadId the id of the multipart upload
+    * @param partNumbers the numbers of the parts making up the blob, in order
+    * @return the blob entity
+    */
+   @Transactional
+   public BlobEntity completeMultipartUpload(String uploadId, List<Integer> partNumbers) {
+      MultipartUploadEntity upload = getMultipartUpload(uploadId);
+      List<MultipartPartEntity> uploadedParts = multipartPartRepository.findPartsByUpload(upload);
+      Map<Integer, MultipartPartEntity> parts = new HashMap<Integer, MultipartPartEntity>();
+      for (MultipartPartEntity part : uploadedParts) {
+         parts.put(part.getPartNumber(), part);
+      }
+
+      ImmutableList.Builder<Long> chunks = ImmutableList.builder();
+      Hasher etagHasher = Hashing.md5().newHasher();
+      long size = 0;
+      for (Integer partNumber : partNumbers) {
+         MultipartPartEntity part = parts.remove(partNumber);
+         checkArgument(part != null, "Part %s of multipart upload %s was not uploaded", partNumber, uploadId);
+         chunks.addAll(part.getChunks());
+         etagHasher.putBytes(base16().lowerCase().decode(part.getEtag()));
+         size += part.getSize();
+      }
+      List<Long> unusedChunks = new ArrayList<Long>();
+      for (MultipartPartEntity part : parts.values()) {
+         unusedChunks.addAll(part.getChunks());
+      }
+      deleteChunks(unusedChunks);
+      for (MultipartPartEntity part : uploadedParts) {
+         multipartPartRepository.delete(part);
+      }
+
+      // The payload of the upload becomes the payload of the blob
+      PayloadEntity payload = upload.getPayload();
+      upload.setPayload(null);
+      payload.setChunks(chunks.build());
+      payload.setContentLength(size);
+      payload.setContentMD5(null);
+
+      BlobEntity blobEntity = BlobEntity.builder(null, null)
+            .payload(payload)
+            .userMetadata(new HashMap<String, String>(upload.getUserMetadata()))
+            .size(size)
+            .blobAccess(upload.getBlobAccess())
+            .etag(base16().lowerCase().encode(etagHasher.hash().asBytes()) + "-" + partNumbers.size())
+            .build();
+      multipartUploadRepository.delete(upload);
+      return createOrReplaceBlob(upload.getContainerEntity().getName(), upload.getKey(), blobEntity);
+   }
+
+   /**
+    * Aborts a multipart upload, deleting its parts and their chunks.
+    */
+   @Transactional
+   public void deleteMultipartUpload(String uploadId) {
+      MultipartUploadEntity upload = multipartUploadRepository.find(uploadId);
+      if (upload == null) {
+         return;
+      }
+      List<MultipartPartEntity> parts = multipartPartRepository.findPartsByUpload(upload);
+      List<Long> chunkIds = new ArrayList<Long>();
+      for (MultipartPartEntity part : parts) {
+         chunkIds.addAll(part.getChunks());
+      }
+      deleteChunks(chunkIds);
+      for (MultipartPartEntity part : parts) {
+         multipartPartRepository.delete(part);
+      }
+      multipartUploadRepository.delete(upload);
+   }
+
    @Transactional
    public void setBlobAccessById(String containerName, String key, BlobAccess access) {
       BlobEntity blobEntity = findBlobById(containerName, key);
@@ -235,26 +789,216 @@ public class JdbcService {
       blobRepository.save(blobEntity);
    }
 
+   /**
+    * Gets a reference to a container, resolving its id through the container id cache. The entity is
+    * not loaded from the database if the id was cached.
+    */
+   private ContainerEntity findContainer(String containerName) {
+      Long containerId = findContainerId(containerName);
+      return containerId == null ? null : containerRepository.getReference(containerId);
+   }
+
+   private MultipartUploadEntity getMultipartUpload(String uploadId) {
+      MultipartUploadEntity upload = multipartUploadRepository.find(uploadId);
+      checkArgument(upload != null, "Multipart upload %s does not exist", uploadId);
+      return upload;
+   }
+
+   private static HashCode checkContentMD5(HashCode actualHashCode, Payload payload) throws IOException {
+      HashCode expectedHashCode = payload.getContentMetadata().getContentMD5AsHashCode();
+      if (expectedHashCode != null && !actualHashCode.equals(expectedHashCode)) {
+         throw new IOException("MD5 hash code mismatch, actual: " + actualHashCode +
+               " expected: " + expectedHashCode);
+      }
+      return actualHashCode;
+   }
+
+   private Long findContainerId(String containerName) {
+      long start = metrics.isEnabled() ? System.nanoTime() : 0;
+      Long containerId = containerIdCache.getIfPresent(containerName);
+      if (containerId != null) {
+         if (metrics.isEnabled()) {
+            metrics.containerLookup(true, System.nanoTime() - start);
+         }
+      } else {
+         long generation = containerIdCache.generation();
+         ContainerEntity containerEntity = containerRepository.findContainerByName(containerName);
+         if (containerEntity == null) {
+            return null;
+         }
+         containerId = containerEntity.getId();
+         containerIdCache.put(containerName, containerId, generation);
+         if (metrics.isEnabled()) {
+            metrics.containerLookup(false, System.nanoTime() - start);
+         }
+      }
+      return containerId;
+   }
+
+   /**
+    * Deletes a batch of blobs listed in key order, by the range from its first to its last key, and
+    * releases their chunks.
+    *
+    * @param directory the directory whose blobs were listed, see
+    *                  {@link BlobRepository#findFileKeysByDirectory}, or null if the batch was listed
+    *                  by prefix
+    */
+   private void deleteBlobs(ContainerEntity containerEntity, List<String> keys, String directory) {
+      if (!keys.isEmpty()) {
+         String firstKey = keys.get(0);
+         String lastKey = keys.get(keys.size() - 1);
+         chunkRepository.deleteChunks(blobRepository.findChunkIds(containerEntity, firstKey, lastKey, directory));
+         blobRepository.deleteBlobs(containerEntity, firstKey, lastKey, directory);
+      }
+   }
+
+   @Transactional
+   protected void deleteChunks(List<Long> chunkIds) {
+      chunkRepository.deleteChunks(chunkIds);
+   }
+
+   /**
+    * Splits the data in chunks and adds their ids to the list, hashing the content on the way. Full
+    * chunks are read into pooled buffers which are reused once their batch has been stored. Data that
+    * fits in a single chunk no bigger than the inline threshold is not stored in chunks but returned,
+    * to be kept in the payload itself. The ids of the batches already stored are in the list if an
+    * exception is thrown. Long uploads touch the chunks stored so far once per touch interval.
+    *
+    * @return the data to store inline, or null if it was stored in chunks
+    */
+   private byte[] storeData(InputStream data, Hasher hasher, ImmutableList.Builder<Long> chunks, int chunkSize,
+         int inlineThreshold, ChunkCodec codec) throws IOException {
+      List<ChunkEntity> batch = new ArrayList<ChunkEntity>(chunkBatchSize);
+      List<byte[]> buffers = new ArrayList<byte[]>(chunkBatchSize);
+      try {
+         boolean first = true;
+         long lastTouch = System.currentTimeMillis();
+         while (true) {
+            byte[] buffer = chunkBufferPool.acquire(chunkSize);
+            buffers.add(buffer);
+            int bytes = ByteStreams.read(data, buffer, 0, buffer.length);
+            if (bytes == 0) {
+               break;
+            }
+            if (metrics.isEnabled()) {
+               long start = System.nanoTime();
+               hasher.putBytes(buffer, 0, bytes);
+               metrics.contentHashed(bytes, System.nanoTime() - start);
+            } else {
+               hasher.putBytes(buffer, 0, bytes);
+            }
+            byte[] chunkData = bytes == buffer.length ? buffer : Arrays.copyOf(buffer, bytes);
+            if (first && bytes != buffer.length && bytes <= inlineThreshold) {
+               return chunkData;
+            }
+            first = false;
+            String digest = deduplicateChunks ? Hashing.sha256().hashBytes(buffer, 0, bytes).toString() : null;
+            batch.add(new ChunkEntity(chunkData, bytes, digest));
+            if (batch.size() >= chunkBatchSize) {
+               chunks.addAll(storeChunkBatch(batch, codec));
+               batch.clear();
+               releaseBuffers(buffers);
+               lastTouch = touchChunksIfDue(chunks, lastTouch);
+            }
+            if (bytes != buffer.length) {
+               break;
+            }
+         }
+         if (!batch.isEmpty()) {
+            chunks.addAll(storeChunkBatch(batch, codec));
+         }
+      } finally {
+         releaseBuffers(buffers);
+      }
+      return null;
+   }
+
+   /**
+    * Touches the chunks stored so far if the touch interval elapsed since the last touch, failing the
+    * upload early if the garbage collector reclaimed some of them.
+    *
+    * @return the time of the last touch
+    */
+   private long touchChunksIfDue(ImmutableList.Builder<Long> chunks, long lastTouch) throws IOException {
+      long now = System.currentTimeMillis();
+      if (touchInterval == 0 || now - lastTouch < touchInterval) {
+         return lastTouch;
+      }
+      checkChunksTouched(chunks.build());
+      return now;
+   }
+
+   /**
+    * Stores a batch of chunks and returns their ids in order. The batch is committed on its own unless
+    * a transaction is already active. When deduplication is enabled, chunks whose SHA-256 digest
+    * matches a stored chunk reference it instead of being stored again. New chunks are encoded with
+    * the codec, if any, unless they do not compress.
+    */
    @Transactional
-   private void deleteChunks(List<Long> chunkIds) {
-      for (Long chunkId : chunkIds) {
-         chunkRepository.delete(chunkRepository.find(chunkId));
+   protected List<Long> storeChunkBatch(List<ChunkEntity> batch, ChunkCodec codec) {
+      List<Long> ids = new ArrayList<Long>(batch.size());
+      List<ChunkEntity> created = new ArrayList<ChunkEntity>(batch.size());
+      for (ChunkEntity chunk : batch) {
+         Long chunkId = chunk.getDigest() == null ? null
+               : referenceExistingChunk(chunk.getDigest(), chunk.getSize(), created);
+         if (chunkId == null) {
+            byte[] encoded = codec == null ? null : codec.encode(chunk.getData(), 0, chunk.getSize());
+            if (encoded != null) {
+               chunk.setData(encoded);
+               chunk.setCodec(codec.getName());
+            }
+            chunkRepository.create(chunk);
+            created.add(chunk);
+            chunkId = chunk.getId();
+         }
+         ids.add(chunkId);
       }
+      flushChunks(created);
+      return ids;
    }
 
-   @Transactional(rollbackOn = IOException.class)
-   private List<Long> storeData(InputStream data) throws IOException {
-      ImmutableList.Builder<Long> chunks = ImmutableList.builder();
-      while (true) {
-         byte[] buffer = new byte[JdbcConstants.DEFAULT_CHUNK_SIZE];
-         int bytes = ByteStreams.read(data, buffer, 0, JdbcConstants.DEFAULT_CHUNK_SIZE);
-         if (bytes == 0) {
-            break;
-         } else if (bytes != buffer.length) {
-            buffer = Arrays.copyOf(buffer, bytes);
+   /**
+    * Adds a reference to a stored chunk with the given digest, looking first in the batch not yet
+    * flushed and then in the database.
+    *
+    * @return the id of the referenced chunk, or null if there is no chunk with that digest
+    */
+   private Long referenceExistingChunk(String digest, int size, List<ChunkEntity> batch) {
+      for (ChunkEntity chunk : batch) {
+         if (digest.equals(chunk.getDigest()) && chunk.getSize() == size) {
+            chunk.setReferenceCount(chunk.getReferenceCount() + 1);
+            return chunk.getId();
+         }
+      }
+      return chunkRepository.referenceChunk(digest, size);
+   }
+
+   private void flushChunks(List<ChunkEntity> batch) {
+      if (batch.isEmpty()) {
+         return;
+      }
+      if (metrics.isEnabled()) {
+         long bytes = 0;
+         for (ChunkEntity chunk : batch) {
+            bytes += chunk.getData().length;
          }
-         chunks.add(chunkRepository.create(new ChunkEntity(buffer, bytes)).getId());
+         long start = System.nanoTime();
+         chunkRepository.flush();
+         metrics.chunksWritten(batch.size(), bytes, System.nanoTime() - start);
+      } else {
+         chunkRepository.flush();
+      }
+      for (ChunkEntity chunk : batch) {
+         // Detached chunks no longer reference the pooled buffers
+         chunkRepository.detach(chunk);
+      }
+      batch.clear();
+   }
+
+   private void releaseBuffers(List<byte[]> buffers) {
+      for (byte[] buffer : buffers) {
+         chunkBufferPool.release(buffer);
       }
-      return chunks.build();
+      buffers.clear();
    }
 }
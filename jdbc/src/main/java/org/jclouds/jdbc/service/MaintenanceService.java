@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_DELETE_BATCH_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_GRACE_PERIOD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_GC_RATE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_SCRUB_RATE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.inject.Named;
+
+import org.jclouds.blobstore.reference.BlobStoreConstants;
+import org.jclouds.jdbc.entity.BlobEntity;
+import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
+import org.jclouds.jdbc.util.JdbcInputStream;
+import org.jclouds.logging.Logger;
+import org.jclouds.util.Closeables2;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Maintenance tasks of the store, run on demand or in the background.
+ * <p>
+ * The garbage collector deletes the payloads no blob or multipart upload refers to, releasing their
+ * chunks, then the chunks no payload or part refers to. Unreferenced chunks are first marked in one
+ * transaction and deleted in the next one, so deduplication cannot share a chunk that is about to be
+ * deleted. Chunks stored, shared or touched within the grace period are spared, as chunks are stored
+ * before the payload referring to them; uploads touch their chunks while they last and check that
+ * none was collected before the blob is swapped in.
+ * <p>
+ * The scrubber hashes the content of blobs and compares it with their stored MD5. Both work in
+ * batches of short transactions and are rate limited so they can run alongside regular traffic.
+ */
+@Singleton
+public class MaintenanceService {
+
+   private static final int SCRUB_BUFFER_SIZE = 64 * 1024;
+
+   @Resource
+   @Named(BlobStoreConstants.BLOBSTORE_LOGGER)
+   protected Logger logger = Logger.NULL;
+
+   private final JdbcService jdbcService;
+   private final int batchSize;
+   private final long gracePeriod;
+   private final RateLimiter gcRateLimiter;
+   private final RateLimiter scrubRateLimiter;
+
+   @Inject
+   MaintenanceService(JdbcService jdbcService, @Named(PROPERTY_DELETE_BATCH_SIZE) int batchSize,
+         @Named(PROPERTY_GC_RATE) int gcRate, @Named(PROPERTY_GC_GRACE_PERIOD) long gracePeriod,
+         @Named(PROPERTY_SCRUB_RATE) int scrubRate) {
+      this.jdbcService = jdbcService;
+      this.batchSize = Math.max(batchSize, 1);
+      this.gracePeriod = Math.max(gracePeriod, 0);
+      this.gcRateLimiter = gcRate > 0 ? RateLimiter.create(gcRate) : null;
+      this.scrubRateLimiter = scrubRate > 0 ? RateLimiter.create(scrubRate) : null;
+   }
+
+   /**
+    * Deletes orphan payloads and unreferenced chunks. Only one collection runs at a time.
+    */
+   public synchronized GarbageCollectionReport collectGarbage() {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      int deletedPayloads = 0;
+      while (true) {
+         acquire(gcRateLimiter, batchSize);
+         int deleted = jdbcService.deleteOrphanPayloadBatch(batchSize);
+         deletedPayloads += deleted;
+         if (deleted < batchSize) {
+            break;
+         }
+         logger.debug(">> deleted %d orphan payloads", deletedPayloads);
+      }
+
+      long unreferencedChunks = 0;
+      long deletedChunks = 0;
+      long after = Long.MIN_VALUE;
+      Date cutoff = new Date(System.currentTimeMillis() - SECONDS.toMillis(gracePeriod));
+      while (true) {
+         List<Long> ids = jdbcService.findUnreferencedChunkIds(after, cutoff, batchSize);
+         if (ids.isEmpty()) {
+            break;
+         }
+         acquire(gcRateLimiter, ids.size());
+         jdbcService.markUnreferencedChunks(ids, cutoff);
+         deletedChunks += jdbcService.deleteUnreferencedChunks(ids);
+         unreferencedChunks += ids.size();
+         after = ids.get(ids.size() - 1);
+         logger.debug(">> deleted %d of %d unreferenced chunks", deletedChunks, unreferencedChunks);
+      }
+
+      GarbageCollectionReport report = new GarbageCollectionReport(deletedPayloads, unreferencedChunks,
+            deletedChunks, stopwatch.elapsed(MILLISECONDS));
+      logger.info("<< garbage collection %s", report);
+      return report;
+   }
+
+   /**
+    * Checks the content of the blobs of a container, or of all containers, against their stored MD5.
+    * Directories and blobs without a stored MD5, such as completed multipart uploads, are skipped.
+    *
+    * @param containerName the container to scrub, or null to scrub all of them
+    */
+   public ScrubReport scrub(String containerName) {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      List<String> containerNames = new ArrayList<String>();
+      if (containerName != null) {
+         containerNames.add(containerName);
+      } else {
+         for (ContainerEntity containerEntity : jdbcService.findAllContainers()) {
+            containerNames.add(containerEntity.getName());
+         }
+      }
+
+      byte[] buffer = new byte[SCRUB_BUFFER_SIZE];
+      long checkedBlobs = 0;
+      long skippedBlobs = 0;
+      long checkedBytes = 0;
+      List<String> corruptBlobs = new ArrayList<String>();
+      for (String name : containerNames) {
+         String marker = null;
+         List<String> keys;
+         do {
+            keys = jdbcService.findBlobKeys(name, null, marker, batchSize);
+            for (String key : keys) {
+               BlobEntity blobEntity = jdbcService.findBlobById(name, key);
+               if (blobEntity == null || blobEntity.isDirectory()
+                     || blobEntity.getPayload().getContentMD5() == null) {
+                  skippedBlobs++;
+                  continue;
+               }
+               Hasher hasher = Hashing.md5().newHasher();
+               try {
+                  checkedBytes += hash(blobEntity.getPayload(), hasher, buffer);
+                  if (!Arrays.equals(hasher.hash().asBytes(), blobEntity.getPayload().getContentMD5())) {
+                     corruptBlobs.add(name + "/" + key);
+                  }
+               } catch (IOException e) {
+                  corruptBlobs.add(name + "/" + key);
+               }
+               checkedBlobs++;
+            }
+            marker = keys.isEmpty() ? null : keys.get(keys.size() - 1);
+            logger.debug(">> scrubbed %d blobs of %s", checkedBlobs, name);
+         } while (keys.size() == batchSize);
+      }
+
+      ScrubReport report = new ScrubReport(checkedBlobs, skippedBlobs, checkedBytes, corruptBlobs,
+            stopwatch.elapsed(MILLISECONDS));
+      logger.info("<< scrub %s", report);
+      return report;
+   }
+
+   private long hash(PayloadEntity payload, Hasher hasher, byte[] buffer) throws IOException {
+      if (payload.getInlineData() != null) {
+         acquire(scrubRateLimiter, payload.getInlineData().length);
+         hasher.putBytes(payload.getInlineData());
+         return payload.getInlineData().length;
+      }
+      long size = 0;
+      InputStream in = new JdbcInputStream(jdbcService, jdbcService.findChunkIds(payload.getId()));
+      try {
+         int count;
+         while ((count = in.read(buffer)) != -1) {
+            acquire(scrubRateLimiter, count);
+            hasher.putBytes(buffer, 0, count);
+            size += count;
+         }
+      } finally {
+         Closeables2.closeQuietly(in);
+      }
+      return size;
+   }
+
+   private static void acquire(RateLimiter rateLimiter, int permits) {
+      if (rateLimiter != null && permits > 0) {
+         rateLimiter.acquire(permits);
+      }
+   }
+
+}
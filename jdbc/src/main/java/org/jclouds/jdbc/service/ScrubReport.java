@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.service;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Outcome of a scrub: the blobs whose content was hashed, the blobs skipped because they have no
+ * stored MD5, the blobs whose content does not match its MD5 or could not be read, and how long it took.
+ */
+public class ScrubReport {
+
+   private final long checkedBlobs;
+   private final long skippedBlobs;
+   private final long checkedBytes;
+   private final List<String> corruptBlobs;
+   private final long elapsedMillis;
+
+   public ScrubReport(long checkedBlobs, long skippedBlobs, long checkedBytes, List<String> corruptBlobs,
+         long elapsedMillis) {
+      this.checkedBlobs = checkedBlobs;
+      this.skippedBlobs = skippedBlobs;
+      this.checkedBytes = checkedBytes;
+      this.corruptBlobs = ImmutableList.copyOf(corruptBlobs);
+      this.elapsedMillis = elapsedMillis;
+   }
+
+   public long getCheckedBlobs() {
+      return checkedBlobs;
+   }
+
+   public long getSkippedBlobs() {
+      return skippedBlobs;
+   }
+
+   public long getCheckedBytes() {
+      return checkedBytes;
+   }
+
+   /**
+    * Names of the corrupt blobs, as container/key.
+    */
+   public List<String> getCorruptBlobs() {
+      return corruptBlobs;
+   }
+
+   public long getElapsedMillis() {
+      return elapsedMillis;
+   }
+
+   /**
+    * Number of bytes hashed per second.
+    */
+   public double getThroughput() {
+      return elapsedMillis == 0 ? checkedBytes : checkedBytes * 1000.0 / elapsedMillis;
+   }
+
+   @Override
+   public String toString() {
+      return String.format("checked %d blobs (%d bytes, %.0f bytes/s), skipped %d, found %d corrupt in %d ms",
+            checkedBlobs, checkedBytes, getThroughput(), skippedBlobs, corruptBlobs.size(), elapsedMillis);
+   }
+
+}
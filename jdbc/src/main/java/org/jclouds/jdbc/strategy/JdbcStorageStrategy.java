@@ -16,38 +16,69 @@
  */
 package org.jclouds.jdbc.strategy;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.persistence.PersistenceException;
 
+import org.jclouds.blobstore.ContainerNotFoundException;
+import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.blobstore.LocalStorageStrategy;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobAccess;
 import org.jclouds.blobstore.domain.BlobBuilder;
+import org.jclouds.blobstore.domain.BlobMetadata;
 import org.jclouds.blobstore.domain.ContainerAccess;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.domain.MutableBlobMetadata;
 import org.jclouds.blobstore.domain.MutableStorageMetadata;
+import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.MutableBlobMetadataImpl;
 import org.jclouds.blobstore.domain.internal.MutableStorageMetadataImpl;
+import org.jclouds.blobstore.domain.internal.PageSetImpl;
+import org.jclouds.blobstore.options.CopyOptions;
 import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.GetOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
 import org.jclouds.domain.Location;
 import org.jclouds.domain.LocationBuilder;
 import org.jclouds.domain.LocationScope;
 import org.jclouds.io.ContentMetadata;
+import org.jclouds.io.MutableContentMetadata;
+import org.jclouds.io.Payload;
 import org.jclouds.jdbc.conversion.BlobEntityToBlob;
+import org.jclouds.jdbc.entity.BlobDetails;
 import org.jclouds.jdbc.entity.BlobEntity;
+import org.jclouds.jdbc.entity.BlobSummary;
 import org.jclouds.jdbc.entity.ContainerEntity;
+import org.jclouds.jdbc.entity.MultipartPartEntity;
+import org.jclouds.jdbc.entity.MultipartUploadEntity;
 import org.jclouds.jdbc.predicates.validators.JdbcBlobKeyValidator;
 import org.jclouds.jdbc.predicates.validators.JdbcContainerNameValidator;
+import org.jclouds.jdbc.service.GarbageCollectionReport;
 import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.jdbc.service.MaintenanceService;
+import org.jclouds.jdbc.service.ScrubReport;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.hash.HashCode;
 
 /**
  * JdbcStorageStrategy implements a blob store that stores objects
@@ -56,23 +87,27 @@ import com.google.common.collect.ImmutableList;
  */
 public class JdbcStorageStrategy implements LocalStorageStrategy {
 
+   private static final int LIST_PAGE_SIZE = 1000;
+
    private final Provider<BlobBuilder> blobBuilders;
    private final JdbcService jdbcService;
    private final JdbcContainerNameValidator jdbcContainerNameValidator;
    private final JdbcBlobKeyValidator jdbcBlobKeyValidator;
    private final BlobEntityToBlob blobEntityToBlob;
+   private final MaintenanceService maintenanceService;
    private final Location mockLocation;
 
    @Inject
    JdbcStorageStrategy(Provider<BlobBuilder> blobBuilders,
          JdbcContainerNameValidator jdbcContainerNameValidator, JdbcBlobKeyValidator jdbcBlobKeyValidator,
-         JdbcService jdbcService, BlobEntityToBlob blobEntityToBlob)
+         JdbcService jdbcService, BlobEntityToBlob blobEntityToBlob, MaintenanceService maintenanceService)
          throws ClassNotFoundException, IllegalAccessException, InstantiationException, SQLException {
       this.jdbcService = jdbcService;
       this.blobBuilders = blobBuilders;
       this.jdbcContainerNameValidator = jdbcContainerNameValidator;
       this.jdbcBlobKeyValidator = jdbcBlobKeyValidator;
       this.blobEntityToBlob = blobEntityToBlob;
+      this.maintenanceService = maintenanceService;
       this.mockLocation = new LocationBuilder()
             .id("jdbc")
             .scope(LocationScope.PROVIDER)
@@ -164,6 +199,9 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
    public void deleteContainer(String container) {
       jdbcContainerNameValidator.validate(container);
       jdbcService.deleteBlobsByContainer(container);
+      for (MultipartUploadEntity upload : jdbcService.findMultipartUploads(container)) {
+         jdbcService.deleteMultipartUpload(upload.getId());
+      }
       jdbcService.deleteContainerByName(container);
    }
 
@@ -228,19 +266,95 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
    }
 
    /**
-    * Lists all the blob keys in a container
+    * Lists all the blob keys in a container. The keys are loaded lazily in pages while iterating.
     *
     * @param container the name of the container
     * @return the blob keys inside the container
     */
    @Override
-   public Iterable<String> getBlobKeysInsideContainer(String container) throws IOException {
-      List<BlobEntity> blobEntities = jdbcService.findBlobsByContainer(container);
-      ImmutableList.Builder<String> result = ImmutableList.builder();
-      for (BlobEntity blobEntity : blobEntities) {
-         result.add(blobEntity.getKey());
+   public Iterable<String> getBlobKeysInsideContainer(final String container) throws IOException {
+      return new Iterable<String>() {
+         @Override
+         public Iterator<String> iterator() {
+            return new AbstractIterator<String>() {
+               private Iterator<String> page = Iterators.emptyIterator();
+               private String marker;
+               private boolean lastPage;
+
+               @Override
+               protected String computeNext() {
+                  while (!page.hasNext()) {
+                     if (lastPage) {
+                        return endOfData();
+                     }
+                     List<String> keys = jdbcService.findBlobKeys(container, null, marker, LIST_PAGE_SIZE);
+                     lastPage = keys.size() < LIST_PAGE_SIZE;
+                     if (!keys.isEmpty()) {
+                        marker = keys.get(keys.size() - 1);
+                     }
+                     page = keys.iterator();
+                  }
+                  return page.next();
+               }
+            };
+         }
+      };
+   }
+
+   /**
+    * Lists the blobs in a container. The prefix, delimiter, marker and maximum number of results are
+    * applied by the database: one query lists the blobs not containing the delimiter after the prefix,
+    * and another the common prefixes of the others, grouped so the keys under them are not loaded.
+    *
+    * @param container the name of the container
+    * @param options options to filter and page the listing, at least one result must be requested
+    * @return a page with the blobs and the common prefixes in key order
+    */
+   public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
+      // An empty page has no key to resume after, so its marker could not tell if more keys follow
+      checkArgument(options.getMaxResults() == null || options.getMaxResults() > 0,
+            "maxResults must be positive: %s", options.getMaxResults());
+      String prefix = options.getPrefix();
+      if (options.getDir() != null && !options.getDir().isEmpty()) {
+         prefix = options.getDir().endsWith(getSeparator()) ? options.getDir() : options.getDir() + getSeparator();
       }
-      return result.build();
+      String delimiter = options.isRecursive() ? null
+            : (options.getDelimiter() != null ? options.getDelimiter() : getSeparator());
+      int maxResults = options.getMaxResults() != null ? options.getMaxResults() : LIST_PAGE_SIZE;
+      int prefixLength = prefix == null ? 0 : prefix.length();
+      // One more result than requested tells if the page is truncated
+      int limit = maxResults == Integer.MAX_VALUE ? maxResults : maxResults + 1;
+
+      Iterator<BlobSummary> blobs = jdbcService.findBlobSummaries(container, prefix, delimiter,
+            options.getMarker(), limit).iterator();
+      Iterator<String> commonPrefixes = Iterators.emptyIterator();
+      if (delimiter != null) {
+         List<String> commonPrefixKeys = jdbcService.findCommonPrefixKeys(container, prefix, delimiter,
+               options.getMarker(), limit);
+         ImmutableList.Builder<String> builder = ImmutableList.builder();
+         for (String key : commonPrefixKeys) {
+            builder.add(key.substring(0, key.indexOf(delimiter, prefixLength) + delimiter.length()));
+         }
+         commonPrefixes = builder.build().iterator();
+      }
+
+      PeekingIterator<BlobSummary> nextBlobs = Iterators.peekingIterator(blobs);
+      PeekingIterator<String> nextCommonPrefixes = Iterators.peekingIterator(commonPrefixes);
+      ImmutableList.Builder<StorageMetadata> contents = ImmutableList.builder();
+      String lastName = null;
+      for (int count = 0; count < maxResults && (nextBlobs.hasNext() || nextCommonPrefixes.hasNext()); count++) {
+         if (!nextCommonPrefixes.hasNext()
+               || nextBlobs.hasNext() && nextBlobs.peek().getKey().compareTo(nextCommonPrefixes.peek()) < 0) {
+            BlobSummary summary = nextBlobs.next();
+            contents.add(toStorageMetadata(container, summary));
+            lastName = summary.getKey();
+         } else {
+            lastName = nextCommonPrefixes.next();
+            contents.add(toStorageMetadata(lastName));
+         }
+      }
+      boolean truncated = nextBlobs.hasNext() || nextCommonPrefixes.hasNext();
+      return new PageSetImpl<StorageMetadata>(contents.build(), truncated ? lastName : null);
    }
 
    /**
@@ -255,6 +369,50 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
       return blobEntityToBlob.apply(jdbcService.findBlobById(container, key));
    }
 
+   /**
+    * Gets the metadata of a blob. Only the metadata columns are read, the payload of the blob is not
+    * loaded.
+    *
+    * @param container the name of the container containing the blob
+    * @param key the key of the blob
+    * @return the metadata of the blob or null if the blob does not exist
+    */
+   public BlobMetadata getBlobMetadata(String container, String key) {
+      List<BlobDetails> details = jdbcService.findBlobDetails(container, ImmutableList.of(key));
+      return details.isEmpty() ? null : toBlobMetadata(container, details.get(0));
+   }
+
+   /**
+    * Gets the metadata of several blobs, with one query per {@value #LIST_PAGE_SIZE} keys. Only the
+    * metadata columns are read, the payloads of the blobs are not loaded.
+    *
+    * @param container the name of the container containing the blobs
+    * @param keys the keys of the blobs
+    * @return the metadata of the blobs by key, missing blobs are left out
+    */
+   public Map<String, BlobMetadata> getBlobMetadata(String container, Collection<String> keys) {
+      ImmutableMap.Builder<String, BlobMetadata> result = ImmutableMap.builder();
+      for (List<String> batch : Iterables.partition(keys, LIST_PAGE_SIZE)) {
+         for (BlobDetails details : jdbcService.findBlobDetails(container, batch)) {
+            result.put(details.getKey(), toBlobMetadata(container, details));
+         }
+      }
+      return result.build();
+   }
+
+   /**
+    * Gets the requested byte ranges of a blob. Only the chunks covering the ranges are read from the
+    * database.
+    *
+    * @param container the name of the container containing the blob
+    * @param key the key of the blob to get
+    * @param options options with the byte ranges to get
+    * @return the blob in the container or null if the blob does not exist
+    */
+   public Blob getBlob(String container, String key, GetOptions options) {
+      return blobEntityToBlob.apply(jdbcService.findBlobById(container, key), options);
+   }
+
    /**
     * Store a blob in a container
     *
@@ -270,6 +428,136 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
       return jdbcService.createOrModifyBlob(container, blob).getEtag();
    }
 
+   /**
+    * Copies a blob without copying its data, the copy shares the chunks of the source blob.
+    *
+    * @param fromContainer the name of the container containing the source blob
+    * @param fromName the key of the source blob
+    * @param toContainer the name of the destination container
+    * @param toName the key of the copy
+    * @param options options with the content and user metadata replacing the ones of the source blob
+    * @return the copy's etag
+    */
+   public String copyBlob(String fromContainer, String fromName, String toContainer, String toName,
+         CopyOptions options) {
+      jdbcContainerNameValidator.validate(toContainer);
+      jdbcBlobKeyValidator.validate(toName);
+      if (!containerExists(toContainer)) {
+         throw new ContainerNotFoundException(toContainer, "");
+      }
+      BlobEntity blobEntity = jdbcService.copyBlob(fromContainer, fromName, toContainer, toName,
+            options.contentMetadata(), options.userMetadata());
+      if (blobEntity == null) {
+         throw new KeyNotFoundException(fromContainer, fromName, "while copying");
+      }
+      return blobEntity.getEtag();
+   }
+
+   /**
+    * Starts a multipart upload. The content metadata and user metadata of the blob are kept until the
+    * upload is completed.
+    *
+    * @param container the name of the container
+    * @param blobMetadata the metadata of the blob to upload
+    * @param options options with the access of the blob
+    * @return the multipart upload
+    */
+   public MultipartUpload initiateMultipartUpload(String container, BlobMetadata blobMetadata, PutOptions options) {
+      jdbcContainerNameValidator.validate(container);
+      jdbcBlobKeyValidator.validate(blobMetadata.getName());
+      if (!containerExists(container)) {
+         throw new ContainerNotFoundException(container, "");
+      }
+      MultipartUploadEntity upload = jdbcService.createMultipartUpload(container, blobMetadata,
+            options.getBlobAccess());
+      return MultipartUpload.create(container, blobMetadata.getName(), upload.getId(), blobMetadata, options);
+   }
+
+   /**
+    * Stores a part of a multipart upload. Each part is stored in its own transaction, so parts can be
+    * uploaded in parallel.
+    *
+    * @param mpu the multipart upload
+    * @param partNumber the number of the part
+    * @param payload the content of the part
+    * @return the stored part
+    */
+   public MultipartPart uploadMultipartPart(MultipartUpload mpu, int partNumber, Payload payload) throws IOException {
+      return toMultipartPart(jdbcService.createOrModifyMultipartPart(mpu.id(), partNumber, payload));
+   }
+
+   /**
+    * Completes a multipart upload, creating the blob from the given parts without copying their data.
+    *
+    * @param mpu the multipart upload
+    * @param parts the parts making up the blob, in order
+    * @return the blob's etag
+    */
+   public String completeMultipartUpload(MultipartUpload mpu, List<MultipartPart> parts) {
+      ImmutableList.Builder<Integer> partNumbers = ImmutableList.builder();
+      for (MultipartPart part : parts) {
+         partNumbers.add(part.partNumber());
+      }
+      return jdbcService.completeMultipartUpload(mpu.id(), partNumbers.build()).getEtag();
+   }
+
+   /**
+    * Aborts a multipart upload, deleting the parts uploaded so far.
+    *
+    * @param mpu the multipart upload
+    */
+   public void abortMultipartUpload(MultipartUpload mpu) {
+      jdbcService.deleteMultipartUpload(mpu.id());
+   }
+
+   /**
+    * Lists the parts uploaded so far to a multipart upload.
+    *
+    * @param mpu the multipart upload
+    * @return the parts ordered by part number
+    */
+   public List<MultipartPart> listMultipartUpload(MultipartUpload mpu) {
+      ImmutableList.Builder<MultipartPart> result = ImmutableList.builder();
+      for (MultipartPartEntity part : jdbcService.findMultipartParts(mpu.id())) {
+         result.add(toMultipartPart(part));
+      }
+      return result.build();
+   }
+
+   /**
+    * Lists the multipart uploads in progress in a container.
+    *
+    * @param container the name of the container
+    * @return the multipart uploads ordered by key
+    */
+   public List<MultipartUpload> listMultipartUploads(String container) {
+      ImmutableList.Builder<MultipartUpload> result = ImmutableList.builder();
+      for (MultipartUploadEntity upload : jdbcService.findMultipartUploads(container)) {
+         result.add(MultipartUpload.create(container, upload.getKey(), upload.getId(), null, PutOptions.NONE));
+      }
+      return result.build();
+   }
+
+   /**
+    * Deletes the payloads and chunks no blob refers to anymore. Collections also run in the background
+    * when a garbage collection interval is configured.
+    *
+    * @return the number of payloads and chunks deleted and the throughput of the collection
+    */
+   public GarbageCollectionReport collectGarbage() {
+      return maintenanceService.collectGarbage();
+   }
+
+   /**
+    * Checks the content of the blobs against their stored MD5.
+    *
+    * @param container the name of the container to scrub, or null to scrub all containers
+    * @return the corrupt blobs and the throughput of the scrub
+    */
+   public ScrubReport scrub(String container) {
+      return maintenanceService.scrub(container);
+   }
+
    /**
     * Removes a blob from a container
     *
@@ -290,7 +578,7 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     */
    @Override
    public BlobAccess getBlobAccess(String container, String key) {
-      return jdbcService.findBlobById(container, key).getBlobAccess();
+      return jdbcService.findBlobAccess(container, key);
    }
 
    /**
@@ -333,8 +621,11 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     * @return the number of blobs in the container
     */
    public long countBlobs(String container, ListContainerOptions options) {
-      return options.getDir() == null ? jdbcService.findBlobsByContainer(container).size()
-             : jdbcService.findBlobsByDirectory(container, options.getDir(), options.isRecursive()).size();
+      if (options.getDir() == null) {
+         return jdbcService.countBlobs(container, null, null);
+      }
+      String prefix = options.getDir().endsWith(getSeparator()) ? options.getDir() : options.getDir() + getSeparator();
+      return jdbcService.countBlobs(container, prefix, options.isRecursive() ? null : getSeparator());
    }
 
    /**
@@ -345,9 +636,7 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
     * @return true if the directory exists, false otherwise
     */
    public boolean directoryExists(String container, String directory) {
-      Blob blob = getBlob(container, directory);
-      return blob != null && "application/directory".equals(
-            blob.getMetadata().getContentMetadata().getContentType());
+      return jdbcService.directoryExists(container, directory);
    }
 
    /**
@@ -393,4 +682,53 @@ public class JdbcStorageStrategy implements LocalStorageStrategy {
       }
    }
 
+   private static MultipartPart toMultipartPart(MultipartPartEntity part) {
+      return MultipartPart.create(part.getPartNumber(), part.getSize(), part.getEtag(), part.getLastModified());
+   }
+
+   private StorageMetadata toStorageMetadata(String commonPrefix) {
+      MutableStorageMetadata metadata = new MutableStorageMetadataImpl();
+      metadata.setName(commonPrefix);
+      metadata.setType(StorageType.RELATIVE_PATH);
+      metadata.setLocation(mockLocation);
+      return metadata;
+   }
+
+   private StorageMetadata toStorageMetadata(String container, BlobSummary summary) {
+      MutableBlobMetadata metadata = new MutableBlobMetadataImpl();
+      metadata.setName(summary.getKey());
+      metadata.setContainer(container);
+      metadata.setType(summary.isDirectory() ? StorageType.FOLDER : StorageType.BLOB);
+      metadata.setLocation(mockLocation);
+      metadata.setSize(summary.getSize());
+      metadata.setETag(summary.getEtag());
+      metadata.setCreationDate(summary.getCreationDate());
+      metadata.setLastModified(summary.getLastModified());
+      return metadata;
+   }
+
+   private BlobMetadata toBlobMetadata(String container, BlobDetails details) {
+      MutableBlobMetadata metadata = new MutableBlobMetadataImpl();
+      metadata.setName(details.getKey());
+      metadata.setContainer(container);
+      metadata.setType(details.isDirectory() ? StorageType.FOLDER : StorageType.BLOB);
+      metadata.setLocation(mockLocation);
+      metadata.setSize(details.getSize());
+      metadata.setETag(details.getEtag());
+      metadata.setCreationDate(details.getCreationDate());
+      metadata.setLastModified(details.getLastModified());
+      metadata.setUserMetadata(details.getUserMetadata());
+      MutableContentMetadata contentMetadata = metadata.getContentMetadata();
+      contentMetadata.setCacheControl(details.getCacheControl());
+      contentMetadata.setContentType(details.getContentType());
+      contentMetadata.setContentDisposition(details.getContentDisposition());
+      contentMetadata.setContentEncoding(details.getContentEncoding());
+      contentMetadata.setContentLanguage(details.getContentLanguage());
+      contentMetadata.setContentLength(details.getContentLength());
+      contentMetadata.setContentMD5(details.getContentMD5() == null ? null
+            : HashCode.fromBytes(details.getContentMD5()));
+      contentMetadata.setExpires(details.getExpires());
+      return metadata;
+   }
+
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_BUFFER_POOL_SIZE;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Named;
+
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Keeps chunk sized buffers around so ingesting large blobs does not allocate a new buffer for every
+ * chunk. Buffers are pooled by size, and the pool is bounded by the total size of the buffers it
+ * holds, so large chunks pin no more memory than small ones.
+ */
+@Singleton
+public class ChunkBufferPool {
+
+   private final ConcurrentMap<Integer, Queue<byte[]>> buffers = Maps.newConcurrentMap();
+   private final AtomicLong pooledBytes = new AtomicLong();
+   private final long capacity;
+
+   /**
+    * @param capacity the maximum number of bytes held by the pooled buffers
+    */
+   @Inject
+   public ChunkBufferPool(@Named(PROPERTY_CHUNK_BUFFER_POOL_SIZE) long capacity) {
+      checkArgument(capacity >= 0, "capacity must be positive or zero");
+      this.capacity = capacity;
+   }
+
+   /**
+    * Gets a buffer of the given size. The content of the buffer is undefined.
+    */
+   public byte[] acquire(int size) {
+      Queue<byte[]> queue = buffers.get(size);
+      byte[] buffer = queue == null ? null : queue.poll();
+      if (buffer == null) {
+         return new byte[size];
+      }
+      pooledBytes.addAndGet(-buffer.length);
+      return buffer;
+   }
+
+   /**
+    * Returns a buffer to the pool. The buffer is dropped if it does not fit in the capacity left.
+    */
+   public void release(byte[] buffer) {
+      if (pooledBytes.addAndGet(buffer.length) > capacity) {
+         pooledBytes.addAndGet(-buffer.length);
+         return;
+      }
+      Queue<byte[]> queue = buffers.get(buffer.length);
+      if (queue == null) {
+         Queue<byte[]> newQueue = new ConcurrentLinkedQueue<byte[]>();
+         queue = buffers.putIfAbsent(buffer.length, newQueue);
+         if (queue == null) {
+            queue = newQueue;
+         }
+      }
+      queue.offer(buffer);
+   }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import java.io.IOException;
+
+/**
+ * Encodes the data of chunks before they are stored and decodes it when they are read. The name of
+ * the codec is stored with each encoded chunk.
+ */
+public interface ChunkCodec {
+
+   /**
+    * Gets the name recorded with the chunks encoded by this codec.
+    */
+   String getName();
+
+   /**
+    * Encodes chunk data.
+    *
+    * @return the encoded data, or null if encoding does not save enough space and the chunk should be
+    *         stored raw
+    */
+   byte[] encode(byte[] data, int offset, int length);
+
+   /**
+    * Decodes chunk data.
+    *
+    * @param data the encoded data
+    * @param size the size of the decoded data
+    * @return the decoded data
+    */
+   byte[] decode(byte[] data, int size) throws IOException;
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_CODEC;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_COMPRESSIBLE_CONTENT_TYPES;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Named;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Decides which codec encodes the chunks of a blob. The codec named by jclouds.jdbc.chunk-codec is
+ * used for the content types starting with one of jclouds.jdbc.compressible-content-types, or for
+ * every blob if no content type is listed.
+ * <p>
+ * Bind a subclass to apply a different policy per container or to register other codecs.
+ */
+@Singleton
+public class ChunkCodecPolicy {
+
+   public static final String NONE = "none";
+
+   private final Map<String, ChunkCodec> codecs;
+   private final ChunkCodec codec;
+   private final List<String> contentTypes;
+
+   @Inject
+   public ChunkCodecPolicy(@Named(PROPERTY_CHUNK_CODEC) String codecName,
+         @Named(PROPERTY_COMPRESSIBLE_CONTENT_TYPES) String contentTypes) {
+      this(ImmutableMap.<String, ChunkCodec>of(DeflateChunkCodec.NAME, new DeflateChunkCodec()), codecName,
+            contentTypes);
+   }
+
+   protected ChunkCodecPolicy(Map<String, ChunkCodec> codecs, String codecName, String contentTypes) {
+      checkArgument(NONE.equals(codecName) || codecs.containsKey(codecName), "unknown chunk codec %s", codecName);
+      this.codecs = ImmutableMap.copyOf(codecs);
+      this.codec = codecs.get(codecName);
+      this.contentTypes = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(contentTypes);
+   }
+
+   /**
+    * Gets the codec encoding the chunks of a blob.
+    *
+    * @param container the name of the container the blob is stored in
+    * @param contentType the content type of the blob, or null if it is unknown
+    * @return the codec, or null if the chunks are stored raw
+    */
+   public ChunkCodec codec(String container, String contentType) {
+      if (codec == null || contentTypes.isEmpty()) {
+         return codec;
+      }
+      for (String compressible : contentTypes) {
+         if (contentType != null && contentType.startsWith(compressible)) {
+            return codec;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Gets the codec recorded with a stored chunk.
+    *
+    * @throws IllegalArgumentException if there is no codec with this name
+    */
+   public ChunkCodec forName(String name) {
+      ChunkCodec result = codecs.get(name);
+      checkArgument(result != null, "unknown chunk codec %s", name);
+      return result;
+   }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jclouds.jdbc.reference.JdbcConstants.MAX_CHUNK_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_CHUNK_SIZE;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_INLINE_THRESHOLD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_LARGE_BLOB_THRESHOLD;
+import static org.jclouds.jdbc.reference.JdbcConstants.PROPERTY_LARGE_CHUNK_SIZE;
+
+import javax.inject.Named;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Decides how the content of a blob is laid out in the database. Small blobs are stored inline
+ * with their payload, blobs whose length is known to exceed the large blob threshold use large
+ * chunks and everything else uses the default chunk size.
+ * <p>
+ * Bind a subclass to apply a different policy per container.
+ */
+@Singleton
+public class ChunkingPolicy {
+
+   private final int chunkSize;
+   private final int largeChunkSize;
+   private final long largeBlobThreshold;
+   private final int inlineThreshold;
+
+   @Inject
+   public ChunkingPolicy(@Named(PROPERTY_CHUNK_SIZE) int chunkSize, @Named(PROPERTY_LARGE_CHUNK_SIZE) int largeChunkSize,
+         @Named(PROPERTY_LARGE_BLOB_THRESHOLD) long largeBlobThreshold,
+         @Named(PROPERTY_INLINE_THRESHOLD) int inlineThreshold) {
+      checkArgument(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE, "chunk size must be between 1 and %s",
+            MAX_CHUNK_SIZE);
+      checkArgument(largeChunkSize >= chunkSize && largeChunkSize <= MAX_CHUNK_SIZE,
+            "large chunk size must be between %s and %s", chunkSize, MAX_CHUNK_SIZE);
+      checkArgument(inlineThreshold >= 0 && inlineThreshold < chunkSize,
+            "inline threshold must be positive or zero and smaller than the chunk size");
+      this.chunkSize = chunkSize;
+      this.largeChunkSize = largeChunkSize;
+      this.largeBlobThreshold = largeBlobThreshold;
+      this.inlineThreshold = inlineThreshold;
+   }
+
+   /**
+    * Gets the size of the chunks used to store a blob.
+    *
+    * @param container the name of the container the blob is stored in
+    * @param contentLength the length of the blob, or null if it is unknown
+    * @return the chunk size in bytes
+    */
+   public int chunkSize(String container, Long contentLength) {
+      return contentLength != null && contentLength > largeBlobThreshold ? largeChunkSize : chunkSize;
+   }
+
+   /**
+    * Gets the maximum size of a blob that is stored inline with its payload.
+    *
+    * @param container the name of the container the blob is stored in
+    * @return the inline threshold in bytes
+    */
+   public int inlineThreshold(String container) {
+      return inlineThreshold;
+   }
+
+}
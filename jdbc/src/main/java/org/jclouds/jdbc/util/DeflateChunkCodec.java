@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses chunks with Deflate. Chunks which do not shrink by at least an eighth are left raw.
+ */
+public class DeflateChunkCodec implements ChunkCodec {
+
+   public static final String NAME = "deflate";
+
+   private final int level;
+
+   public DeflateChunkCodec() {
+      this(Deflater.BEST_SPEED);
+   }
+
+   public DeflateChunkCodec(int level) {
+      this.level = level;
+   }
+
+   @Override
+   public String getName() {
+      return NAME;
+   }
+
+   @Override
+   public byte[] encode(byte[] data, int offset, int length) {
+      // Output not fitting in this buffer is not worth decoding
+      byte[] buffer = new byte[length - length / 8];
+      Deflater deflater = new Deflater(level);
+      try {
+         deflater.setInput(data, offset, length);
+         deflater.finish();
+         int encoded = 0;
+         while (!deflater.finished() && encoded < buffer.length) {
+            encoded = encoded + deflater.deflate(buffer, encoded, buffer.length - encoded);
+         }
+         return deflater.finished() ? Arrays.copyOf(buffer, encoded) : null;
+      } finally {
+         deflater.end();
+      }
+   }
+
+   @Override
+   public byte[] decode(byte[] data, int size) throws IOException {
+      byte[] result = new byte[size];
+      Inflater inflater = new Inflater();
+      try {
+         inflater.setInput(data);
+         int decoded = 0;
+         while (decoded < size && !inflater.finished()) {
+            int count = inflater.inflate(result, decoded, size - decoded);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+               break;
+            }
+            decoded = decoded + count;
+         }
+         if (decoded != size) {
+            throw new IOException("Chunk data is truncated, decoded " + decoded + " of " + size + " bytes");
+         }
+         return result;
+      } catch (DataFormatException e) {
+         throw new IOException("Chunk data is corrupt", e);
+      } finally {
+         inflater.end();
+      }
+   }
+
+}
@@ -16,62 +16,269 @@
  */
 package org.jclouds.jdbc.util;
 
-import org.jclouds.jdbc.entity.ChunkEntity;
-import org.jclouds.jdbc.service.JdbcService;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
-import static com.google.common.base.Preconditions.checkNotNull;
+import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.service.JdbcService;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Streams the content of a blob by reading its chunks in order.
+ * <p>
+ * Reads are served in bulk from the current chunk. When an executor is given, up to
+ * <code>prefetchChunks</code> chunks following the current one are fetched in the background
+ * so the database I/O overlaps with the consumer. Each fetch runs in its own transaction, so
+ * with an executor of several threads the chunks are read in parallel over several connections
+ * and handed out in order. When chunk sizes are given, fetching ahead also stops once the
+ * pending chunks hold <code>maxPrefetchBytes</code>. This class is not thread safe.
+ */
 public class JdbcInputStream extends InputStream {
 
-   private JdbcService jdbcService;
+   private final JdbcService jdbcService;
+   private final ListeningExecutorService executor;
+   private final int prefetchChunks;
+   private final long maxPrefetchBytes;
+   private final Map<Long, Integer> chunkSizes;
 
    private final List<Long> chunks;
-   private ChunkEntity currentChunk;
+   private final Deque<ListenableFuture<byte[]>> pendingChunks;
+   private long pendingBytes;
+   private int nextChunk;
+   private byte[] currentChunk;
    private int bytesRead;
 
    public JdbcInputStream(JdbcService jdbcService, List<Long> chunks) {
+      this(jdbcService, chunks, null, 0);
+   }
+
+   public JdbcInputStream(JdbcService jdbcService, List<Long> chunks, ListeningExecutorService executor,
+         int prefetchChunks) {
+      this(jdbcService, chunks, executor, prefetchChunks, 0);
+   }
+
+   /**
+    * Creates a stream starting at the given offset of the first chunk, used to serve byte ranges.
+    */
+   public JdbcInputStream(JdbcService jdbcService, List<Long> chunks, ListeningExecutorService executor,
+         int prefetchChunks, int firstChunkOffset) {
+      this(jdbcService, chunks, executor, prefetchChunks, 0, null, firstChunkOffset);
+   }
+
+   /**
+    * Creates a stream which also bounds the bytes fetched ahead, used to read large blobs in parallel.
+    * At least one chunk is always fetched, whatever its size.
+    *
+    * @param maxPrefetchBytes maximum size of the pending chunks, 0 for no limit
+    * @param chunkSizes the decoded sizes of the chunks, required when the size is limited
+    */
+   public JdbcInputStream(JdbcService jdbcService, List<Long> chunks, ListeningExecutorService executor,
+         int prefetchChunks, long maxPrefetchBytes, Map<Long, Integer> chunkSizes, int firstChunkOffset) {
+      checkArgument(prefetchChunks >= 0, "prefetchChunks must be positive or zero");
+      checkArgument(maxPrefetchBytes >= 0, "maxPrefetchBytes must be positive or zero");
+      checkArgument(maxPrefetchBytes == 0 || chunkSizes != null, "chunkSizes are required to limit maxPrefetchBytes");
+      checkArgument(firstChunkOffset >= 0, "firstChunkOffset must be positive or zero");
       this.jdbcService = checkNotNull(jdbcService, "jdbcService");
-      // Need to remove duplicates due to https://hibernate.atlassian.net/browse/HHH-6783
-      this.chunks = new ArrayList<Long>(new LinkedHashSet<Long>(checkNotNull(chunks, "chunks")));
+      // Chunks may repeat when deduplication is enabled, the payload keeps them ordered with an order column
+      this.chunks = ImmutableList.copyOf(checkNotNull(chunks, "chunks"));
+      this.executor = executor;
+      this.prefetchChunks = executor == null ? 0 : prefetchChunks;
+      this.maxPrefetchBytes = maxPrefetchBytes;
+      this.chunkSizes = chunkSizes;
+      this.pendingChunks = new ArrayDeque<ListenableFuture<byte[]>>(this.prefetchChunks + 1);
       try {
          readNextChunk();
       } catch (IOException e) {
          throw new IllegalArgumentException(e);
       }
+      if (currentChunk != null) {
+         this.bytesRead = Math.min(firstChunkOffset, currentChunk.length);
+      }
    }
 
    @Override
-   public synchronized int read() throws IOException {
+   public int read() throws IOException {
       if (hasFinished()) {
          return -1;
       }
-      int b = currentChunk.getData()[bytesRead] & 0xff;
+      int b = currentChunk[bytesRead] & 0xff;
       bytesRead = bytesRead + 1;
-      if (bytesRead >= currentChunk.getSize()) {
+      if (bytesRead >= currentChunk.length) {
          readNextChunk();
       }
       return b;
    }
 
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      checkNotNull(b, "b");
+      checkPositionIndexes(off, off + len, b.length);
+      if (len == 0) {
+         return 0;
+      }
+      if (hasFinished()) {
+         return -1;
+      }
+      int total = 0;
+      while (total < len && !hasFinished()) {
+         int count = Math.min(len - total, currentChunk.length - bytesRead);
+         System.arraycopy(currentChunk, bytesRead, b, off + total, count);
+         bytesRead = bytesRead + count;
+         total = total + count;
+         if (bytesRead >= currentChunk.length) {
+            readNextChunk();
+         }
+      }
+      return total;
+   }
+
+   /**
+    * Skips bytes without fetching the chunks that are skipped entirely. Only the sizes of the
+    * remaining chunks are read from the database.
+    */
+   @Override
+   public long skip(long n) throws IOException {
+      if (n <= 0 || hasFinished()) {
+         return 0;
+      }
+      long skipped = currentChunk.length - bytesRead;
+      if (n < skipped) {
+         bytesRead = bytesRead + (int) n;
+         return n;
+      }
+      int index = nextChunk - pendingChunks.size();
+      cancelPendingChunks();
+      Map<Long, Integer> sizes = jdbcService.findChunkSizes(chunks.subList(index, chunks.size()));
+      while (index < chunks.size()) {
+         Integer size = sizes.get(chunks.get(index));
+         if (size == null) {
+            throw new IOException("Could not find chunk.");
+         }
+         if (skipped + size > n) {
+            break;
+         }
+         skipped = skipped + size;
+         index = index + 1;
+      }
+      bytesRead = currentChunk.length;
+      nextChunk = index;
+      if (index < chunks.size()) {
+         readNextChunk();
+         bytesRead = (int) (n - skipped);
+         return n;
+      }
+      return skipped;
+   }
+
+   @Override
+   public int available() {
+      return currentChunk == null ? 0 : Math.max(currentChunk.length - bytesRead, 0);
+   }
+
+   @Override
+   public void close() {
+      cancelPendingChunks();
+      nextChunk = chunks.size();
+      currentChunk = null;
+   }
+
+   private void cancelPendingChunks() {
+      for (ListenableFuture<byte[]> pending : pendingChunks) {
+         pending.cancel(false);
+      }
+      pendingChunks.clear();
+      pendingBytes = 0;
+   }
+
    private boolean hasFinished() {
-      return currentChunk == null || (chunks.size() == 0 && bytesRead >= currentChunk.getSize());
+      return currentChunk == null
+            || (pendingChunks.isEmpty() && nextChunk >= chunks.size() && bytesRead >= currentChunk.length);
    }
 
    private void readNextChunk() throws IOException {
-      if (chunks.size() > 0) {
-         this.currentChunk = jdbcService.findChunkById(chunks.get(0));
-         if (currentChunk == null) {
-            throw new IOException("Could not find chunk.");
+      while (nextChunk < chunks.size() && pendingChunks.size() <= prefetchChunks) {
+         long size = chunkSize(nextChunk);
+         if (!pendingChunks.isEmpty() && maxPrefetchBytes > 0 && pendingBytes + size > maxPrefetchBytes) {
+            break;
          }
-         chunks.remove(0);
+         pendingChunks.add(fetchChunk(chunks.get(nextChunk)));
+         pendingBytes = pendingBytes + size;
+         nextChunk = nextChunk + 1;
+      }
+      if (!pendingChunks.isEmpty()) {
+         pendingBytes = pendingBytes - chunkSize(nextChunk - pendingChunks.size());
+         this.currentChunk = getChunk(pendingChunks.remove());
          this.bytesRead = 0;
       }
    }
 
+   private long chunkSize(int index) throws IOException {
+      if (maxPrefetchBytes == 0) {
+         return 0;
+      }
+      Integer size = chunkSizes.get(chunks.get(index));
+      if (size == null) {
+         throw new IOException("Could not find chunk.");
+      }
+      return size;
+   }
+
+   private ListenableFuture<byte[]> fetchChunk(final Long id) {
+      if (executor == null || prefetchChunks == 0) {
+         try {
+            return Futures.immediateFuture(readChunk(jdbcService, id));
+         } catch (IOException e) {
+            return Futures.immediateFailedFuture(e);
+         }
+      }
+      return executor.submit(new Callable<byte[]>() {
+         @Override
+         public byte[] call() throws IOException {
+            return readChunk(jdbcService, id);
+         }
+      });
+   }
+
+   /**
+    * Reads the data of a chunk, decoding it if it was stored with a codec.
+    */
+   static byte[] readChunk(JdbcService jdbcService, Long id) throws IOException {
+      ChunkEntity chunk = jdbcService.findChunkById(id);
+      if (chunk == null) {
+         throw new IOException("Could not find chunk.");
+      }
+      if (chunk.getCodec() == null) {
+         return chunk.getData();
+      }
+      return jdbcService.getChunkCodec(chunk.getCodec()).decode(chunk.getData(), chunk.getSize());
+   }
+
+   private static byte[] getChunk(ListenableFuture<byte[]> future) throws IOException {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while reading chunk");
+      } catch (ExecutionException e) {
+         Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+         throw new IOException("Could not read chunk", e.getCause());
+      }
+   }
+
 }
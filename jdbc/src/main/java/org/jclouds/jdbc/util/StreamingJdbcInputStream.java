@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.jdbc.service.JdbcService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Streams the content of a blob by reading its chunks in windows of a fixed size, so the memory used by
+ * a reader does not depend on the chunk size.
+ * <p>
+ * Each chunk is read sequentially through a JDBC blob opened once, in a transaction of its own which
+ * lasts until the chunk has been read or the stream is closed, so the stream must be closed. Chunks
+ * stored with a codec cannot be decoded partially and are read whole. This class is not thread safe.
+ */
+public class StreamingJdbcInputStream extends InputStream {
+
+   private final JdbcService jdbcService;
+   private final List<Long> chunks;
+   private final byte[] window;
+
+   private Map<Long, Integer> chunkSizes;
+   private int currentChunk;
+   private long chunkOffset;
+   private InputStream chunkData;
+   private byte[] buffer;
+   private int bufferPosition;
+   private int bufferLength;
+
+   public StreamingJdbcInputStream(JdbcService jdbcService, List<Long> chunks, int bufferSize) {
+      this(jdbcService, chunks, bufferSize, 0);
+   }
+
+   /**
+    * @param firstChunkOffset number of bytes skipped at the start of the first chunk
+    */
+   public StreamingJdbcInputStream(JdbcService jdbcService, List<Long> chunks, int bufferSize,
+         int firstChunkOffset) {
+      checkArgument(bufferSize > 0, "bufferSize must be positive");
+      checkArgument(firstChunkOffset >= 0, "firstChunkOffset must not be negative");
+      this.jdbcService = checkNotNull(jdbcService, "jdbcService");
+      this.chunks = ImmutableList.copyOf(checkNotNull(chunks, "chunks"));
+      this.window = new byte[bufferSize];
+      this.chunkOffset = firstChunkOffset;
+   }
+
+   @Override
+   public int read() throws IOException {
+      if (!fillBuffer()) {
+         return -1;
+      }
+      return buffer[bufferPosition++] & 0xff;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      checkNotNull(b, "b");
+      checkPositionIndexes(off, off + len, b.length);
+      if (len == 0) {
+         return 0;
+      }
+      if (!fillBuffer()) {
+         return -1;
+      }
+      int count = Math.min(len, bufferLength - bufferPosition);
+      System.arraycopy(buffer, bufferPosition, b, off, count);
+      bufferPosition += count;
+      return count;
+   }
+
+   /**
+    * Skips over buffered data first, then moves through the remaining chunks using their sizes only.
+    */
+   @Override
+   public long skip(long n) throws IOException {
+      if (n <= 0) {
+         return 0;
+      }
+      long skipped = Math.min(n, bufferLength - bufferPosition);
+      bufferPosition += skipped;
+      while (skipped < n && currentChunk < chunks.size()) {
+         int size = chunkSize(chunks.get(currentChunk));
+         long step = Math.min(n - skipped, size - chunkOffset);
+         skipped += step;
+         if (chunkOffset + step >= size) {
+            nextChunk();
+         } else {
+            if (chunkData != null) {
+               ByteStreams.skipFully(chunkData, step);
+            }
+            chunkOffset += step;
+         }
+      }
+      return skipped;
+   }
+
+   @Override
+   public int available() {
+      return bufferLength - bufferPosition;
+   }
+
+   @Override
+   public void close() throws IOException {
+      closeChunkData();
+      currentChunk = chunks.size();
+      buffer = null;
+      bufferPosition = 0;
+      bufferLength = 0;
+   }
+
+   /**
+    * Reads the next window of data once the buffer is consumed.
+    *
+    * @return false if the end of the content has been reached
+    */
+   private boolean fillBuffer() throws IOException {
+      while (bufferPosition >= bufferLength) {
+         if (currentChunk >= chunks.size()) {
+            return false;
+         }
+         Long id = chunks.get(currentChunk);
+         int size = chunkSize(id);
+         if (chunkOffset >= size) {
+            nextChunk();
+            continue;
+         }
+         if (chunkData == null) {
+            chunkData = jdbcService.openChunkData(id, chunkOffset);
+         }
+         if (chunkData == null) {
+            buffer = JdbcInputStream.readChunk(jdbcService, id);
+            bufferPosition = (int) chunkOffset;
+            bufferLength = buffer.length;
+            chunkOffset = size;
+            continue;
+         }
+         int count = ByteStreams.read(chunkData, window, 0, (int) Math.min(window.length, size - chunkOffset));
+         if (count == 0) {
+            throw new IOException("Chunk " + id + " is shorter than its size.");
+         }
+         buffer = window;
+         bufferPosition = 0;
+         bufferLength = count;
+         chunkOffset += count;
+         if (chunkOffset >= size) {
+            // Release the connection as soon as the chunk has been read
+            closeChunkData();
+         }
+      }
+      return true;
+   }
+
+   private void nextChunk() throws IOException {
+      closeChunkData();
+      currentChunk++;
+      chunkOffset = 0;
+   }
+
+   private void closeChunkData() throws IOException {
+      if (chunkData != null) {
+         InputStream data = chunkData;
+         chunkData = null;
+         data.close();
+      }
+   }
+
+   private int chunkSize(Long id) throws IOException {
+      if (chunkSizes == null) {
+         chunkSizes = jdbcService.findChunkSizes(chunks);
+      }
+      Integer size = chunkSizes.get(id);
+      if (size == null) {
+         throw new IOException("Could not find chunk.");
+      }
+      return size;
+   }
+
+}
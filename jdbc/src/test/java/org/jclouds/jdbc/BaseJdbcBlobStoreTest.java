@@ -28,17 +28,23 @@ import org.jclouds.blobstore.BlobRequestSigner;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
 import org.jclouds.blobstore.ContainerNotFoundException;
+import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
 import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.CopyOptions;
 import org.jclouds.blobstore.options.GetOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
 import org.jclouds.http.HttpRequest;
 import org.jclouds.io.Payload;
 import org.jclouds.io.payloads.PhantomPayload;
 import org.jclouds.io.payloads.StringPayload;
+import org.jclouds.jdbc.blobstore.JdbcBlobStore;
 import org.jclouds.util.Closeables2;
 import org.jclouds.util.Strings2;
 import org.testng.annotations.AfterMethod;
@@ -620,6 +626,108 @@ public abstract class BaseJdbcBlobStoreTest {
       }
    }
 
+   @Test
+   public void testBlobStoreUsesJdbcStrategy() {
+      assertThat(blobStore).isInstanceOf(JdbcBlobStore.class);
+   }
+
+   @Test
+   public void testRangeOfMissingBlob() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      assertNull(blobStore.getBlob(CONTAINER_NAME, BLOB_NAME, new GetOptions().range(0, 1)));
+      try {
+         blobStore.getBlob(CONTAINER_NAME + "-missing", BLOB_NAME, new GetOptions().range(0, 1));
+         fail("Ranged get from a missing container must fail");
+      } catch (ContainerNotFoundException e) {
+      }
+   }
+
+   @Test
+   public void testListPages() {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      List<String> blobNames = createBlobsInContainer(CONTAINER_NAME, "blob-", 5);
+      blobStore.putBlob(CONTAINER_NAME, createDirBlob("dir/blob"));
+
+      List<String> listed = Lists.newArrayList();
+      ListContainerOptions options = ListContainerOptions.Builder.maxResults(2);
+      PageSet<? extends StorageMetadata> page;
+      do {
+         page = blobStore.list(CONTAINER_NAME, options);
+         assertTrue(page.size() <= 2);
+         for (StorageMetadata metadata : page) {
+            listed.add(metadata.getName());
+         }
+         options = ListContainerOptions.Builder.maxResults(2).afterMarker(page.getNextMarker());
+      } while (page.getNextMarker() != null);
+      assertEquals(listed, ImmutableList.<String>builder().addAll(blobNames).add("dir/").build());
+
+      for (StorageMetadata metadata : blobStore.list(CONTAINER_NAME,
+            ListContainerOptions.Builder.prefix("blob-").withDetails())) {
+         assertEquals(((BlobMetadata) metadata).getContentMetadata().getContentLength(), Long.valueOf(1024));
+      }
+   }
+
+   @Test(expectedExceptions = ContainerNotFoundException.class)
+   public void testListPagesNotExistingContainer() {
+      blobStore.list(CONTAINER_NAME, ListContainerOptions.Builder.maxResults(2));
+   }
+
+   @Test
+   public void testCopyBlob() throws IOException {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      blobStore.createContainerInLocation(null, CONTAINER_NAME + "-copy");
+      Blob blob = blobStore.blobBuilder(BLOB_NAME).payload(new StringPayload("abcdefgh")).build();
+      String etag = blobStore.putBlob(CONTAINER_NAME, blob);
+
+      assertEquals(blobStore.copyBlob(CONTAINER_NAME, BLOB_NAME, CONTAINER_NAME + "-copy", BLOB_NAME,
+            CopyOptions.NONE), etag);
+      blobStore.removeBlob(CONTAINER_NAME, BLOB_NAME);
+      Payload payload = blobStore.getBlob(CONTAINER_NAME + "-copy", BLOB_NAME).getPayload();
+      try {
+         assertEquals(Strings2.toStringAndClose(payload.openStream()), "abcdefgh");
+      } finally {
+         Closeables2.closeQuietly(payload);
+      }
+
+      try {
+         blobStore.copyBlob(CONTAINER_NAME + "-missing", BLOB_NAME, CONTAINER_NAME, BLOB_NAME, CopyOptions.NONE);
+         fail("Copy from a missing container must fail");
+      } catch (ContainerNotFoundException e) {
+      }
+      try {
+         blobStore.copyBlob(CONTAINER_NAME, BLOB_NAME, CONTAINER_NAME + "-copy", BLOB_NAME, CopyOptions.NONE);
+         fail("Copy of a missing blob must fail");
+      } catch (KeyNotFoundException e) {
+      }
+   }
+
+   @Test
+   public void testMultipartUpload() throws IOException {
+      blobStore.createContainerInLocation(null, CONTAINER_NAME);
+      MultipartUpload mpu = blobStore.initiateMultipartUpload(CONTAINER_NAME,
+            blobStore.blobBuilder(BLOB_NAME).payload(new byte[0]).build().getMetadata(), PutOptions.NONE);
+      MultipartPart first = blobStore.uploadMultipartPart(mpu, 1, new StringPayload("abcd"));
+      MultipartPart second = blobStore.uploadMultipartPart(mpu, 2, new StringPayload("efgh"));
+      assertEquals(blobStore.listMultipartUpload(mpu).size(), 2);
+      assertEquals(blobStore.listMultipartUploads(CONTAINER_NAME).size(), 1);
+
+      blobStore.completeMultipartUpload(mpu, ImmutableList.of(first, second));
+      assertTrue(blobStore.listMultipartUploads(CONTAINER_NAME).isEmpty());
+      Payload payload = blobStore.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload();
+      try {
+         assertEquals(Strings2.toStringAndClose(payload.openStream()), "abcdefgh");
+      } finally {
+         Closeables2.closeQuietly(payload);
+      }
+
+      mpu = blobStore.initiateMultipartUpload(CONTAINER_NAME,
+            blobStore.blobBuilder(BLOB_NAME + "-aborted").payload(new byte[0]).build().getMetadata(), PutOptions.NONE);
+      blobStore.uploadMultipartPart(mpu, 1, new StringPayload("abcd"));
+      blobStore.abortMultipartUpload(mpu);
+      assertTrue(blobStore.listMultipartUploads(CONTAINER_NAME).isEmpty());
+      assertFalse(blobStore.blobExists(CONTAINER_NAME, BLOB_NAME + "-aborted"));
+   }
+
    @Test
    public void testBlobRequestSigner() throws Exception {
       String containerName = "container";
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc;
+
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.jclouds.jdbc.util.ChunkBufferPool;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(groups = "unit", testName = "ChunkBufferPoolTest")
+public class ChunkBufferPoolTest {
+
+   @Test
+   public void testReleasedBufferIsReused() {
+      ChunkBufferPool pool = new ChunkBufferPool(JdbcConstants.DEFAULT_CHUNK_SIZE);
+      byte[] buffer = pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE);
+      assertThat(buffer).hasSize(JdbcConstants.DEFAULT_CHUNK_SIZE);
+      pool.release(buffer);
+      assertThat(pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE)).isSameAs(buffer);
+   }
+
+   @Test
+   public void testPoolIsBounded() {
+      ChunkBufferPool pool = new ChunkBufferPool(JdbcConstants.DEFAULT_CHUNK_SIZE);
+      byte[] first = pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE);
+      byte[] second = pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE);
+      pool.release(first);
+      pool.release(second);
+      assertThat(pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE)).isSameAs(first);
+      assertThat(pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE)).isNotSameAs(second);
+   }
+
+   @Test
+   public void testBuffersArePooledBySize() {
+      ChunkBufferPool pool = new ChunkBufferPool(JdbcConstants.DEFAULT_CHUNK_SIZE + 10);
+      byte[] small = new byte[10];
+      pool.release(small);
+      assertThat(pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE)).isNotSameAs(small);
+      assertThat(pool.acquire(10)).isSameAs(small);
+   }
+
+   @Test
+   public void testPoolIsBoundedInBytes() {
+      ChunkBufferPool pool = new ChunkBufferPool(2 * JdbcConstants.DEFAULT_CHUNK_SIZE);
+      // A buffer bigger than the capacity is never pooled, smaller ones fill it up
+      byte[] large = new byte[4 * JdbcConstants.DEFAULT_CHUNK_SIZE];
+      pool.release(large);
+      assertThat(pool.acquire(large.length)).isNotSameAs(large);
+      byte[] first = new byte[JdbcConstants.DEFAULT_CHUNK_SIZE];
+      byte[] second = new byte[JdbcConstants.DEFAULT_CHUNK_SIZE];
+      byte[] third = new byte[10];
+      pool.release(first);
+      pool.release(second);
+      pool.release(third);
+      assertThat(pool.acquire(10)).isNotSameAs(third);
+      assertThat(pool.acquire(JdbcConstants.DEFAULT_CHUNK_SIZE)).isSameAs(first);
+      pool.release(third);
+      assertThat(pool.acquire(10)).isSameAs(third);
+   }
+
+}
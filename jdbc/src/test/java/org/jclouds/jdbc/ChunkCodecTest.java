@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.jdbc;
+
+import org.jclouds.jdbc.util.ChunkCodecPolicy;
+import org.jclouds.jdbc.util.DeflateChunkCodec;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jclouds.utils.TestUtils.randomByteSource;
+
+@Test(groups = "unit", testName = "ChunkCodecTest")
+public class ChunkCodecTest {
+
+   @Test
+   public void testDeflateRoundTrip() throws IOException {
+      byte[] data = new byte[64 * 1024];
+      Arrays.fill(data, (byte) 'a');
+      DeflateChunkCodec codec = new DeflateChunkCodec();
+      byte[] encoded = codec.encode(data, 0, data.length);
+      assertThat(encoded.length).isLessThan(data.length / 8);
+      assertThat(codec.decode(encoded, data.length)).isEqualTo(data);
+   }
+
+   @Test
+   public void testIncompressibleDataIsNotEncoded() throws IOException {
+      byte[] data = randomByteSource().slice(0, 64 * 1024).read();
+      assertThat(new DeflateChunkCodec().encode(data, 0, data.length)).isNull();
+   }
+
+   @Test(expectedExceptions = IOException.class)
+   public void testTruncatedDataIsRejected() throws IOException {
+      byte[] data = new byte[64 * 1024];
+      DeflateChunkCodec codec = new DeflateChunkCodec();
+      byte[] encoded = codec.encode(data, 0, data.length);
+      codec.decode(Arrays.copyOf(encoded, encoded.length / 2), data.length);
+   }
+
+   @Test
+   public void testPolicySelectsCodecByContentType() {
+      ChunkCodecPolicy policy = new ChunkCodecPolicy(DeflateChunkCodec.NAME, "text/, application/json");
+      assertThat(policy.codec("container", "text/plain")).isInstanceOf(DeflateChunkCodec.class);
+      assertThat(policy.codec("container", "application/json")).isInstanceOf(DeflateChunkCodec.class);
+      assertThat(policy.codec("container", "image/png")).isNull();
+      assertThat(policy.codec("container", null)).isNull();
+      assertThat(new ChunkCodecPolicy(ChunkCodecPolicy.NONE, "").codec("container", "text/plain")).isNull();
+      assertThat(new ChunkCodecPolicy(DeflateChunkCodec.NAME, "").codec("container", null))
+            .isInstanceOf(DeflateChunkCodec.class);
+   }
+
+}
@@ -17,16 +17,27 @@
 package org.jclouds.jdbc;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.jclouds.jdbc.entity.ChunkEntity;
 import org.jclouds.jdbc.service.JdbcService;
 import org.jclouds.jdbc.util.JdbcInputStream;
+import org.jclouds.jdbc.util.StreamingJdbcInputStream;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 
 @Test(groups = "unit", testName = "JdbcInputStreamTest")
 public class JdbcInputStreamTest {
@@ -56,4 +67,54 @@ public class JdbcInputStreamTest {
       assertThat(jdbcInputStream.read()).isEqualTo(-1);
    }
 
+   @Test
+   public void testBulkReadAcrossChunks() throws IOException {
+      expect(mockJdbcService.findChunkById(1L)).andReturn(new ChunkEntity(new byte[] { 1, 2, 3 }, 3));
+      expect(mockJdbcService.findChunkById(2L)).andReturn(new ChunkEntity(new byte[] { 4, 5 }, 2));
+      replay(mockJdbcService);
+      JdbcInputStream jdbcInputStream = new JdbcInputStream(mockJdbcService, ImmutableList.of(1L, 2L));
+      byte[] buffer = new byte[4];
+      assertThat(jdbcInputStream.read(buffer, 0, 4)).isEqualTo(4);
+      assertThat(buffer).containsExactly(new byte[] { 1, 2, 3, 4 });
+      assertThat(jdbcInputStream.read(buffer, 0, 4)).isEqualTo(1);
+      assertThat(buffer[0]).isEqualTo((byte) 5);
+      assertThat(jdbcInputStream.read(buffer, 0, 4)).isEqualTo(-1);
+   }
+
+   @Test
+   public void testPrefetchedRead() throws IOException {
+      ImmutableList.Builder<Long> ids = ImmutableList.builder();
+      for (long i = 0; i < 10; i++) {
+         expect(mockJdbcService.findChunkById(i)).andReturn(new ChunkEntity(new byte[] { (byte) i, (byte) i }, 2));
+         ids.add(i);
+      }
+      replay(mockJdbcService);
+      ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2));
+      try {
+         byte[] data = ByteStreams.toByteArray(new JdbcInputStream(mockJdbcService, ids.build(), executor, 3));
+         assertThat(data).hasSize(20);
+         for (int i = 0; i < data.length; i++) {
+            assertThat(data[i]).isEqualTo((byte) (i / 2));
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testStreamedReadOpensEachChunkOnce() throws IOException {
+      expect(mockJdbcService.findChunkSizes(ImmutableList.of(1L, 2L))).andReturn(ImmutableMap.of(1L, 5, 2L, 3));
+      expect(mockJdbcService.openChunkData(1L, 1L)).andReturn(new ByteArrayInputStream(new byte[] { 2, 3, 4, 5 }));
+      expect(mockJdbcService.openChunkData(2L, 0L)).andReturn(new ByteArrayInputStream(new byte[] { 6, 7, 8 }));
+      replay(mockJdbcService);
+      // Windows of two bytes are read from a single stream per chunk
+      InputStream in = new StreamingJdbcInputStream(mockJdbcService, ImmutableList.of(1L, 2L), 2, 1);
+      try {
+         assertThat(ByteStreams.toByteArray(in)).containsExactly(new byte[] { 2, 3, 4, 5, 6, 7, 8 });
+      } finally {
+         in.close();
+      }
+      verify(mockJdbcService);
+   }
+
 }
@@ -16,14 +16,47 @@
  */
 package org.jclouds.jdbc.module;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import org.jclouds.Constants;
+import org.jclouds.jdbc.JdbcApiMetadata;
 import org.jclouds.jdbc.config.JPAInitializer;
+import org.jclouds.jdbc.metrics.JdbcMetricsModule;
+import org.jclouds.jdbc.reference.JdbcConstants;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 
 public class TestContextModule extends AbstractModule {
 
+   private final Properties overrides;
+
+   public TestContextModule() {
+      this(new Properties());
+   }
+
+   public TestContextModule(Properties overrides) {
+      this.overrides = overrides;
+   }
+
    @Override
    protected void configure() {
+      Properties properties = JdbcApiMetadata.defaultProperties();
+      properties.putAll(overrides);
+      Names.bindProperties(binder(), properties);
+      bind(ListeningExecutorService.class).annotatedWith(Names.named(Constants.PROPERTY_USER_THREADS))
+            .toInstance(sameThreadExecutor());
+      // Parallel fetches really run on other threads, so they do not share the transaction of the test
+      bind(ListeningExecutorService.class).annotatedWith(Names.named(JdbcConstants.PROPERTY_PARALLEL_FETCH_THREADS))
+            .toInstance(MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(
+                  new ThreadFactoryBuilder().setDaemon(true).build())));
       bind(JPAInitializer.class).asEagerSingleton();
+      install(new JdbcMetricsModule());
    }
 
 }
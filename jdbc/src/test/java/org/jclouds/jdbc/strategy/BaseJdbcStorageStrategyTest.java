@@ -16,31 +16,77 @@
  */
 package org.jclouds.jdbc.strategy;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import com.google.common.primitives.Bytes;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Module;
+import com.google.inject.name.Names;
 import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
 import com.google.inject.persist.jpa.JpaPersistModule;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.domain.BlobAccess;
+import org.jclouds.blobstore.domain.BlobMetadata;
 import org.jclouds.blobstore.domain.ContainerAccess;
+import org.jclouds.blobstore.domain.MultipartPart;
+import org.jclouds.blobstore.domain.MultipartUpload;
+import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
 import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.blobstore.options.CopyOptions;
 import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.io.Payloads;
+import org.jclouds.jdbc.entity.ChunkEntity;
+import org.jclouds.jdbc.entity.PayloadEntity;
+import org.jclouds.jdbc.metrics.JdbcMetrics;
 import org.jclouds.jdbc.module.TestContextModule;
+import org.jclouds.jdbc.reference.JdbcConstants;
+import org.jclouds.jdbc.service.GarbageCollectionReport;
+import org.jclouds.jdbc.service.ContainerIdCache;
+import org.jclouds.jdbc.service.JdbcService;
+import org.jclouds.jdbc.service.ScrubReport;
+import org.jclouds.jdbc.util.DeflateChunkCodec;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.jclouds.utils.TestUtils.randomByteSource;
+import static org.testng.Assert.fail;
 
 public abstract class BaseJdbcStorageStrategyTest {
 
@@ -58,13 +104,39 @@ public abstract class BaseJdbcStorageStrategyTest {
 
    @BeforeMethod
    protected void setUp() throws Exception {
-      injector = Guice.createInjector(ImmutableSet.<Module> of(new TestContextModule(), new JpaPersistModule(jpaModuleName)));
+      setUp(new Properties());
+   }
+
+   private void setUp(Properties overrides, Module... modules) {
+      injector = Guice.createInjector(ImmutableSet.<Module> builder()
+            .add(new TestContextModule(overrides), new JpaPersistModule(jpaModuleName))
+            .add(modules)
+            .build());
       storageStrategy = injector.getInstance(JdbcStorageStrategy.class);
    }
 
    @AfterMethod
    protected void tearDown() {
       injector.getInstance(PersistService.class).stop();
+      injector.getInstance(Key.get(ListeningExecutorService.class,
+            Names.named(JdbcConstants.PROPERTY_PARALLEL_FETCH_THREADS))).shutdownNow();
+   }
+
+   /**
+    * Replaces the storage strategy of the test with one configured with the given properties and
+    * modules, on an empty database.
+    */
+   private void restartWith(Properties overrides, Module... modules) {
+      tearDown();
+      setUp(overrides, modules);
+   }
+
+   private static Properties properties(String... keysAndValues) {
+      Properties properties = new Properties();
+      for (int i = 0; i < keysAndValues.length; i += 2) {
+         properties.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+      }
+      return properties;
    }
 
    @Test
@@ -105,6 +177,18 @@ public abstract class BaseJdbcStorageStrategyTest {
       assertThat(storageStrategy.containerExists(CONTAINER_NAME)).isFalse();
    }
 
+   @Test
+   public void testRecreateContainer() throws IOException {
+      putBlobs("a");
+      assertThat(storageStrategy.blobExists(CONTAINER_NAME, "a")).isTrue();
+      storageStrategy.deleteContainer(CONTAINER_NAME);
+      assertThat(storageStrategy.containerExists(CONTAINER_NAME)).isFalse();
+      putBlobs("b");
+      assertThat(storageStrategy.blobExists(CONTAINER_NAME, "a")).isFalse();
+      assertThat(storageStrategy.blobExists(CONTAINER_NAME, "b")).isTrue();
+      assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME)).containsExactly("b");
+   }
+
    @Test
    public void testGetAllContainerNames() {
       assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME + "1", null, null)).isTrue();
@@ -167,6 +251,486 @@ public abstract class BaseJdbcStorageStrategyTest {
         }
     }
 
+   @Test
+   public void testGetInlineBlob() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      byte[] content = getByteArray('b', 1024);
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+      Blob blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME);
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream())).isEqualTo(content);
+      assertThat(blob.getMetadata().getContentMetadata().getContentLength()).isEqualTo(1024L);
+   }
+
+   @Test
+   public void testGetBlobRange() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      byte[] content = randomByteSource().slice(0, 3 * 1024 * 1024 + 100).read();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+
+      Blob blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME, new GetOptions().range(1048570, 2097160));
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream()))
+            .isEqualTo(Arrays.copyOfRange(content, 1048570, 2097161));
+      assertThat(blob.getMetadata().getContentMetadata().getContentLength()).isEqualTo(1048591L);
+      assertThat(blob.getAllHeaders().get(HttpHeaders.CONTENT_RANGE))
+            .containsExactly("bytes 1048570-2097160/" + content.length);
+
+      blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME, new GetOptions().tail(50).startAt(10));
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream()))
+            .isEqualTo(Bytes.concat(Arrays.copyOfRange(content, content.length - 50, content.length),
+                  Arrays.copyOfRange(content, 10, content.length)));
+
+      InputStream data = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload().openStream();
+      assertThat(data.skip(2 * 1024 * 1024 + 7)).isEqualTo(2 * 1024 * 1024 + 7);
+      assertThat(ByteStreams.toByteArray(data)).isEqualTo(Arrays.copyOfRange(content, 2 * 1024 * 1024 + 7,
+            content.length));
+   }
+
+   @Test
+   public void testCopyBlob() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME + "-copy", null, null)).isTrue();
+      byte[] content = randomByteSource().slice(0, 3 * 1024 * 1024 + 10).read();
+      String etag = storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content)
+            .userMetadata(ImmutableMap.of("key", "value")).build());
+      storageStrategy.putBlob(CONTAINER_NAME + "-copy", new BlobBuilderImpl().name(BLOB_NAME)
+            .payload(getByteArray('a', 2 * 1024 * 1024)).build());
+
+      assertThat(storageStrategy.copyBlob(CONTAINER_NAME, BLOB_NAME, CONTAINER_NAME + "-copy", BLOB_NAME,
+            CopyOptions.NONE)).isEqualTo(etag);
+      assertThat(storageStrategy.copyBlob(CONTAINER_NAME, BLOB_NAME, CONTAINER_NAME, BLOB_NAME + "-copy",
+            CopyOptions.builder().userMetadata(ImmutableMap.of("other", "value")).build())).isEqualTo(etag);
+      storageStrategy.removeBlob(CONTAINER_NAME, BLOB_NAME);
+
+      Blob copy = storageStrategy.getBlob(CONTAINER_NAME + "-copy", BLOB_NAME);
+      assertThat(ByteStreams.toByteArray(copy.getPayload().openStream())).isEqualTo(content);
+      assertThat(copy.getMetadata().getUserMetadata()).containsEntry("key", "value");
+      copy = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME + "-copy");
+      assertThat(ByteStreams.toByteArray(copy.getPayload().openStream())).isEqualTo(content);
+      assertThat(copy.getMetadata().getUserMetadata()).containsOnlyKeys("other");
+   }
+
+   @Test
+   public void testMultipartUpload() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      MultipartUpload mpu = storageStrategy.initiateMultipartUpload(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(new byte[0]).contentType("text/plain").build().getMetadata(),
+            PutOptions.NONE);
+      byte[] part1 = randomByteSource().slice(0, 2 * 1024 * 1024 + 10).read();
+      byte[] part2 = getByteArray('b', 100);
+
+      storageStrategy.uploadMultipartPart(mpu, 2, Payloads.newByteArrayPayload(part2));
+      storageStrategy.uploadMultipartPart(mpu, 1, Payloads.newByteArrayPayload(getByteArray('a', 10)));
+      MultipartPart first = storageStrategy.uploadMultipartPart(mpu, 1, Payloads.newByteArrayPayload(part1));
+      storageStrategy.uploadMultipartPart(mpu, 3, Payloads.newByteArrayPayload(part2));
+      List<MultipartPart> parts = storageStrategy.listMultipartUpload(mpu);
+      assertThat(parts).hasSize(3);
+      assertThat(parts.get(0).partSize()).isEqualTo(part1.length);
+      assertThat(storageStrategy.listMultipartUploads(CONTAINER_NAME)).hasSize(1);
+
+      String etag = storageStrategy.completeMultipartUpload(mpu, ImmutableList.of(first, parts.get(1)));
+      assertThat(etag).endsWith("-2");
+      Blob blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME);
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream())).isEqualTo(Bytes.concat(part1, part2));
+      assertThat(blob.getMetadata().getContentMetadata().getContentLength()).isEqualTo(part1.length + 100L);
+      assertThat(blob.getMetadata().getContentMetadata().getContentType()).isEqualTo("text/plain");
+      assertThat(storageStrategy.listMultipartUploads(CONTAINER_NAME)).isEmpty();
+   }
+
+   @Test
+   public void testAbortMultipartUpload() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      MultipartUpload mpu = storageStrategy.initiateMultipartUpload(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(new byte[0]).build().getMetadata(), PutOptions.NONE);
+      storageStrategy.uploadMultipartPart(mpu, 1, Payloads.newByteArrayPayload(getByteArray('a', 1024)));
+      storageStrategy.abortMultipartUpload(mpu);
+      assertThat(storageStrategy.listMultipartUploads(CONTAINER_NAME)).isEmpty();
+      assertThat(storageStrategy.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+      storageStrategy.deleteContainer(CONTAINER_NAME);
+   }
+
+   @Test
+   public void testListWithDelimiterAndMarker() throws IOException {
+      putBlobs("a", "b/1", "b/2", "c/d/1", "e");
+      assertThat(names(storageStrategy.list(CONTAINER_NAME, new ListContainerOptions())))
+            .containsExactly("a", "b/", "c/", "e");
+
+      PageSet<? extends StorageMetadata> page = storageStrategy.list(CONTAINER_NAME, new ListContainerOptions().maxResults(2));
+      assertThat(names(page)).containsExactly("a", "b/");
+      assertThat(page.getNextMarker()).isEqualTo("b/");
+
+      page = storageStrategy.list(CONTAINER_NAME, new ListContainerOptions().afterMarker("b/").maxResults(2));
+      assertThat(names(page)).containsExactly("c/", "e");
+      assertThat(page.getNextMarker()).isNull();
+
+      try {
+         storageStrategy.list(CONTAINER_NAME, new ListContainerOptions().maxResults(0));
+         fail("An empty page was listed without a marker");
+      } catch (IllegalArgumentException expected) {
+         // An empty page cannot tell where the listing resumes
+      }
+
+      assertThat(names(storageStrategy.list(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("b").recursive())))
+            .containsExactly("b/1", "b/2");
+      assertThat(names(storageStrategy.list(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("c"))))
+            .containsExactly("c/d/");
+   }
+
+   @Test
+   public void testListWithLongDelimiter() throws IOException {
+      putBlobs("a--1", "a--2", "a-b", "c--d--1", "c-");
+      assertThat(names(storageStrategy.list(CONTAINER_NAME, new ListContainerOptions().delimiter("--"))))
+            .containsExactly("a--", "a-b", "c-", "c--");
+      assertThat(names(storageStrategy.list(CONTAINER_NAME, new ListContainerOptions().prefix("c--").delimiter("--"))))
+            .containsExactly("c--d--");
+      assertThat(names(storageStrategy.list(CONTAINER_NAME,
+            new ListContainerOptions().delimiter("--").afterMarker("a--").maxResults(2))))
+            .containsExactly("a-b", "c-");
+   }
+
+   @Test
+   public void testCountBlobs() throws IOException {
+      putBlobs("a", "b/1", "b/2", "c/d/1", "e");
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME, new ListContainerOptions())).isEqualTo(5);
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("b"))).isEqualTo(2);
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("c"))).isEqualTo(0);
+      assertThat(storageStrategy.countBlobs(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("c").recursive()))
+            .isEqualTo(1);
+   }
+
+   @Test
+   public void testDeduplicatedChunks() throws IOException {
+      restartWith(properties(JdbcConstants.PROPERTY_DEDUPLICATE_CHUNKS, "true"));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      byte[] content = getByteArray('a', 4 * 1024 * 1024 + 10);
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME + "1").payload(content).build());
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME + "2").payload(content).build());
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME + "1").getPayload()
+            .openStream())).isEqualTo(content);
+
+      storageStrategy.removeBlob(CONTAINER_NAME, BLOB_NAME + "1");
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME + "2").getPayload()
+            .openStream())).isEqualTo(content);
+   }
+
+   @Test
+   public void testCompressedChunks() throws IOException {
+      restartWith(properties(JdbcConstants.PROPERTY_CHUNK_CODEC, DeflateChunkCodec.NAME));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      // Compressible and incompressible chunks
+      byte[] content = Bytes.concat(getByteArray('a', 2 * 1024 * 1024),
+            randomByteSource().slice(0, 1024 * 1024 + 10).read());
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+      Blob blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME, new GetOptions().range(1024 * 1024 + 5,
+            2 * 1024 * 1024 + 5));
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream()))
+            .isEqualTo(Arrays.copyOfRange(content, 1024 * 1024 + 5, 2 * 1024 * 1024 + 6));
+   }
+
+   @Test
+   public void testStreamedChunks() throws IOException {
+      restartWith(properties(
+            JdbcConstants.PROPERTY_STREAM_CHUNKS, "true",
+            JdbcConstants.PROPERTY_STREAM_BUFFER_SIZE, "100000",
+            JdbcConstants.PROPERTY_CHUNK_CODEC, DeflateChunkCodec.NAME));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      // Raw chunks are streamed in windows, compressed chunks are read whole
+      byte[] content = Bytes.concat(randomByteSource().slice(0, 2 * 1024 * 1024 + 10).read(),
+            getByteArray('a', 1024 * 1024));
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+      Blob blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME, new GetOptions().range(1024 * 1024 - 5,
+            2 * 1024 * 1024 + 50));
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream()))
+            .isEqualTo(Arrays.copyOfRange(content, 1024 * 1024 - 5, 2 * 1024 * 1024 + 51));
+      InputStream in = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload().openStream();
+      try {
+         ByteStreams.skipFully(in, 2 * 1024 * 1024 + 5);
+         assertThat(ByteStreams.toByteArray(in))
+               .isEqualTo(Arrays.copyOfRange(content, 2 * 1024 * 1024 + 5, content.length));
+      } finally {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testParallelFetch() throws IOException {
+      restartWith(properties(
+            JdbcConstants.PROPERTY_PARALLEL_FETCH_THRESHOLD, String.valueOf(2 * 1024 * 1024),
+            JdbcConstants.PROPERTY_PARALLEL_FETCH_CHUNKS, "3",
+            JdbcConstants.PROPERTY_PARALLEL_FETCH_MEMORY, String.valueOf(2 * 1024 * 1024)));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      // The memory limit keeps two chunks ahead of the reader although three may be fetched at once
+      byte[] content = randomByteSource().slice(0, 5 * 1024 * 1024 + 10).read();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+      Blob blob = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME, new GetOptions().range(1024 * 1024 - 5,
+            4 * 1024 * 1024 + 50));
+      assertThat(ByteStreams.toByteArray(blob.getPayload().openStream()))
+            .isEqualTo(Arrays.copyOfRange(content, 1024 * 1024 - 5, 4 * 1024 * 1024 + 51));
+      InputStream in = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload().openStream();
+      try {
+         ByteStreams.skipFully(in, 3 * 1024 * 1024 + 5);
+         assertThat(ByteStreams.toByteArray(in))
+               .isEqualTo(Arrays.copyOfRange(content, 3 * 1024 * 1024 + 5, content.length));
+      } finally {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testCollectGarbage() throws IOException {
+      restartWith(properties(JdbcConstants.PROPERTY_GC_GRACE_PERIOD, "0"));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 3 * 1024 * 1024)).build());
+      long chunks = countChunks();
+      // Overwriting a blob releases the chunks of its previous content
+      byte[] content = randomByteSource().slice(0, 3 * 1024 * 1024).read();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+      assertThat(countChunks()).isEqualTo(chunks);
+
+      // An orphan payload holding a chunk, and a chunk no payload refers to
+      UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+      unitOfWork.begin();
+      try {
+         EntityManager entityManager = injector.getInstance(EntityManager.class);
+         entityManager.getTransaction().begin();
+         ChunkEntity held = new ChunkEntity(new byte[] { 1 }, 1);
+         entityManager.persist(held);
+         entityManager.persist(new ChunkEntity(new byte[] { 2 }, 1));
+         entityManager.flush();
+         PayloadEntity orphan = PayloadEntity.builder().build();
+         orphan.setChunks(ImmutableList.of(held.getId()));
+         entityManager.persist(orphan);
+         entityManager.getTransaction().commit();
+      } finally {
+         unitOfWork.end();
+      }
+      assertThat(countChunks()).isEqualTo(chunks + 2);
+
+      GarbageCollectionReport report = storageStrategy.collectGarbage();
+      assertThat(report.getDeletedPayloads()).isEqualTo(1);
+      assertThat(report.getDeletedChunks()).isEqualTo(1);
+      assertThat(countChunks()).isEqualTo(chunks);
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+      assertThat(storageStrategy.collectGarbage().getDeletedChunks()).isZero();
+   }
+
+   @Test
+   public void testCollectGarbageDuringUpload() throws IOException {
+      restartWith(properties(
+            JdbcConstants.PROPERTY_GC_GRACE_PERIOD, "0",
+            JdbcConstants.PROPERTY_CHUNK_BATCH_SIZE, "1"));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      // Without a grace period the first chunk is collected before the blob refers to it
+      byte[] content = randomByteSource().slice(0, 2 * 1024 * 1024 + 10).read();
+      try {
+         storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME)
+               .payload(collectingGarbage(content, 1024 * 1024, 50, 1024 * 1024)).build());
+         fail("The blob was stored without its collected chunk");
+      } catch (IOException expected) {
+         assertThat(expected.getMessage()).contains("garbage collector");
+      }
+      assertThat(storageStrategy.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+      assertThat(countChunks()).isZero();
+   }
+
+   @Test
+   public void testLongUploadTouchesChunks() throws IOException {
+      restartWith(properties(
+            JdbcConstants.PROPERTY_GC_GRACE_PERIOD, "1",
+            JdbcConstants.PROPERTY_CHUNK_BATCH_SIZE, "1"));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      // The upload lasts longer than the grace period, its chunks are touched every half period
+      byte[] content = randomByteSource().slice(0, 2 * 1024 * 1024 + 10).read();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME)
+            .payload(collectingGarbage(content, 1024 * 1024, 700, 2 * 1024 * 1024)).build());
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+      assertThat(countChunks()).isEqualTo(3);
+   }
+
+   @Test
+   public void testOverwriteBlobWithDirectory() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      // Overwriting the blob increments its version
+      for (int i = 0; i < 2; i++) {
+         storageStrategy.putBlob(CONTAINER_NAME,
+               new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 3 * 1024 * 1024)).build());
+      }
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      long version = jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getVersion();
+
+      storageStrategy.createDirectory(CONTAINER_NAME, BLOB_NAME);
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, BLOB_NAME)).isTrue();
+      assertThat(jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getVersion()).isEqualTo(version + 1);
+      assertThat(countChunks()).isZero();
+      assertThat(storageStrategy.collectGarbage().getDeletedPayloads()).isZero();
+   }
+
+   @Test
+   public void testCompleteMultipartUploadOverwritesBlob() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      for (int i = 0; i < 2; i++) {
+         storageStrategy.putBlob(CONTAINER_NAME,
+               new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 3 * 1024 * 1024)).build());
+      }
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      long version = jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getVersion();
+
+      MultipartUpload mpu = storageStrategy.initiateMultipartUpload(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(new byte[0]).build().getMetadata(), PutOptions.NONE);
+      byte[] content = randomByteSource().slice(0, 2 * 1024 * 1024 + 10).read();
+      MultipartPart part = storageStrategy.uploadMultipartPart(mpu, 1, Payloads.newByteArrayPayload(content));
+      storageStrategy.completeMultipartUpload(mpu, ImmutableList.of(part));
+
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+      assertThat(jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getVersion()).isEqualTo(version + 1);
+      // The chunks and the payload of the replaced blob are released
+      assertThat(countChunks()).isEqualTo(3);
+      assertThat(storageStrategy.collectGarbage().getDeletedPayloads()).isZero();
+   }
+
+   @Test
+   public void testConcurrentPutBlob() throws Exception {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 3 * 1024 * 1024)).build());
+      final JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      long chunks = countChunks();
+      long version = jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getVersion();
+
+      final List<byte[]> contents = new ArrayList<byte[]>();
+      for (int i = 0; i < 4; i++) {
+         contents.add(randomByteSource().slice(0, 3 * 1024 * 1024).read());
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(contents.size());
+      try {
+         List<Future<?>> futures = new ArrayList<Future<?>>();
+         for (final byte[] content : contents) {
+            futures.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+                  return null;
+               }
+            }));
+         }
+         for (Future<?> future : futures) {
+            future.get();
+         }
+      } finally {
+         executor.shutdown();
+      }
+
+      // The last writer wins and the chunks of the replaced contents are released
+      byte[] stored = ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream());
+      assertThat(contents).contains(stored);
+      assertThat(countChunks()).isEqualTo(chunks);
+      assertThat(jdbcService.findBlobById(CONTAINER_NAME, BLOB_NAME).getVersion())
+            .isEqualTo(version + contents.size());
+   }
+
+   @Test
+   public void testScrub() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("inline").payload(randomByteSource().slice(0, 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("intact").payload(randomByteSource().slice(0, 2 * 1024 * 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name("corrupt").payload(randomByteSource().slice(0, 2 * 1024 * 1024)).build());
+      storageStrategy.createDirectory(CONTAINER_NAME, "directory");
+
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      Long chunkId = jdbcService.findChunkIds(jdbcService.findBlobById(CONTAINER_NAME, "corrupt").getPayload().getId())
+            .get(1);
+      UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+      unitOfWork.begin();
+      try {
+         EntityManager entityManager = injector.getInstance(EntityManager.class);
+         entityManager.getTransaction().begin();
+         ChunkEntity chunk = entityManager.find(ChunkEntity.class, chunkId);
+         byte[] data = chunk.getData().clone();
+         data[0] ^= 1;
+         chunk.setData(data);
+         entityManager.getTransaction().commit();
+      } finally {
+         unitOfWork.end();
+      }
+
+      ScrubReport report = storageStrategy.scrub(null);
+      assertThat(report.getCheckedBlobs()).isEqualTo(3);
+      assertThat(report.getSkippedBlobs()).isEqualTo(1);
+      assertThat(report.getCheckedBytes()).isEqualTo(1024 + 4 * 1024 * 1024);
+      assertThat(report.getCorruptBlobs()).containsExactly(CONTAINER_NAME + "/corrupt");
+   }
+
+   @Test
+   public void testMetrics() throws IOException {
+      RecordingJdbcMetrics metrics = new RecordingJdbcMetrics();
+      restartWith(new Properties(), metricsModule(metrics));
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      byte[] content = randomByteSource().slice(0, 2 * 1024 * 1024 + 10).read();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload(content).build());
+      assertThat(ByteStreams.toByteArray(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getPayload()
+            .openStream())).isEqualTo(content);
+
+      assertThat(metrics.operations).contains("createContainerInLocation", "putBlob", "getBlob");
+      // Chunks are stored and the blob swapped in by separate transactions
+      assertThat(metrics.transactions).contains("storeChunkBatch", "swapBlob", "findBlobById", "findChunkById");
+      assertThat(metrics.containerLookups.get()).isPositive();
+      assertThat(metrics.hashedBytes.get()).isEqualTo(content.length);
+      assertThat(metrics.writtenChunks.get()).isEqualTo(3);
+      assertThat(metrics.writtenBytes.get()).isEqualTo(content.length);
+      assertThat(metrics.readBytes.get()).isEqualTo(content.length);
+   }
+
+   @Test
+   public void testContainerIdCache() throws IOException {
+      RecordingJdbcMetrics metrics = new RecordingJdbcMetrics();
+      restartWith(new Properties(), metricsModule(metrics));
+      ContainerIdCache cache = injector.getInstance(ContainerIdCache.class);
+
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME).payload("content").build());
+      CacheStats stats = cache.stats();
+      assertThat(stats.missCount()).isPositive();
+      assertThat(cache.size()).isEqualTo(1);
+
+      // Once cached, the id of the container is no longer looked up in the database
+      for (int i = 0; i < 3; i++) {
+         assertThat(storageStrategy.blobExists(CONTAINER_NAME, BLOB_NAME)).isTrue();
+      }
+      assertThat(cache.stats().missCount()).isEqualTo(stats.missCount());
+      assertThat(cache.stats().hitCount()).isEqualTo(stats.hitCount() + 3);
+      assertThat(metrics.cachedContainerLookups.get()).isEqualTo(cache.stats().hitCount());
+      assertThat(metrics.containerLookups.get() - metrics.cachedContainerLookups.get())
+            .isBetween(1L, stats.missCount());
+
+      // A deleted container is evicted and its id is not cached again
+      storageStrategy.deleteContainer(CONTAINER_NAME);
+      assertThat(cache.size()).isZero();
+      assertThat(storageStrategy.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+      assertThat(cache.stats().missCount()).isEqualTo(stats.missCount() + 1);
+      assertThat(cache.size()).isZero();
+   }
+
    @Test
    public void testRemoveBlob() throws IOException {
       assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
@@ -177,6 +741,29 @@ public abstract class BaseJdbcStorageStrategyTest {
       assertThat(storageStrategy.blobExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
    }
 
+   @Test
+   public void testReadBlobChangedAfterLookup() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 3 * 1024 * 1024)).build());
+
+      // The content is only looked up when it is read, after the blob was overwritten or deleted
+      Blob overwritten = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME);
+      storageStrategy.putBlob(CONTAINER_NAME,
+            new BlobBuilderImpl().name(BLOB_NAME).payload(randomByteSource().slice(0, 3 * 1024 * 1024)).build());
+      Blob deleted = storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME);
+      storageStrategy.removeBlob(CONTAINER_NAME, BLOB_NAME);
+      for (Blob blob : ImmutableList.of(overwritten, deleted)) {
+         assertThat(blob.getMetadata().getContentMetadata().getContentLength()).isEqualTo(3 * 1024 * 1024L);
+         try {
+            ByteStreams.toByteArray(blob.getPayload().openStream());
+            fail("The content of a changed blob was read as empty");
+         } catch (IOException expected) {
+            assertThat(expected.getMessage()).contains("replaced or deleted");
+         }
+      }
+   }
+
    @Test
    public void testGetBlobAccess() throws IOException {
       assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
@@ -186,6 +773,32 @@ public abstract class BaseJdbcStorageStrategyTest {
       assertThat(storageStrategy.getBlobAccess(CONTAINER_NAME, BLOB_NAME)).isEqualTo(BlobAccess.PRIVATE);
    }
 
+   @Test
+   public void testGetBlobMetadata() throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME)
+            .payload(getByteArray('a', 3 * 1024 * 1024)).contentType("text/plain").userMetadata(
+                  ImmutableMap.of("key", "value")).build());
+      storageStrategy.createDirectory(CONTAINER_NAME, "dir");
+
+      BlobMetadata metadata = storageStrategy.getBlobMetadata(CONTAINER_NAME, BLOB_NAME);
+      assertThat(metadata.getContentMetadata().getContentLength()).isEqualTo(3 * 1024 * 1024L);
+      assertThat(metadata.getContentMetadata().getContentType()).isEqualTo("text/plain");
+      assertThat(metadata.getUserMetadata()).containsEntry("key", "value");
+      assertThat(metadata.getContentMetadata().getContentMD5AsHashCode())
+            .isEqualTo(Hashing.md5().hashBytes(getByteArray('a', 3 * 1024 * 1024)));
+      assertThat(metadata.getETag()).isEqualTo(storageStrategy.getBlob(CONTAINER_NAME, BLOB_NAME).getMetadata().getETag());
+      assertThat(metadata.getType()).isEqualTo(StorageType.BLOB);
+      assertThat(storageStrategy.getBlobMetadata(CONTAINER_NAME, "dir").getType()).isEqualTo(StorageType.FOLDER);
+      assertThat(storageStrategy.getBlobMetadata(CONTAINER_NAME, "missing")).isNull();
+      assertThat(storageStrategy.getBlobMetadata(CONTAINER_NAME, ImmutableList.of(BLOB_NAME, "dir", "missing"))
+            .keySet()).containsOnly(BLOB_NAME, "dir");
+      assertThat(storageStrategy.getBlobAccess(CONTAINER_NAME, "missing")).isNull();
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, "dir")).isTrue();
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, BLOB_NAME)).isFalse();
+      assertThat(storageStrategy.directoryExists(CONTAINER_NAME, "missing")).isFalse();
+   }
+
    @Test
    public void testClearContainer() throws IOException {
       assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
@@ -193,20 +806,160 @@ public abstract class BaseJdbcStorageStrategyTest {
             new BlobBuilderImpl().name(BLOB_NAME + "1").payload(randomByteSource().slice(0, 4 * 1024 * 1024)).build());
       storageStrategy.putBlob(CONTAINER_NAME,
             new BlobBuilderImpl().name(BLOB_NAME + "2").payload(randomByteSource().slice(0, 4 * 1024 * 1024)).build());
-      storageStrategy.putBlob(CONTAINER_NAME,
-            new BlobBuilderImpl().name(BLOB_NAME + "3").payload(randomByteSource().slice(0, 4 * 1024 * 1024)).build());
+      storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(BLOB_NAME + "3")
+            .payload(randomByteSource().slice(0, 4 * 1024 * 1024))
+            .userMetadata(ImmutableMap.of("key", "value")).build());
       assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME))
             .containsExactly(BLOB_NAME + "1", BLOB_NAME + "2", BLOB_NAME + "3");
       storageStrategy.clearContainer(CONTAINER_NAME);
       assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME)).isEmpty();
+      // The payloads and chunks are deleted with the blobs, nothing is left to the garbage collector
+      assertThat(countChunks()).isZero();
+      assertThat(storageStrategy.collectGarbage().getDeletedPayloads()).isZero();
       storageStrategy.deleteContainer(CONTAINER_NAME);
       assertThat(storageStrategy.containerExists(CONTAINER_NAME)).isFalse();
    }
 
+   @Test
+   public void testClearContainerDirectory() throws IOException {
+      putBlobs("a", "b/1", "b/2", "b/c/1", "bc");
+      storageStrategy.clearContainer(CONTAINER_NAME, ListContainerOptions.Builder.inDirectory("b"));
+      assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME)).containsExactly("a", "bc");
+   }
+
+   @Test
+   public void testDeleteBlobsByDirectory() throws IOException {
+      putBlobs("a/1", "a/b/2", "a/b/c/3", "ab/4");
+      storageStrategy.createDirectory(CONTAINER_NAME, "a/b");
+      JdbcService jdbcService = injector.getInstance(JdbcService.class);
+      jdbcService.deleteBlobsByDirectory(CONTAINER_NAME, "a", false);
+      assertThat(storageStrategy.getBlobKeysInsideContainer(CONTAINER_NAME))
+            .containsExactly("a/b", "a/b/2", "a/b/c/3", "ab/4");
+   }
+
+   private void putBlobs(String... keys) throws IOException {
+      assertThat(storageStrategy.createContainerInLocation(CONTAINER_NAME, null, null)).isTrue();
+      for (String key : keys) {
+         storageStrategy.putBlob(CONTAINER_NAME, new BlobBuilderImpl().name(key).payload(key).build());
+      }
+   }
+
+   private static List<String> names(PageSet<? extends StorageMetadata> page) {
+      ImmutableList.Builder<String> names = ImmutableList.builder();
+      for (StorageMetadata metadata : page) {
+         names.add(metadata.getName());
+      }
+      return names.build();
+   }
+
+   /**
+    * Gets a stream of the content which pauses each time the given number of bytes has been read, and
+    * runs the garbage collector once the given position is reached, as if it ran during the upload.
+    */
+   private InputStream collectingGarbage(byte[] content, final int pauseEvery, final long pauseMillis,
+         final int collectAt) {
+      return new FilterInputStream(new ByteArrayInputStream(content)) {
+         private int position;
+         private int nextPause = pauseEvery;
+         private boolean collected;
+
+         @Override
+         public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= nextPause) {
+               Uninterruptibles.sleepUninterruptibly(pauseMillis, TimeUnit.MILLISECONDS);
+               nextPause += pauseEvery;
+            }
+            if (!collected && position >= collectAt) {
+               storageStrategy.collectGarbage();
+               collected = true;
+            }
+            int limit = collected ? nextPause : Math.min(nextPause, collectAt);
+            int count = super.read(b, off, Math.min(len, limit - position));
+            if (count > 0) {
+               position += count;
+            }
+            return count;
+         }
+      };
+   }
+
     private byte[] getByteArray(char c, int len) {
         byte[] array = new byte[len];
         Arrays.fill(array, (byte) c);
         return array;
     }
 
+   private long countChunks() {
+      UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+      unitOfWork.begin();
+      try {
+         return injector.getInstance(EntityManager.class)
+               .createQuery("SELECT COUNT(c) FROM " + ChunkEntity.class.getName() + " c", Long.class)
+               .getSingleResult();
+      } finally {
+         unitOfWork.end();
+      }
+   }
+
+   private static Module metricsModule(final JdbcMetrics metrics) {
+      return new AbstractModule() {
+         @Override
+         protected void configure() {
+            bind(JdbcMetrics.class).toInstance(metrics);
+         }
+      };
+   }
+
+   private static class RecordingJdbcMetrics implements JdbcMetrics {
+
+      final List<String> operations = Collections.synchronizedList(new ArrayList<String>());
+      final List<String> transactions = Collections.synchronizedList(new ArrayList<String>());
+      final AtomicLong containerLookups = new AtomicLong();
+      final AtomicLong cachedContainerLookups = new AtomicLong();
+      final AtomicLong readBytes = new AtomicLong();
+      final AtomicInteger writtenChunks = new AtomicInteger();
+      final AtomicLong writtenBytes = new AtomicLong();
+      final AtomicLong hashedBytes = new AtomicLong();
+
+      @Override
+      public boolean isEnabled() {
+         return true;
+      }
+
+      @Override
+      public void operation(String operation, long nanos, boolean failed) {
+         operations.add(operation);
+      }
+
+      @Override
+      public void transaction(String transaction, long nanos, boolean failed) {
+         transactions.add(transaction);
+      }
+
+      @Override
+      public void containerLookup(boolean cached, long nanos) {
+         containerLookups.incrementAndGet();
+         if (cached) {
+            cachedContainerLookups.incrementAndGet();
+         }
+      }
+
+      @Override
+      public void chunkRead(int bytes, long nanos) {
+         readBytes.addAndGet(bytes);
+      }
+
+      @Override
+      public void chunksWritten(int chunks, long bytes, long nanos) {
+         writtenChunks.addAndGet(chunks);
+         writtenBytes.addAndGet(bytes);
+      }
+
+      @Override
+      public void contentHashed(int bytes, long nanos) {
+         hashedBytes.addAndGet(bytes);
+      }
+
+   }
+
 }